@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.github.springtestdbunit.DbUnitRule;
+import com.github.springtestdbunit.bean.DatabaseDataSourceConnectionFactoryBean;
+
+/**
+ * Base class for benchmarks that drive {@link DbUnitRule} against an embedded HSQLDB database. The generated dataset
+ * contains {@link #rows} rows spread evenly over {@link #tables} tables.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractDbUnitBenchmark {
+
+	protected static final String CONNECTION_NAME = "dataSource";
+
+	private static final Statement NO_OP = new Statement() {
+		@Override
+		public void evaluate() throws Throwable {
+		}
+	};
+
+	/**
+	 * The total number of rows in the dataset.
+	 */
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int rows;
+
+	/**
+	 * The number of tables in the dataset.
+	 */
+	@Param({ "1", "10" })
+	public int tables;
+
+	private SingleConnectionDataSource dataSource;
+
+	private IDataSet dataSet;
+
+	private DbUnitRule rule;
+
+	private Object fixture;
+
+	private Method fixtureMethod;
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws Exception {
+		this.dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:benchmark", "sa", "", true);
+		JdbcTemplate template = new JdbcTemplate(this.dataSource);
+		DefaultTable[] tables = new DefaultTable[this.tables];
+		int rowsPerTable = Math.max(1, this.rows / this.tables);
+		for (int i = 0; i < tables.length; i++) {
+			String tableName = "BENCH_" + i;
+			template.execute("CREATE TABLE " + tableName
+					+ " (ID INTEGER PRIMARY KEY, NAME VARCHAR(40), AMOUNT DECIMAL(12,2))");
+			tables[i] = new DefaultTable(tableName, new Column[] { new Column("ID", DataType.UNKNOWN),
+					new Column("NAME", DataType.UNKNOWN), new Column("AMOUNT", DataType.UNKNOWN) });
+			for (int row = 0; row < rowsPerTable; row++) {
+				// String values mirror those produced by the flat XML loader
+				tables[i].addRow(new Object[] { String.valueOf(row), "name-" + row, (row % 1000) + ".25" });
+			}
+		}
+		this.dataSet = new DefaultDataSet(tables);
+		this.rule = new DbUnitRule();
+		this.rule.setDataSources(Collections.<String, DataSource> singletonMap(CONNECTION_NAME, this.dataSource));
+		this.rule.setDataSetLoader(new GeneratedDataSetLoader(this.dataSet));
+		this.fixture = getFixtureClass().newInstance();
+		this.fixtureMethod = findFixtureMethod();
+		setupDatabase();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDownTrial() {
+		new JdbcTemplate(this.dataSource).execute("SHUTDOWN");
+		this.dataSource.destroy();
+	}
+
+	/**
+	 * Returns the class containing annotated fixture methods.
+	 * @return the fixture class
+	 */
+	protected abstract Class<?> getFixtureClass();
+
+	/**
+	 * Returns if the specified fixture method should be used for the current benchmark parameters.
+	 * @param method the fixture method
+	 * @return if the method matches
+	 */
+	protected abstract boolean isFixtureMethod(Method method);
+
+	/**
+	 * Called once the database has been created to apply any initial data.
+	 * @throws Exception
+	 */
+	protected void setupDatabase() throws Exception {
+	}
+
+	private Method findFixtureMethod() {
+		for (Method method : getFixtureClass().getMethods()) {
+			if (isFixtureMethod(method)) {
+				return method;
+			}
+		}
+		throw new IllegalStateException("No fixture method found in " + getFixtureClass());
+	}
+
+	/**
+	 * Run the fixture method through the {@link DbUnitRule}.
+	 * @throws Throwable
+	 */
+	protected void evaluate() throws Throwable {
+		this.rule.apply(NO_OP, new FrameworkMethod(this.fixtureMethod), this.fixture).evaluate();
+	}
+
+	/**
+	 * Replace the content of all tables with the generated dataset.
+	 * @throws Exception
+	 */
+	protected void fill() throws Exception {
+		execute(DatabaseOperation.CLEAN_INSERT);
+	}
+
+	/**
+	 * Delete the content of all tables.
+	 * @throws Exception
+	 */
+	protected void clear() throws Exception {
+		execute(DatabaseOperation.DELETE_ALL);
+	}
+
+	private void execute(DatabaseOperation operation) throws Exception {
+		IDatabaseConnection connection = DatabaseDataSourceConnectionFactoryBean.newConnection(this.dataSource);
+		try {
+			operation.execute(connection, this.dataSet);
+		} finally {
+			connection.close();
+		}
+	}
+}
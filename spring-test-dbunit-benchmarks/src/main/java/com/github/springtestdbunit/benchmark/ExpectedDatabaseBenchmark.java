@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.springtestdbunit.annotation.ExpectedDatabase;
+import com.github.springtestdbunit.assertion.DatabaseAssertionMode;
+
+/**
+ * Benchmarks the {@link ExpectedDatabase &#064;ExpectedDatabase} path for each {@link DatabaseAssertionMode}. The
+ * database is filled once per trial and always matches the expected dataset.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExpectedDatabaseBenchmark extends AbstractDbUnitBenchmark {
+
+	@Param({ "DEFAULT", "NON_STRICT", "NON_STRICT_HASH" })
+	public DatabaseAssertionMode assertionMode;
+
+	@Override
+	protected Class<?> getFixtureClass() {
+		return Fixture.class;
+	}
+
+	@Override
+	protected boolean isFixtureMethod(Method method) {
+		ExpectedDatabase expected = method.getAnnotation(ExpectedDatabase.class);
+		return (expected != null) && (expected.assertionMode() == this.assertionMode);
+	}
+
+	@Override
+	protected void setupDatabase() throws Exception {
+		fill();
+	}
+
+	@Benchmark
+	public void expectedDatabase() throws Throwable {
+		evaluate();
+	}
+
+	public static class Fixture {
+
+		@ExpectedDatabase(connection = CONNECTION_NAME, assertionMode = DatabaseAssertionMode.DEFAULT, value = "generated")
+		public void defaultMode() {
+		}
+
+		@ExpectedDatabase(connection = CONNECTION_NAME, assertionMode = DatabaseAssertionMode.NON_STRICT, value = "generated")
+		public void nonStrict() {
+		}
+
+		@ExpectedDatabase(connection = CONNECTION_NAME, assertionMode = DatabaseAssertionMode.NON_STRICT_HASH, value = "generated")
+		public void nonStrictHash() {
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.benchmark;
+
+import org.dbunit.dataset.IDataSet;
+
+import com.github.springtestdbunit.dataset.DataSetLoader;
+
+/**
+ * {@link DataSetLoader} that returns a dataset generated in memory regardless of the requested location so that
+ * benchmarks measure setup and verification rather than parsing.
+ *
+ * @author agent
+ */
+public class GeneratedDataSetLoader implements DataSetLoader {
+
+	private final IDataSet dataSet;
+
+	public GeneratedDataSetLoader(IDataSet dataSet) {
+		this.dataSet = dataSet;
+	}
+
+	public IDataSet loadDataSet(Class<?> testClass, String location) throws Exception {
+		return this.dataSet;
+	}
+}
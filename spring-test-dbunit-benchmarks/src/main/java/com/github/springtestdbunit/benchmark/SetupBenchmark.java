@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+
+/**
+ * Benchmarks the {@link DatabaseSetup &#064;DatabaseSetup} path for each {@link DatabaseOperation}.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SetupBenchmark extends AbstractDbUnitBenchmark {
+
+	@Param({ "CLEAN_INSERT", "INSERT", "REFRESH", "UPDATE", "DELETE", "DELETE_ALL", "TRUNCATE_TABLE" })
+	public DatabaseOperation operation;
+
+	@Override
+	protected Class<?> getFixtureClass() {
+		return Fixture.class;
+	}
+
+	@Override
+	protected boolean isFixtureMethod(Method method) {
+		DatabaseSetup setup = method.getAnnotation(DatabaseSetup.class);
+		return (setup != null) && (setup.connections()[0].type() == this.operation);
+	}
+
+	@Setup(Level.Iteration)
+	public void prepareDatabase() throws Exception {
+		if (this.operation == DatabaseOperation.INSERT) {
+			clear();
+		} else {
+			fill();
+		}
+	}
+
+	@Benchmark
+	public void setup() throws Throwable {
+		evaluate();
+	}
+
+	public static class Fixture {
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = CONNECTION_NAME, type = DatabaseOperation.CLEAN_INSERT, value = "generated"))
+		public void cleanInsert() {
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = CONNECTION_NAME, type = DatabaseOperation.INSERT, value = "generated"))
+		public void insert() {
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = CONNECTION_NAME, type = DatabaseOperation.REFRESH, value = "generated"))
+		public void refresh() {
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = CONNECTION_NAME, type = DatabaseOperation.UPDATE, value = "generated"))
+		public void update() {
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = CONNECTION_NAME, type = DatabaseOperation.DELETE, value = "generated"))
+		public void delete() {
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = CONNECTION_NAME, type = DatabaseOperation.DELETE_ALL, value = "generated"))
+		public void deleteAll() {
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = CONNECTION_NAME, type = DatabaseOperation.TRUNCATE_TABLE, value = "generated"))
+		public void truncateTable() {
+		}
+	}
+}
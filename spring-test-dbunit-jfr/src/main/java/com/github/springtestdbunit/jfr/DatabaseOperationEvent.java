@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for executing a setup or teardown database operation.
+ *
+ * @author agent
+ */
+@Name("com.github.springtestdbunit.DatabaseOperation")
+@Label("Database Operation")
+@Description("Executing a setup or teardown database operation")
+class DatabaseOperationEvent extends DbUnitEvent {
+
+	@Label("Operation")
+	String operation;
+}
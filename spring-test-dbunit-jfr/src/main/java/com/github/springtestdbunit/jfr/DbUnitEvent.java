@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Base class for the Java Flight Recorder events emitted for DBUnit work. Events begin when the work starts and
+ * are committed when it completes, the time spent is also recorded in the {@link #phaseDuration} field.
+ *
+ * @author agent
+ */
+@Category("Spring Test DBUnit")
+@StackTrace(false)
+abstract class DbUnitEvent extends Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Test Class")
+	String testClass;
+
+	@Label("Test Method")
+	String testMethod;
+
+	@Label("Connection Name")
+	String connectionName;
+
+	@Label("Dataset Location")
+	String dataSetLocation;
+
+	@Label("Tables")
+	@Description("The tables of the dataset together with their row counts")
+	String tables;
+
+	@Label("Table Count")
+	int tableCount;
+
+	@Label("Row Count")
+	long rowCount;
+
+	@Label("Phase Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long phaseDuration;
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.jfr;
+
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.github.springtestdbunit.timing.Phase;
+import com.github.springtestdbunit.timing.PhaseEvent;
+import com.github.springtestdbunit.timing.PhaseListener;
+import com.github.springtestdbunit.timing.PhaseListeners;
+import com.github.springtestdbunit.timing.PhaseStartListener;
+
+/**
+ * {@link PhaseListener} that emits Java Flight Recorder events for dataset loading, setup and teardown operations and
+ * expected database verification. The listener is registered automatically with {@link PhaseListeners} when this
+ * module is on the classpath. Events begin when a phase starts and are committed when it completes, so that they span
+ * the work in a recording. Events are only populated when they are enabled in a running recording so there is no
+ * additional cost when recording is off.
+ *
+ * @author agent
+ */
+public class JfrPhaseListener implements PhaseStartListener {
+
+	private final ThreadLocal<LinkedList<DbUnitEvent>> startedEvents = new ThreadLocal<LinkedList<DbUnitEvent>>() {
+		@Override
+		protected LinkedList<DbUnitEvent> initialValue() {
+			return new LinkedList<DbUnitEvent>();
+		}
+	};
+
+	public void phaseStarted(Phase phase) {
+		DbUnitEvent jfrEvent = createEvent(phase);
+		jfrEvent.phase = phase.name();
+		jfrEvent.begin();
+		this.startedEvents.get().addFirst(jfrEvent);
+	}
+
+	public void phaseCompleted(PhaseEvent event) {
+		DbUnitEvent jfrEvent = getStartedEvent(event.getPhase());
+		jfrEvent.end();
+		if (!jfrEvent.shouldCommit()) {
+			return;
+		}
+		jfrEvent.phase = event.getPhase().name();
+		jfrEvent.testClass = event.getTestClass().getName();
+		jfrEvent.testMethod = (event.getTestMethod() == null ? null : event.getTestMethod().getName());
+		jfrEvent.connectionName = event.getConnectionName();
+		jfrEvent.dataSetLocation = event.getDataSetLocation();
+		Map<String, Integer> rowCounts = event.getRowCounts();
+		jfrEvent.tables = getTables(rowCounts);
+		jfrEvent.tableCount = rowCounts.size();
+		jfrEvent.rowCount = event.getTotalRowCount();
+		jfrEvent.phaseDuration = event.getDuration();
+		if (jfrEvent instanceof DatabaseOperationEvent) {
+			((DatabaseOperationEvent) jfrEvent).operation = (event.getOperation() == null ? null : event
+					.getOperation().name());
+		}
+		jfrEvent.commit();
+	}
+
+	private DbUnitEvent getStartedEvent(Phase phase) {
+		// Events for phases that failed are never completed and are discarded here
+		LinkedList<DbUnitEvent> events = this.startedEvents.get();
+		while (!events.isEmpty()) {
+			DbUnitEvent jfrEvent = events.removeFirst();
+			if (phase.name().equals(jfrEvent.phase)) {
+				return jfrEvent;
+			}
+		}
+		// The phase was not started on this thread, record it without a start time
+		return createEvent(phase);
+	}
+
+	private DbUnitEvent createEvent(Phase phase) {
+		switch (phase) {
+		case RESOLVE:
+		case PARSE:
+			return new DataSetLoadEvent();
+		case EXECUTE:
+			return new DatabaseOperationEvent();
+		default:
+			return new ExpectedDatabaseEvent();
+		}
+	}
+
+	private String getTables(Map<String, Integer> rowCounts) {
+		StringBuilder tables = new StringBuilder();
+		for (Map.Entry<String, Integer> entry : rowCounts.entrySet()) {
+			tables.append(tables.length() == 0 ? "" : ", ");
+			tables.append(entry.getKey()).append("=").append(entry.getValue());
+		}
+		return tables.toString();
+	}
+}
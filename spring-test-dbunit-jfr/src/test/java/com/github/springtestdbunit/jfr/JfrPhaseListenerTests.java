@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableIterator;
+import org.junit.Test;
+
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.timing.Phase;
+import com.github.springtestdbunit.timing.PhaseEvent;
+
+/**
+ * Tests for {@link JfrPhaseListener}.
+ *
+ * @author agent
+ */
+public class JfrPhaseListenerTests {
+
+	private JfrPhaseListener listener = new JfrPhaseListener();
+
+	@Test
+	public void shouldRecordOperationEvent() throws Exception {
+		List<RecordedEvent> events = record(newEvent(Phase.EXECUTE, DatabaseOperation.CLEAN_INSERT));
+		assertEquals(1, events.size());
+		RecordedEvent event = events.get(0);
+		assertEquals("com.github.springtestdbunit.DatabaseOperation", event.getEventType().getName());
+		assertEquals("EXECUTE", event.getString("phase"));
+		assertEquals("CLEAN_INSERT", event.getString("operation"));
+		assertEquals(getClass().getName(), event.getString("testClass"));
+		assertNull(event.getString("testMethod"));
+		assertEquals("dataSource", event.getString("connectionName"));
+		assertEquals("/META-INF/db/insert.xml", event.getString("dataSetLocation"));
+		assertEquals("SampleEntity=2, OtherEntity=3", event.getString("tables"));
+		assertEquals(2, event.getInt("tableCount"));
+		assertEquals(5, event.getLong("rowCount"));
+		assertEquals(1000, event.getDuration("phaseDuration").toNanos());
+		assertTrue(event.getDuration().toMillis() >= 10);
+	}
+
+	@Test
+	public void shouldDiscardEventsForFailedPhases() throws Exception {
+		this.listener.phaseStarted(Phase.EXECUTE);
+		List<RecordedEvent> events = record(newEvent(Phase.PARSE, null));
+		assertEquals(1, events.size());
+		assertEquals("com.github.springtestdbunit.DataSetLoad", events.get(0).getEventType().getName());
+		assertEquals("PARSE", events.get(0).getString("phase"));
+	}
+
+	@Test
+	public void shouldRecordDataSetLoadAndExpectedDatabaseEvents() throws Exception {
+		List<RecordedEvent> events = record(newEvent(Phase.PARSE, null), newEvent(Phase.COMPARE, null));
+		assertEquals(2, events.size());
+		assertEquals("com.github.springtestdbunit.DataSetLoad", events.get(0).getEventType().getName());
+		assertEquals("com.github.springtestdbunit.ExpectedDatabase", events.get(1).getEventType().getName());
+		assertEquals("COMPARE", events.get(1).getString("phase"));
+	}
+
+	@Test
+	public void shouldNotRecordWhenDisabled() throws Exception {
+		// Would fail to count rows if the event were populated
+		PhaseEvent event = new PhaseEvent(Phase.EXECUTE, getClass(), null, "dataSource", "/META-INF/db/insert.xml",
+				DatabaseOperation.CLEAN_INSERT, 1000, new FailingDataSet());
+		this.listener.phaseCompleted(event);
+	}
+
+	private List<RecordedEvent> record(PhaseEvent... events) throws Exception {
+		File file = File.createTempFile("dbunit", ".jfr");
+		try {
+			Recording recording = new Recording();
+			try {
+				recording.enable(DataSetLoadEvent.class);
+				recording.enable(DatabaseOperationEvent.class);
+				recording.enable(ExpectedDatabaseEvent.class);
+				recording.start();
+				for (PhaseEvent event : events) {
+					this.listener.phaseStarted(event.getPhase());
+					Thread.sleep(10);
+					this.listener.phaseCompleted(event);
+				}
+				recording.stop();
+				recording.dump(file.toPath());
+			} finally {
+				recording.close();
+			}
+			return RecordingFile.readAllEvents(file.toPath());
+		} finally {
+			file.delete();
+		}
+	}
+
+	private PhaseEvent newEvent(Phase phase, DatabaseOperation operation) {
+		Map<String, Integer> rowCounts = new LinkedHashMap<String, Integer>();
+		rowCounts.put("SampleEntity", 2);
+		rowCounts.put("OtherEntity", 3);
+		return new PhaseEvent(phase, getClass(), null, "dataSource", "/META-INF/db/insert.xml", operation, 1000,
+				rowCounts);
+	}
+
+	private static class FailingDataSet extends AbstractDataSet {
+
+		@Override
+		protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+			throw new DataSetException("Rows should not be counted");
+		}
+	}
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.processor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that verifies the datasets referenced by <tt>&#064;DatabaseSetup</tt>,
+ * <tt>&#064;DatabaseTearDown</tt> and <tt>&#064;ExpectedDatabase</tt> annotations exist and writes an index of the
+ * datasets used by each test class and method to {@value #INDEX_LOCATION}. At runtime the index allows dataset
+ * loaders to obtain the datasets of indexed test classes directly from the class path.
+ * <p>
+ * Datasets are resolved in the same way as the <tt>ClassRelativeResourceLoader</tt> used by the dataset loaders
+ * provided with Spring Test DBUnit. Tests that are configured with a different loader using
+ * <tt>&#064;DbUnitConfiguration</tt> are neither verified nor indexed. Missing datasets are reported as errors unless
+ * the <tt>{@value #MISSING_DATASET_OPTION}</tt> option is set to <tt>warning</tt>.
+ * <p>
+ * The index only contains the tests that were compiled by the same compiler invocation. Tests that are missing from
+ * the index are still supported, their datasets are resolved without using the index.
+ *
+ * @author agent
+ */
+@SupportedAnnotationTypes({ DataSetIndexProcessor.DATABASE_SETUP, DataSetIndexProcessor.DATABASE_TEAR_DOWN,
+		DataSetIndexProcessor.EXPECTED_DATABASE, DataSetIndexProcessor.DB_UNIT_CONFIGURATION })
+@SupportedOptions(DataSetIndexProcessor.MISSING_DATASET_OPTION)
+public class DataSetIndexProcessor extends AbstractProcessor {
+
+	/**
+	 * The location of the index, must match the location read by the dataset loaders.
+	 */
+	static final String INDEX_LOCATION = "META-INF/spring-test-dbunit/datasets.index";
+
+	static final String MISSING_DATASET_OPTION = "springtestdbunit.missingDataSet";
+
+	private static final String ANNOTATION_PACKAGE = "com.github.springtestdbunit.annotation.";
+
+	static final String DATABASE_SETUP = ANNOTATION_PACKAGE + "DatabaseSetup";
+
+	static final String DATABASE_TEAR_DOWN = ANNOTATION_PACKAGE + "DatabaseTearDown";
+
+	static final String EXPECTED_DATABASE = ANNOTATION_PACKAGE + "ExpectedDatabase";
+
+	static final String DB_UNIT_CONFIGURATION = ANNOTATION_PACKAGE + "DbUnitConfiguration";
+
+	private static final Set<String> DEFAULT_DATA_SET_LOADERS = new HashSet<String>(Arrays.asList(
+			"com.github.springtestdbunit.dataset.FlatXmlDataSetLoader",
+			"com.github.springtestdbunit.dataset.FlatXmlStreamingDataSetLoader",
+			"com.github.springtestdbunit.dataset.BinaryDataSetLoader"));
+
+	private static final String CLASSPATH_URL_PREFIX = "classpath:";
+
+	private static final StandardLocation[] RESOURCE_LOCATIONS = { StandardLocation.CLASS_OUTPUT,
+			StandardLocation.CLASS_PATH, StandardLocation.SOURCE_PATH };
+
+	private final Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeIndex();
+			return false;
+		}
+		Set<Element> elements = new LinkedHashSet<Element>();
+		for (TypeElement annotation : annotations) {
+			elements.addAll(roundEnv.getElementsAnnotatedWith(annotation));
+		}
+		for (Element element : elements) {
+			if ((element instanceof TypeElement) || (element instanceof ExecutableElement)) {
+				processElement(element);
+			}
+		}
+		// Annotations are not claimed so that other processors can also see them
+		return false;
+	}
+
+	private void processElement(Element element) {
+		TypeElement type = (TypeElement) (element instanceof TypeElement ? element : element.getEnclosingElement());
+		if (!usesDefaultDataSetLoader(type)) {
+			return;
+		}
+		String key = type.getQualifiedName() + (element == type ? "" : "#" + element.getSimpleName());
+		String packagePath = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString()
+				.replace('.', '/');
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			for (String location : getLocations(annotation)) {
+				String path = getClassPathLocation(packagePath, location);
+				if (path == null) {
+					continue;
+				}
+				if (exists(path)) {
+					Set<String> paths = this.index.get(key);
+					if (paths == null) {
+						paths = new LinkedHashSet<String>();
+						this.index.put(key, paths);
+					}
+					paths.add(path);
+				} else {
+					this.processingEnv.getMessager().printMessage(getMissingDataSetKind(),
+							"Dataset \"" + location + "\" cannot be found on the class path at " + path, element,
+							annotation);
+				}
+			}
+		}
+	}
+
+	private boolean usesDefaultDataSetLoader(TypeElement type) {
+		// @DbUnitConfiguration is inherited
+		TypeElement candidate = type;
+		while (candidate != null) {
+			AnnotationMirror configuration = findAnnotation(candidate, DB_UNIT_CONFIGURATION);
+			if (configuration != null) {
+				Object loader = getValue(configuration, "dataSetLoader");
+				return (loader instanceof DeclaredType)
+						&& DEFAULT_DATA_SET_LOADERS.contains(((TypeElement) ((DeclaredType) loader).asElement())
+								.getQualifiedName().toString());
+			}
+			TypeMirror superclass = candidate.getSuperclass();
+			candidate = (superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass)
+					.asElement() : null);
+		}
+		return true;
+	}
+
+	private List<String> getLocations(AnnotationMirror annotation) {
+		List<String> locations = new ArrayList<String>();
+		String annotationType = getQualifiedName(annotation);
+		if (DATABASE_SETUP.equals(annotationType)) {
+			for (Object connection : getValues(annotation, "connections")) {
+				if (connection instanceof AnnotationMirror) {
+					addLocations(locations, getValues((AnnotationMirror) connection, "value"));
+				}
+			}
+		} else if (DATABASE_TEAR_DOWN.equals(annotationType)) {
+			addLocations(locations, getValues(annotation, "value"));
+		} else if (EXPECTED_DATABASE.equals(annotationType)) {
+			addLocations(locations, Arrays.asList(getValue(annotation, "value")));
+		}
+		return locations;
+	}
+
+	private void addLocations(List<String> locations, List<Object> values) {
+		for (Object value : values) {
+			// Empty locations are ignored at runtime
+			if ((value instanceof String) && (((String) value).length() > 0)) {
+				locations.add((String) value);
+			}
+		}
+	}
+
+	private AnnotationMirror findAnnotation(Element element, String annotationType) {
+		for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (annotationType.equals(getQualifiedName(annotation))) {
+				return annotation;
+			}
+		}
+		return null;
+	}
+
+	private String getQualifiedName(AnnotationMirror annotation) {
+		return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+	}
+
+	private Object getValue(AnnotationMirror annotation, String name) {
+		Map<? extends ExecutableElement, ? extends AnnotationValue> values = this.processingEnv.getElementUtils()
+				.getElementValuesWithDefaults(annotation);
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue().getValue();
+			}
+		}
+		return null;
+	}
+
+	private List<Object> getValues(AnnotationMirror annotation, String name) {
+		List<Object> values = new ArrayList<Object>();
+		Object value = getValue(annotation, name);
+		if (value instanceof List) {
+			for (Object element : (List<?>) value) {
+				values.add(((AnnotationValue) element).getValue());
+			}
+		} else if (value != null) {
+			values.add(value);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the class path location that a <tt>ClassRelativeResourceLoader</tt> would use for the dataset location,
+	 * or <tt>null</tt> if the location cannot be verified at compile time.
+	 */
+	private String getClassPathLocation(String packagePath, String location) {
+		String path;
+		if (location.startsWith(CLASSPATH_URL_PREFIX)) {
+			path = location.substring(CLASSPATH_URL_PREFIX.length());
+			path = (path.startsWith("/") ? path.substring(1) : path);
+		} else if (location.startsWith("/")) {
+			path = location.substring(1);
+		} else if (location.indexOf(':') == -1) {
+			path = (packagePath.length() == 0 ? location : packagePath + "/" + location);
+		} else {
+			return null;
+		}
+		if ((path.length() == 0) || path.startsWith("../") || path.contains("/../") || path.startsWith("./")
+				|| path.contains("/./")) {
+			return null;
+		}
+		return path;
+	}
+
+	private boolean exists(String path) {
+		for (StandardLocation location : RESOURCE_LOCATIONS) {
+			try {
+				FileObject resource = this.processingEnv.getFiler().getResource(location, "", path);
+				InputStream inputStream = resource.openInputStream();
+				inputStream.close();
+				return true;
+			} catch (IOException e) {
+				// Try the next location
+			} catch (IllegalArgumentException e) {
+				// The location is not supported by the compiler
+			}
+		}
+		return false;
+	}
+
+	private Kind getMissingDataSetKind() {
+		String option = this.processingEnv.getOptions().get(MISSING_DATASET_OPTION);
+		return ("warning".equalsIgnoreCase(option) ? Kind.WARNING : Kind.ERROR);
+	}
+
+	private void writeIndex() {
+		if (this.index.isEmpty()) {
+			return;
+		}
+		try {
+			FileObject resource = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+					INDEX_LOCATION);
+			Writer writer = resource.openWriter();
+			try {
+				writer.write("# Generated by " + getClass().getName() + "\n");
+				for (Map.Entry<String, Set<String>> entry : this.index.entrySet()) {
+					writer.write(entry.getKey());
+					writer.write("=");
+					String separator = "";
+					for (String path : entry.getValue()) {
+						writer.write(separator);
+						writer.write(path);
+						separator = ",";
+					}
+					writer.write("\n");
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			this.processingEnv.getMessager().printMessage(Kind.WARNING,
+					"Unable to write dataset index " + INDEX_LOCATION + ": " + e.getMessage());
+		}
+	}
+}
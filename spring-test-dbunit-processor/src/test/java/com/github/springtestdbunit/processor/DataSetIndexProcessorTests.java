@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link DataSetIndexProcessor}.
+ *
+ * @author agent
+ */
+public class DataSetIndexProcessorTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File sourceDirectory;
+
+	private File outputDirectory;
+
+	private DiagnosticCollector<JavaFileObject> diagnostics;
+
+	@Before
+	public void setup() throws Exception {
+		this.sourceDirectory = this.temporaryFolder.newFolder("src");
+		this.outputDirectory = this.temporaryFolder.newFolder("out");
+		this.diagnostics = new DiagnosticCollector<JavaFileObject>();
+		write(this.outputDirectory, "example/setup.xml", "<dataset/>");
+		write(this.outputDirectory, "expected.xml", "<dataset/>");
+	}
+
+	@Test
+	public void shouldIndexDataSets() throws Exception {
+		File source = write(this.sourceDirectory, "example/ExampleTest.java", "package example;\n"
+				+ "import com.github.springtestdbunit.annotation.*;\n"
+				+ "@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = \"dataSource\", "
+				+ "value = \"setup.xml\"))\n" + "public class ExampleTest {\n"
+				+ "  @ExpectedDatabase(connection = \"dataSource\", value = \"/expected.xml\")\n"
+				+ "  @DatabaseTearDown(\"classpath:example/setup.xml\")\n" + "  public void test() {}\n" + "}\n");
+		assertTrue(compile(source));
+		List<String> index = readIndex();
+		assertEquals(Arrays.asList("example.ExampleTest=example/setup.xml",
+				"example.ExampleTest#test=expected.xml,example/setup.xml"), index.subList(1, index.size()));
+	}
+
+	@Test
+	public void shouldReportMissingDataSet() throws Exception {
+		File source = write(this.sourceDirectory, "example/MissingTest.java", "package example;\n"
+				+ "import com.github.springtestdbunit.annotation.*;\n" + "public class MissingTest {\n"
+				+ "  @DatabaseTearDown(\"missing.xml\")\n" + "  public void test() {}\n" + "}\n");
+		assertFalse(compile(source));
+		assertTrue(getMessages(Diagnostic.Kind.ERROR).get(0).contains("example/missing.xml"));
+	}
+
+	@Test
+	public void shouldReportMissingDataSetAsWarning() throws Exception {
+		File source = write(this.sourceDirectory, "example/MissingTest.java", "package example;\n"
+				+ "import com.github.springtestdbunit.annotation.*;\n" + "public class MissingTest {\n"
+				+ "  @DatabaseTearDown(\"missing.xml\")\n" + "  public void test() {}\n" + "}\n");
+		assertTrue(compile(source, "-A" + DataSetIndexProcessor.MISSING_DATASET_OPTION + "=warning"));
+		assertEquals(1, getMessages(Diagnostic.Kind.WARNING).size());
+	}
+
+	@Test
+	public void shouldIgnoreTestsWithCustomDataSetLoader() throws Exception {
+		File source = write(this.sourceDirectory, "example/CustomTest.java", "package example;\n"
+				+ "import com.github.springtestdbunit.annotation.*;\n"
+				+ "@DbUnitConfiguration(dataSetLoader = CustomTest.Loader.class)\n" + "public class CustomTest {\n"
+				+ "  @DatabaseTearDown(\"missing.xml\")\n" + "  public void test() {}\n"
+				+ "  public static class Loader implements com.github.springtestdbunit.dataset.DataSetLoader {\n"
+				+ "    public org.dbunit.dataset.IDataSet loadDataSet(Class<?> testClass, String location) {\n"
+				+ "      return null;\n" + "    }\n" + "  }\n" + "}\n");
+		assertTrue(compile(source));
+		assertFalse(new File(this.outputDirectory, DataSetIndexProcessor.INDEX_LOCATION).exists());
+	}
+
+	private boolean compile(File source, String... options) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+		try {
+			List<String> arguments = new ArrayList<String>(Arrays.asList(options));
+			arguments.addAll(Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d",
+					this.outputDirectory.getAbsolutePath(), "-proc:only"));
+			CompilationTask task = compiler.getTask(null, fileManager, this.diagnostics, arguments, null,
+					fileManager.getJavaFileObjects(source));
+			task.setProcessors(Collections.singletonList(new DataSetIndexProcessor()));
+			return task.call();
+		} finally {
+			fileManager.close();
+		}
+	}
+
+	private List<String> getMessages(Diagnostic.Kind kind) {
+		List<String> messages = new ArrayList<String>();
+		for (Diagnostic<? extends JavaFileObject> diagnostic : this.diagnostics.getDiagnostics()) {
+			if (diagnostic.getKind() == kind) {
+				messages.add(diagnostic.getMessage(Locale.ENGLISH));
+			}
+		}
+		return messages;
+	}
+
+	private List<String> readIndex() throws IOException {
+		File index = new File(this.outputDirectory, DataSetIndexProcessor.INDEX_LOCATION);
+		return Files.readAllLines(index.toPath(), StandardCharsets.UTF_8);
+	}
+
+	private File write(File directory, String name, String content) throws IOException {
+		File file = new File(directory, name);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
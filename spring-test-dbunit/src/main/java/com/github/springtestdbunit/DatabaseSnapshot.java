@@ -0,0 +1,304 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.FilteredDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.filter.ExcludeTableFilter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import com.github.springtestdbunit.annotation.SetupMode;
+
+/**
+ * A copy of a set of database tables held in snapshot tables within the same database. Used to support
+ * {@link SetupMode#SNAPSHOT}.
+ * <p>
+ * Snapshot tables are created in the dedicated {@value #SNAPSHOT_SCHEMA} schema using DDL appropriate to the
+ * database, unsupported databases fail with an {@link IllegalStateException}. Snapshot tables are excluded from
+ * datasets using {@link #excludeSnapshotTables(IDataSet)}. Snapshots are only shared by the tests of a single test
+ * class and are {@link #dropAll(Class) dropped} once the class has run, using a new connection obtained from the
+ * {@link DataSource} of the connection that created them.
+ *
+ * @author agent
+ */
+class DatabaseSnapshot {
+
+	private static final Log logger = LogFactory.getLog(DatabaseSnapshot.class);
+
+	/**
+	 * The schema that holds snapshot tables.
+	 */
+	static final String SNAPSHOT_SCHEMA = "DBUNIT_SNAPSHOT";
+
+	private static final String SNAPSHOT_TABLE_PREFIX = "DBUNIT_SNAPSHOT_";
+
+	private static final Map<Class<?>, Map<String, DatabaseSnapshot>> snapshots = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, Map<String, DatabaseSnapshot>>());
+
+	private static final AtomicInteger snapshotCount = new AtomicInteger();
+
+	private final DataSource dataSource;
+
+	private final List<String> tableNames;
+
+	private final List<String> snapshotTableNames;
+
+	private DatabaseSnapshot(DataSource dataSource, List<String> tableNames, List<String> snapshotTableNames) {
+		this.dataSource = dataSource;
+		this.tableNames = tableNames;
+		this.snapshotTableNames = snapshotTableNames;
+	}
+
+	/**
+	 * Restore the tables from the snapshot.
+	 * @param connection the connection
+	 * @throws SQLException on SQL error
+	 */
+	public void restore(IDatabaseConnection connection) throws SQLException {
+		Statement statement = connection.getConnection().createStatement();
+		try {
+			for (int i = this.tableNames.size() - 1; i >= 0; i--) {
+				statement.execute("DELETE FROM " + this.tableNames.get(i));
+			}
+			for (int i = 0; i < this.tableNames.size(); i++) {
+				statement.execute("INSERT INTO " + this.tableNames.get(i) + " SELECT * FROM "
+						+ this.snapshotTableNames.get(i));
+			}
+		} finally {
+			statement.close();
+		}
+	}
+
+	private void drop() {
+		try {
+			Connection connection = this.dataSource.getConnection();
+			try {
+				Statement statement = connection.createStatement();
+				try {
+					for (String snapshotTableName : this.snapshotTableNames) {
+						statement.execute("DROP TABLE " + snapshotTableName);
+					}
+				} finally {
+					statement.close();
+				}
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Unable to drop database snapshot tables " + this.snapshotTableNames, e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the key that should be used to identify a snapshot for the specified connection and setup description.
+	 * @param connection the connection
+	 * @param setup a description of the setup that was applied
+	 * @return the snapshot key
+	 * @throws SQLException on SQL error
+	 */
+	public static String getKey(IDatabaseConnection connection, String setup) throws SQLException {
+		String url = connection.getConnection().getMetaData().getURL();
+		return url + "|" + connection.getSchema() + "|" + setup;
+	}
+
+	/**
+	 * Returns the snapshot with the specified key or <tt>null</tt> if no snapshot has been {@link #create created}
+	 * for the test class.
+	 * @param testClass the test class
+	 * @param key the snapshot key
+	 * @return the snapshot or <tt>null</tt>
+	 */
+	public static DatabaseSnapshot get(Class<?> testClass, String key) {
+		Map<String, DatabaseSnapshot> classSnapshots = snapshots.get(testClass);
+		return (classSnapshots == null ? null : classSnapshots.get(key));
+	}
+
+	/**
+	 * Create a new snapshot of the specified tables.
+	 * @param testClass the test class that uses the snapshot
+	 * @param key the snapshot key
+	 * @param connection the connection
+	 * @param dataSource the data source of the connection, used to drop the snapshot
+	 * @param tableNames the names of the tables to snapshot in the order that they should be inserted
+	 * @return the snapshot
+	 * @throws SQLException on SQL error
+	 * @throws IllegalStateException if the database is not supported or a Spring managed transaction is active
+	 */
+	public static DatabaseSnapshot create(Class<?> testClass, String key, IDatabaseConnection connection,
+			DataSource dataSource, List<String> tableNames) throws SQLException {
+		// DDL commits the current transaction on most databases
+		Assert.state(!TransactionSynchronizationManager.isActualTransactionActive(),
+				"SetupMode.SNAPSHOT cannot be used with Spring managed transactions");
+		Dialect dialect = Dialect.get(connection);
+		int id = snapshotCount.incrementAndGet();
+		List<String> qualifiedTableNames = new ArrayList<String>();
+		List<String> snapshotTableNames = new ArrayList<String>();
+		Statement statement = connection.getConnection().createStatement();
+		try {
+			if (!exists(connection, SNAPSHOT_SCHEMA, null)) {
+				statement.execute("CREATE SCHEMA " + SNAPSHOT_SCHEMA);
+			}
+			for (int i = 0; i < tableNames.size(); i++) {
+				String tableName = qualify(connection, tableNames.get(i));
+				String snapshotTableName = SNAPSHOT_TABLE_PREFIX + id + "_" + i;
+				if (exists(connection, SNAPSHOT_SCHEMA, snapshotTableName)) {
+					// Left by a test run that did not complete
+					statement.execute("DROP TABLE " + SNAPSHOT_SCHEMA + "." + snapshotTableName);
+				}
+				snapshotTableName = SNAPSHOT_SCHEMA + "." + snapshotTableName;
+				statement.execute(dialect.getCreateSnapshotTableSql(snapshotTableName, tableName));
+				qualifiedTableNames.add(tableName);
+				snapshotTableNames.add(snapshotTableName);
+			}
+		} finally {
+			statement.close();
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Created database snapshot of " + qualifiedTableNames + " for " + key);
+		}
+		DatabaseSnapshot snapshot = new DatabaseSnapshot(dataSource, qualifiedTableNames, snapshotTableNames);
+		getClassSnapshots(testClass).put(key, snapshot);
+		return snapshot;
+	}
+
+	private static Map<String, DatabaseSnapshot> getClassSnapshots(Class<?> testClass) {
+		synchronized (snapshots) {
+			Map<String, DatabaseSnapshot> classSnapshots = snapshots.get(testClass);
+			if (classSnapshots == null) {
+				classSnapshots = new ConcurrentHashMap<String, DatabaseSnapshot>();
+				snapshots.put(testClass, classSnapshots);
+			}
+			return classSnapshots;
+		}
+	}
+
+	/**
+	 * Drop all snapshots created for the specified test class.
+	 * @param testClass the test class
+	 */
+	public static void dropAll(Class<?> testClass) {
+		Map<String, DatabaseSnapshot> classSnapshots = snapshots.remove(testClass);
+		if (classSnapshots != null) {
+			for (DatabaseSnapshot snapshot : classSnapshots.values()) {
+				snapshot.drop();
+			}
+		}
+	}
+
+	/**
+	 * Returns a view of the specified dataset that excludes any snapshot tables. Used when a dataset is created from
+	 * all the tables of a connection.
+	 * @param dataSet the dataset
+	 * @return a dataset without snapshot tables
+	 */
+	public static IDataSet excludeSnapshotTables(IDataSet dataSet) {
+		return new FilteredDataSet(new ExcludeTableFilter(new String[] { SNAPSHOT_TABLE_PREFIX + "*",
+				SNAPSHOT_SCHEMA + ".*" }), dataSet);
+	}
+
+	private static boolean exists(IDatabaseConnection connection, String schema, String tableName)
+			throws SQLException {
+		DatabaseMetaData metaData = connection.getConnection().getMetaData();
+		ResultSet resultSet = (tableName == null ? metaData.getSchemas() : metaData.getTables(null,
+				toMetaDataIdentifier(metaData, schema), toMetaDataIdentifier(metaData, tableName), null));
+		try {
+			while (resultSet.next()) {
+				if ((tableName != null) || schema.equalsIgnoreCase(resultSet.getString("TABLE_SCHEM"))) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	private static String toMetaDataIdentifier(DatabaseMetaData metaData, String identifier) throws SQLException {
+		if (metaData.storesLowerCaseIdentifiers()) {
+			return identifier.toLowerCase();
+		}
+		return identifier;
+	}
+
+	private static String qualify(IDatabaseConnection connection, String tableName) {
+		String schema = connection.getSchema();
+		if (StringUtils.hasLength(schema) && (tableName.indexOf('.') == -1)) {
+			return schema + "." + tableName;
+		}
+		return tableName;
+	}
+
+	/**
+	 * The databases that support snapshots, identified by their product name.
+	 */
+	private static enum Dialect {
+
+		HSQLDB("HSQL Database Engine", "CREATE TABLE %s AS (SELECT * FROM %s) WITH DATA"),
+
+		DB2("DB2", "CREATE TABLE %s AS (SELECT * FROM %s) WITH DATA"),
+
+		H2("H2", "CREATE TABLE %s AS SELECT * FROM %s"),
+
+		POSTGRESQL("PostgreSQL", "CREATE TABLE %s AS SELECT * FROM %s"),
+
+		MYSQL("MySQL", "CREATE TABLE %s AS SELECT * FROM %s");
+
+		private final String productName;
+
+		private final String createSnapshotTableSql;
+
+		private Dialect(String productName, String createSnapshotTableSql) {
+			this.productName = productName;
+			this.createSnapshotTableSql = createSnapshotTableSql;
+		}
+
+		public String getCreateSnapshotTableSql(String snapshotTableName, String tableName) {
+			return String.format(this.createSnapshotTableSql, snapshotTableName, tableName);
+		}
+
+		public static Dialect get(IDatabaseConnection connection) throws SQLException {
+			String productName = connection.getConnection().getMetaData().getDatabaseProductName();
+			for (Dialect dialect : values()) {
+				if (productName.startsWith(dialect.productName)) {
+					return dialect;
+				}
+			}
+			throw new IllegalStateException("SetupMode.SNAPSHOT is not supported for " + productName + " databases");
+		}
+	}
+}
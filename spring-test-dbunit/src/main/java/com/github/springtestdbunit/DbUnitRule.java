@@ -15,28 +15,45 @@
  */
 package com.github.springtestdbunit;
 
+import com.github.springtestdbunit.annotation.ConstraintMode;
 import com.github.springtestdbunit.annotation.DatabaseSetup;
 import com.github.springtestdbunit.annotation.DatabaseTearDown;
 import com.github.springtestdbunit.annotation.ExpectedDatabase;
+import com.github.springtestdbunit.annotation.IsolationMode;
+import com.github.springtestdbunit.annotation.SetupMode;
 import com.github.springtestdbunit.bean.DatabaseDataSourceConnectionFactoryBean;
 import com.github.springtestdbunit.dataset.DataSetLoader;
 import com.github.springtestdbunit.dataset.FlatXmlDataSetLoader;
 import com.github.springtestdbunit.operation.DatabaseOperationLookup;
 import com.github.springtestdbunit.operation.DefaultDatabaseOperationLookup;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.dataset.IDataSet;
 import org.junit.rules.MethodRule;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.Statement;
+import org.springframework.util.Assert;
 import org.springframework.util.ReflectionUtils;
 
 import javax.sql.DataSource;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * JUnit <code>&#064;Rule</code> which provides support for {@link DatabaseSetup &#064;DatabaseSetup},
@@ -52,35 +69,110 @@ import java.util.Set;
  * Database operations are are lookup up using a {@link DefaultDatabaseOperationLookup} unless a
  * {@link DatabaseOperationLookup} is located from a field of the test class or specifically
  * {@link #setDatabaseOperationLookup configured}.
+ * <p>
+ * Connections for {@link DataSource}s can be pooled by the rule and reused by later tests, so that DBUnit table
+ * meta-data is only read once. Each test uses its own connections and the underlying JDBC connections are always closed
+ * when the test completes. JUnit creates a new test instance, and so usually a new rule, for each test method so
+ * connections are only pooled while the {@link #classRule() class rule} of the same rule instance is running. Declare a
+ * single <code>static</code> rule instance together with its class rule to pool connections for all tests of a class:
+ * 
+ * <pre class="code">
+ * private static DbUnitRule dbUnit = new DbUnitRule();
+ * 
+ * &#064;ClassRule
+ * public static TestRule dbUnitConnections = dbUnit.classRule();
+ * 
+ * &#064;Rule
+ * public DbUnitRule dbUnitRule = dbUnit;
+ * </pre>
+ * <p>
+ * Once configured, the rule can be used by tests running concurrently, for example when using surefire
+ * <tt>parallel=methods</tt>. Connections configured using {@link #setDatabaseConnections} are shared by all tests
+ * using the rule and so should only be used when tests do not run concurrently.
+ * <p>
+ * Changes made by tests are reset using {@link DatabaseTearDown &#064;DatabaseTearDown} unless a different
+ * {@link #setIsolationMode isolation mode} is configured.
  * 
  * @author Phillip Webb
  */
 public class DbUnitRule implements MethodRule {
 
+	private static final Log logger = LogFactory.getLog(DbUnitRule.class);
+
 	private static DbUnitRunner runner = new DbUnitRunner();
 
-	private static Map<Class<?>, TestClassFields> fields = new HashMap<Class<?>, DbUnitRule.TestClassFields>();
+	// Values are softly referenced since the fields they hold refer back to the test class
+	private static Map<Class<?>, SoftReference<TestClassFields>> fields = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<TestClassFields>>());
+
+	private final Map<DataSource, Queue<IDatabaseConnection>> idleConnections = Collections
+			.synchronizedMap(new HashMap<DataSource, Queue<IDatabaseConnection>>());
+
+	private final AtomicInteger runningClassRules = new AtomicInteger();
+
+	private Map<String, Object> connectionSources = new ConcurrentHashMap<String, Object>();
 
-	private Map<String, IDatabaseConnection> connectionsMap = new HashMap<String, IDatabaseConnection>();
+	private volatile DataSetLoader dataSetLoader;
 
-	private DataSetLoader dataSetLoader;
+	private volatile DatabaseOperationLookup databaseOperationLookup;
 
-	private DatabaseOperationLookup databaseOperationLookup;
+	private volatile SetupMode setupMode = SetupMode.DEFAULT;
+
+	private volatile boolean parallelSetup;
+
+	private volatile ConstraintMode constraintMode = ConstraintMode.ENFORCED;
+
+	private volatile boolean parallelTableLoading;
+
+	private volatile IsolationMode isolationMode = IsolationMode.TEARDOWN;
 
 	public Statement apply(Statement base, FrameworkMethod method, Object target) {
+		Assert.state((this.setupMode != SetupMode.SNAPSHOT) || (this.runningClassRules.get() > 0),
+				"SetupMode.SNAPSHOT requires a static DbUnitRule with its classRule()");
+		if ((this.runningClassRules.get() == 0) && logger.isDebugEnabled()) {
+			logger.debug("DataSource connections are not pooled for " + method.getName()
+					+ ", use a static DbUnitRule with its classRule() to reuse connections");
+		}
 		DbUnitTestContextAdapter context = new DbUnitTestContextAdapter(method, target);
 		return new DbUnitStatement(context, base);
 	}
 
+	/**
+	 * Returns a rule that can be used as a <code>&#064;ClassRule</code> to pool connections between the tests of a
+	 * class. Connections are only pooled while the class rule runs and are discarded once all tests of the class have
+	 * run. The class rule is also required to use {@link SetupMode#SNAPSHOT}, snapshots are dropped when it completes.
+	 * @return the class rule
+	 */
+	public TestRule classRule() {
+		return new TestRule() {
+			public Statement apply(final Statement base, final Description description) {
+				return new Statement() {
+					@Override
+					public void evaluate() throws Throwable {
+						DbUnitRule.this.runningClassRules.incrementAndGet();
+						try {
+							base.evaluate();
+						} finally {
+							if (DbUnitRule.this.runningClassRules.decrementAndGet() == 0) {
+								DbUnitRule.this.idleConnections.clear();
+							}
+							if (description.getTestClass() != null) {
+								runner.afterTestClass(description.getTestClass());
+							}
+						}
+					}
+				};
+			}
+		};
+	}
+
 	/**
 	 * Set the {@link DataSource} that will be used when running DBUnit tests. Note: Setting a data source will replace
 	 * any previously configured {@link #setDatabaseConnections(java.util.Map)} <String, DataSource>) connections}.
 	 * @param dataSourcesMap The data source
 	 */
 	public void setDataSources(Map<String, DataSource> dataSourcesMap) {
-      for(String dataSourceName : dataSourcesMap.keySet()) {
-         this.connectionsMap.put(dataSourceName, DatabaseDataSourceConnectionFactoryBean.newConnection(dataSourcesMap.get(dataSourceName)));
-      }
+		this.connectionSources.putAll(dataSourcesMap);
 	}
 
 	/**
@@ -89,7 +181,7 @@ public class DbUnitRule implements MethodRule {
 	 * @param connectionsMap The connections
 	 */
 	public void setDatabaseConnections(Map<String, IDatabaseConnection> connectionsMap) {
-		this.connectionsMap.putAll(connectionsMap);
+		this.connectionSources.putAll(connectionsMap);
 	}
 
 	/**
@@ -108,11 +200,93 @@ public class DbUnitRule implements MethodRule {
 		this.databaseOperationLookup = databaseOperationLookup;
 	}
 
+	/**
+	 * Set the {@link SetupMode} that will be used to apply setup datasets. Defaults to {@link SetupMode#DEFAULT}.
+	 * {@link SetupMode#SNAPSHOT} can only be used with the {@link #classRule() class rule}.
+	 * @param setupMode the setup mode
+	 */
+	public void setSetupMode(SetupMode setupMode) {
+		this.setupMode = setupMode;
+	}
+
+	/**
+	 * Set if setup and teardown datasets for different connections should be applied in parallel. Defaults to
+	 * <code>false</code>.
+	 * @param parallelSetup if parallel setup is enabled
+	 */
+	public void setParallelSetup(boolean parallelSetup) {
+		this.parallelSetup = parallelSetup;
+	}
+
+	/**
+	 * Set the {@link ConstraintMode} used to check foreign key constraints while setup and teardown datasets are
+	 * applied. Defaults to {@link ConstraintMode#ENFORCED}.
+	 * @param constraintMode the constraint mode
+	 */
+	public void setConstraintMode(ConstraintMode constraintMode) {
+		this.constraintMode = constraintMode;
+	}
+
+	/**
+	 * Set if the tables of each dataset should be loaded in parallel using several connections. Tables are only loaded
+	 * in parallel when {@link #setConstraintMode constraints are deferred}. Defaults to <code>false</code>.
+	 * @param parallelTableLoading if parallel table loading is enabled
+	 */
+	public void setParallelTableLoading(boolean parallelTableLoading) {
+		this.parallelTableLoading = parallelTableLoading;
+	}
+
+	/**
+	 * Set the {@link IsolationMode} used to isolate the changes made by each test. Defaults to
+	 * {@link IsolationMode#TEARDOWN}. {@link IsolationMode#ROLLBACK} requires the rule to run inside a transaction that
+	 * is rolled back, {@link IsolationMode#SAVEPOINT} is not supported by the rule.
+	 * @param isolationMode the isolation mode
+	 */
+	public void setIsolationMode(IsolationMode isolationMode) {
+		Assert.notNull(isolationMode, "IsolationMode must not be null");
+		Assert.isTrue(isolationMode != IsolationMode.SAVEPOINT,
+				"IsolationMode.SAVEPOINT is not supported by DbUnitRule");
+		this.isolationMode = isolationMode;
+	}
+
+	private IDatabaseConnection acquireConnection(DataSource dataSource) {
+		IDatabaseConnection connection = (this.runningClassRules.get() == 0 ? null : getIdleConnections(dataSource)
+				.poll());
+		return (connection != null ? connection : DatabaseDataSourceConnectionFactoryBean.newConnection(dataSource));
+	}
+
+	private void releaseConnection(DataSource dataSource, IDatabaseConnection connection) {
+		try {
+			// Usually already closed by the runner, closing again is ignored
+			connection.close();
+		} catch (SQLException e) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Unable to close database connection, the connection will not be reused", e);
+			}
+			return;
+		}
+		if (this.runningClassRules.get() > 0) {
+			getIdleConnections(dataSource).offer(connection);
+		}
+	}
+
+	private Queue<IDatabaseConnection> getIdleConnections(DataSource dataSource) {
+		synchronized (this.idleConnections) {
+			Queue<IDatabaseConnection> connections = this.idleConnections.get(dataSource);
+			if (connections == null) {
+				connections = new ConcurrentLinkedQueue<IDatabaseConnection>();
+				this.idleConnections.put(dataSource, connections);
+			}
+			return connections;
+		}
+	}
+
 	private static TestClassFields getTestClassFields(Class<?> testClass) {
-		TestClassFields fields = DbUnitRule.fields.get(testClass);
+		SoftReference<TestClassFields> reference = DbUnitRule.fields.get(testClass);
+		TestClassFields fields = (reference == null ? null : reference.get());
 		if (fields == null) {
 			fields = new TestClassFields(testClass);
-			DbUnitRule.fields.put(testClass, fields);
+			DbUnitRule.fields.put(testClass, new SoftReference<TestClassFields>(fields));
 		}
 		return fields;
 	}
@@ -122,6 +296,10 @@ public class DbUnitRule implements MethodRule {
 		private FrameworkMethod method;
 		private Object target;
 		private Throwable testException;
+		private Map<String, IDatabaseConnection> connectionsMap;
+		private Map<IDatabaseConnection, DataSource> acquiredConnections = new HashMap<IDatabaseConnection, DataSource>();
+		private DataSetLoader dataSetLoader;
+		private DatabaseOperationLookup databaseOperationLookup;
 
 		public DbUnitTestContextAdapter(FrameworkMethod method, Object target) {
 			this.method = method;
@@ -139,44 +317,101 @@ public class DbUnitRule implements MethodRule {
 		}
 
 		public Map<String, IDatabaseConnection> getConnectionsMap() {
+			if (this.connectionsMap == null) {
+				Map<String, Object> connectionSources = new LinkedHashMap<String, Object>(
+						DbUnitRule.this.connectionSources);
+				connectionSources.putAll(getFields(IDatabaseConnection.class));
+				connectionSources.putAll(getFields(DataSource.class));
+				if (connectionSources.isEmpty()) {
+					throw new IllegalStateException(
+							"Unable to locate database connection for DbUnitRule.  Ensure that a DataSource or IDatabaseConnection "
+									+ "is available as a private member of your test");
+				}
+				Map<String, IDatabaseConnection> connectionsMap = new LinkedHashMap<String, IDatabaseConnection>();
+				for (Map.Entry<String, Object> entry : connectionSources.entrySet()) {
+					connectionsMap.put(entry.getKey(), getConnection(entry.getValue()));
+				}
+				this.connectionsMap = connectionsMap;
+			}
+			return this.connectionsMap;
+		}
 
-         DbUnitRule.this.connectionsMap.putAll(getFields(IDatabaseConnection.class));
-
-         Map<String, DataSource> dataSourceMap = getFields(DataSource.class);
-         for(String dataSourceFieldName : dataSourceMap.keySet()) {
-            DbUnitRule.this.connectionsMap.put(dataSourceFieldName, DatabaseDataSourceConnectionFactoryBean
-                                                                       .newConnection(dataSourceMap.get(dataSourceFieldName)));
-         }
+		private IDatabaseConnection getConnection(Object connectionSource) {
+			if (connectionSource instanceof DataSource) {
+				IDatabaseConnection connection = acquireConnection((DataSource) connectionSource);
+				this.acquiredConnections.put(connection, (DataSource) connectionSource);
+				return connection;
+			}
+			return (IDatabaseConnection) connectionSource;
+		}
 
-         if (DbUnitRule.this.connectionsMap.isEmpty()) {
-            throw new IllegalStateException(
-                  "Unable to locate database connection for DbUnitRule.  Ensure that a DataSource or IDatabaseConnection "
-                        + "is available as a private member of your test");
-         }
+		void closeConnections() throws SQLException {
+			if (this.connectionsMap != null) {
+				for (IDatabaseConnection connection : this.connectionsMap.values()) {
+					connection.close();
+				}
+			}
+		}
 
-			return DbUnitRule.this.connectionsMap;
+		/**
+		 * Return connections obtained from {@link DataSource}s so that they can be reused by other tests. Connections
+		 * that cannot be closed are discarded.
+		 */
+		void releaseConnections() {
+			for (Map.Entry<IDatabaseConnection, DataSource> entry : this.acquiredConnections.entrySet()) {
+				releaseConnection(entry.getValue(), entry.getKey());
+			}
+			this.acquiredConnections.clear();
+			this.connectionsMap = null;
 		}
 
 		public DataSetLoader getDataSetLoader() {
-			if (DbUnitRule.this.dataSetLoader == null) {
-				if (hasField(DataSetLoader.class)) {
-					DbUnitRule.this.dataSetLoader = getFields(DataSetLoader.class).values().iterator().next();
-				} else {
-					DbUnitRule.this.dataSetLoader = new FlatXmlDataSetLoader();
+			if (this.dataSetLoader == null) {
+				this.dataSetLoader = DbUnitRule.this.dataSetLoader;
+				if (this.dataSetLoader == null) {
+					if (hasField(DataSetLoader.class)) {
+						this.dataSetLoader = getFields(DataSetLoader.class).values().iterator().next();
+					} else {
+						this.dataSetLoader = new FlatXmlDataSetLoader();
+					}
 				}
 			}
-			return DbUnitRule.this.dataSetLoader;
+			return this.dataSetLoader;
 		}
 
 		public DatabaseOperationLookup getDatbaseOperationLookup() {
-			if (DbUnitRule.this.databaseOperationLookup == null) {
-				if (hasField(DatabaseOperationLookup.class)) {
-					DbUnitRule.this.databaseOperationLookup = getFields(DatabaseOperationLookup.class).values().iterator().next();
-				} else {
-					DbUnitRule.this.databaseOperationLookup = new DefaultDatabaseOperationLookup();
+			if (this.databaseOperationLookup == null) {
+				this.databaseOperationLookup = DbUnitRule.this.databaseOperationLookup;
+				if (this.databaseOperationLookup == null) {
+					if (hasField(DatabaseOperationLookup.class)) {
+						this.databaseOperationLookup = getFields(DatabaseOperationLookup.class).values().iterator()
+								.next();
+					} else {
+						this.databaseOperationLookup = new DefaultDatabaseOperationLookup();
+					}
 				}
 			}
-			return DbUnitRule.this.databaseOperationLookup;
+			return this.databaseOperationLookup;
+		}
+
+		public SetupMode getSetupMode() {
+			return DbUnitRule.this.setupMode;
+		}
+
+		public boolean isParallelSetup() {
+			return DbUnitRule.this.parallelSetup;
+		}
+
+		public ConstraintMode getConstraintMode() {
+			return DbUnitRule.this.constraintMode;
+		}
+
+		public boolean isParallelTableLoading() {
+			return DbUnitRule.this.parallelTableLoading;
+		}
+
+		public IsolationMode getIsolationMode() {
+			return DbUnitRule.this.isolationMode;
 		}
 
 		public Class<?> getTestClass() {
@@ -208,21 +443,30 @@ public class DbUnitRule implements MethodRule {
 
 		@Override
 		public void evaluate() throws Throwable {
-			runner.beforeTestMethod(this.testContext);
 			try {
-				this.nextStatement.evaluate();
-			} catch (Throwable e) {
-				this.testContext.setTestException(e);
-				throw e;
+				try {
+					runner.beforeTestMethod(this.testContext);
+				} catch (Throwable e) {
+					this.testContext.closeConnections();
+					throw e;
+				}
+				try {
+					this.nextStatement.evaluate();
+				} catch (Throwable e) {
+					this.testContext.setTestException(e);
+					throw e;
+				} finally {
+					runner.afterTestMethod(this.testContext);
+				}
 			} finally {
-				runner.afterTestMethod(this.testContext);
+				this.testContext.releaseConnections();
 			}
 		}
 	}
 
 	private static class TestClassFields {
 
-		private Map<Class<?>, Set<Field>> fieldMap = new HashMap<Class<?>, Set<Field>>();
+		private Map<Class<?>, Set<Field>> fieldMap = new ConcurrentHashMap<Class<?>, Set<Field>>();
 
 		private Class<?> testClass;
 
@@ -231,8 +475,9 @@ public class DbUnitRule implements MethodRule {
 		}
 
 		private Set<Field> getFields(final Class<?> type) {
-			if (this.fieldMap.containsKey(type)) {
-				return this.fieldMap.get(type);
+			Set<Field> cached = this.fieldMap.get(type);
+			if (cached != null) {
+				return cached;
 			}
 			final Set<Field> fields = new HashSet<Field>();
 			ReflectionUtils.doWithFields(this.testClass, new ReflectionUtils.FieldCallback() {
@@ -15,20 +15,51 @@
  */
 package com.github.springtestdbunit;
 
+import com.github.springtestdbunit.DbUnitTestPlan.AnnotationAttributes;
+import com.github.springtestdbunit.DbUnitTestPlan.Expectation;
 import com.github.springtestdbunit.annotation.*;
 import com.github.springtestdbunit.assertion.DatabaseAssertion;
+import com.github.springtestdbunit.assertion.DatabaseAssertionMode;
+import com.github.springtestdbunit.assertion.FilteredDatabaseDataSet;
+import com.github.springtestdbunit.bean.DatabaseConfigBean;
+import com.github.springtestdbunit.bean.DatabaseDataSourceConnectionFactoryBean;
+import com.github.springtestdbunit.bean.TableModificationTracker;
+import com.github.springtestdbunit.bean.TrackedDatabaseDataSourceConnection;
+import com.github.springtestdbunit.bean.WorkerSchemaDatabaseConnection;
+import com.github.springtestdbunit.dataset.AbstractDataSetLoader;
 import com.github.springtestdbunit.dataset.DataSetLoader;
+import com.github.springtestdbunit.dataset.FlatXmlStreamingDataSet;
+import com.github.springtestdbunit.timing.Phase;
+import com.github.springtestdbunit.timing.PhaseEvent;
+import com.github.springtestdbunit.timing.PhaseListeners;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.CompositeDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.FilteredDataSet;
 import org.dbunit.dataset.IDataSet;
-import org.springframework.core.annotation.AnnotationUtils;
+import org.dbunit.dataset.stream.StreamingDataSet;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
-import java.lang.annotation.Annotation;
+import javax.sql.DataSource;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Internal delegate class used to run tests with support for {@link DatabaseSetup &#064;DatabaseSetup},
@@ -41,17 +72,162 @@ class DbUnitRunner {
 
 	private static final Log logger = LogFactory.getLog(DbUnitTestExecutionListener.class);
 
+	private static final Set<DatabaseOperation> STREAMING_OPERATIONS = EnumSet.of(DatabaseOperation.INSERT,
+			DatabaseOperation.CLEAN_INSERT, DatabaseOperation.UPDATE, DatabaseOperation.REFRESH,
+			DatabaseOperation.DELETE_ALL, DatabaseOperation.TRUNCATE_TABLE);
+
+	private static final Set<DatabaseOperation> SNAPSHOT_OPERATIONS = EnumSet.of(DatabaseOperation.CLEAN_INSERT,
+			DatabaseOperation.SMART_CLEAN_INSERT, DatabaseOperation.DELETE_ALL, DatabaseOperation.TRUNCATE_TABLE);
+
+	private static final Set<DatabaseOperation> MERGED_OPERATIONS = EnumSet.of(DatabaseOperation.CLEAN_INSERT,
+			DatabaseOperation.SMART_CLEAN_INSERT);
+
+	private static final ExecutorService SETUP_EXECUTOR;
+	static {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("dbunit-setup-");
+		threadFactory.setDaemon(true);
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		SETUP_EXECUTOR = Executors.newFixedThreadPool(threads, threadFactory);
+	}
+
 	/**
 	 * Called before a test method is executed to perform any database setup.
 	 * @param testContext The test context
 	 * @throws Exception
 	 */
 	public void beforeTestMethod(DbUnitTestContext testContext) throws Exception {
-		Collection<DatabaseSetup> annotations = getAnnotations(testContext, DatabaseSetup.class);
+		DbUnitTestPlan plan = getPlan(testContext);
+		List<List<AnnotationAttributes>> setups;
+		if (testContext.getIsolationMode() == IsolationMode.SAVEPOINT) {
+			Assert.state(!TransactionSynchronizationManager.isActualTransactionActive(),
+					"IsolationMode.SAVEPOINT cannot be used with Spring managed transactions");
+			// Class-level setup has already been applied by beforeTestClass
+			setups = plan.getMethodSetups();
+		} else {
+			setups = plan.getSetups();
+		}
 
-      for(DatabaseSetup annotation : annotations) {
-         setupOrTeardown(testContext, true, AnnotationAttributes.get(Arrays.asList(annotation.connections())));
-      }
+		if (testContext.getIsolationMode() == IsolationMode.ROLLBACK) {
+			Assert.state(TransactionSynchronizationManager.isActualTransactionActive(),
+					"IsolationMode.ROLLBACK requires tests to run in a transaction, consider using "
+							+ "TransactionDbUnitTestExecutionListener with @Transactional tests");
+			for (Map.Entry<String, IDatabaseConnection> entry : testContext.getConnectionsMap().entrySet()) {
+				Assert.state(isTransactional(entry.getValue()), "IsolationMode.ROLLBACK requires connection "
+						+ entry.getKey() + " to participate in the test transaction, consider using a "
+						+ "TransactionAwareDataSourceProxy");
+			}
+		}
+
+		setup(testContext, setups);
+	}
+
+	/**
+	 * Called before any test method of a class using {@link IsolationMode#SAVEPOINT} is executed to perform class-level
+	 * database setup.
+	 * @param testContext The test context
+	 * @throws Exception
+	 */
+	public void beforeTestClass(DbUnitTestContext testContext) throws Exception {
+		setup(testContext, DbUnitTestPlan.get(testContext.getTestClass(), null).getClassSetups());
+	}
+
+	private void setup(DbUnitTestContext testContext, List<List<AnnotationAttributes>> setups) throws Exception {
+		if (testContext.getSetupMode() == SetupMode.SNAPSHOT) {
+			List<AnnotationAttributes> connections = new ArrayList<AnnotationAttributes>();
+			for (List<AnnotationAttributes> setup : setups) {
+				connections.addAll(setup);
+			}
+			setupUsingSnapshots(testContext, connections);
+			return;
+		}
+
+		for (List<AnnotationAttributes> setup : setups) {
+			setupOrTeardown(testContext, true, setup);
+		}
+	}
+
+	private DbUnitTestPlan getPlan(DbUnitTestContext testContext) {
+		return DbUnitTestPlan.get(testContext.getTestClass(), testContext.getTestMethod());
+	}
+
+	private void setupUsingSnapshots(DbUnitTestContext testContext, Collection<AnnotationAttributes> annotations)
+			throws Exception {
+		Map<String, List<AnnotationAttributes>> annotationsByConnection = new LinkedHashMap<String, List<AnnotationAttributes>>();
+		for (AnnotationAttributes annotation : annotations) {
+			List<AnnotationAttributes> connectionAnnotations = annotationsByConnection.get(annotation.getConnectionName());
+			if (connectionAnnotations == null) {
+				connectionAnnotations = new ArrayList<AnnotationAttributes>();
+				annotationsByConnection.put(annotation.getConnectionName(), connectionAnnotations);
+			}
+			connectionAnnotations.add(annotation);
+		}
+		for (List<AnnotationAttributes> connectionAnnotations : annotationsByConnection.values()) {
+			if (!isSnapshotSupported(connectionAnnotations)) {
+				setupOrTeardown(testContext, true, connectionAnnotations);
+				continue;
+			}
+			IDatabaseConnection connection = getConnection(testContext, connectionAnnotations.get(0)
+					.getConnectionName());
+			String key = DatabaseSnapshot.getKey(connection, getSnapshotDescription(testContext, connectionAnnotations));
+			DatabaseSnapshot snapshot = DatabaseSnapshot.get(testContext.getTestClass(), key);
+			if (snapshot != null) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Restoring @DatabaseTest setup from snapshot " + key);
+				}
+				snapshot.restore(connection);
+			} else {
+				List<IDataSet> dataSets = setupOrTeardown(testContext, true, connectionAnnotations);
+				createSnapshot(testContext, key, connection, dataSets);
+			}
+		}
+	}
+
+	private boolean isSnapshotSupported(Collection<AnnotationAttributes> annotations) {
+		for (AnnotationAttributes annotation : annotations) {
+			if (!SNAPSHOT_OPERATIONS.contains(annotation.getType())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String getSnapshotDescription(DbUnitTestContext testContext, Collection<AnnotationAttributes> annotations) {
+		StringBuilder description = new StringBuilder();
+		description.append(testContext.getDataSetLoader().getClass().getName());
+		description.append("|").append(testContext.getTestClass().getPackage());
+		for (AnnotationAttributes annotation : annotations) {
+			description.append("|").append(annotation.getType()).append(Arrays.asList(annotation.getValue()));
+		}
+		return description.toString();
+	}
+
+	private void createSnapshot(DbUnitTestContext testContext, String key, IDatabaseConnection connection,
+			List<IDataSet> dataSets) throws Exception {
+		DataSource dataSource = DatabaseDataSourceConnectionFactoryBean.getDataSource(connection);
+		// Snapshots are dropped using a new connection from the data source
+		if (dataSource == null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unable to create a snapshot for a connection without a DataSource");
+			}
+			return;
+		}
+		Set<String> tableNames = new LinkedHashSet<String>();
+		for (IDataSet dataSet : dataSets) {
+			if (isStreaming(dataSet)) {
+				return;
+			}
+			tableNames.addAll(Arrays.asList(dataSet.getTableNames()));
+		}
+		DatabaseSnapshot.create(testContext.getTestClass(), key, connection, dataSource,
+				new ArrayList<String>(tableNames));
+	}
+
+	/**
+	 * Called once all test methods of a class have run to drop any snapshots created for {@link SetupMode#SNAPSHOT}.
+	 * @param testClass The test class
+	 */
+	public void afterTestClass(Class<?> testClass) {
+		DatabaseSnapshot.dropAll(testClass);
 	}
 
 	/**
@@ -61,10 +237,15 @@ class DbUnitRunner {
 	 */
 	public void afterTestMethod(DbUnitTestContext testContext) throws Exception {
 		try {
-			verifyExpected(testContext, getAnnotations(testContext, ExpectedDatabase.class));
-			Collection<DatabaseTearDown> annotations = getAnnotations(testContext, DatabaseTearDown.class);
+			verifyExpected(testContext, getPlan(testContext).getExpectations());
+			if (testContext.getIsolationMode() != IsolationMode.TEARDOWN) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Skipping @DatabaseTearDown, changes will be rolled back");
+				}
+				return;
+			}
 			try {
-				setupOrTeardown(testContext, false, AnnotationAttributes.get(annotations));
+				setupOrTeardown(testContext, false, getPlan(testContext).getTeardowns());
 			} catch (RuntimeException e) {
 				if (testContext.getTestException() == null) {
 					throw e;
@@ -74,7 +255,42 @@ class DbUnitRunner {
 				}
 			}
 		} finally {
-			closeConnections(testContext);
+			if (testContext.getIsolationMode() == IsolationMode.ROLLBACK) {
+				releaseTransactionalConnections(testContext);
+			} else if (testContext.getIsolationMode() != IsolationMode.SAVEPOINT) {
+				closeConnections(testContext);
+			}
+		}
+	}
+
+	/**
+	 * Determine if the JDBC connection of the specified DBUnit connection is the one bound to the current transaction
+	 * by Spring's {@link DataSourceUtils}, either directly or using a {@link TransactionAwareDataSourceProxy}.
+	 */
+	private boolean isTransactional(IDatabaseConnection connection) throws SQLException {
+		Connection jdbcConnection = connection.getConnection();
+		if (jdbcConnection instanceof ConnectionProxy) {
+			jdbcConnection = ((ConnectionProxy) jdbcConnection).getTargetConnection();
+		}
+		for (Object key : TransactionSynchronizationManager.getResourceMap().keySet()) {
+			if ((key instanceof DataSource)
+					&& DataSourceUtils.isConnectionTransactional(jdbcConnection, (DataSource) key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Connections used with {@link IsolationMode#ROLLBACK} belong to the test transaction and are not closed. Handles
+	 * obtained from a {@link TransactionAwareDataSourceProxy} are released so that the next test obtains the connection
+	 * of its own transaction, closing them never closes the transactional connection.
+	 */
+	private void releaseTransactionalConnections(DbUnitTestContext testContext) throws SQLException {
+		for (IDatabaseConnection connection : testContext.getConnectionsMap().values()) {
+			if (connection.getConnection() instanceof ConnectionProxy) {
+				connection.close();
+			}
 		}
 	}
 
@@ -85,21 +301,7 @@ class DbUnitRunner {
       }
    }
 
-	private <T extends Annotation> Collection<T> getAnnotations(DbUnitTestContext testContext, Class<T> annotationType) {
-		List<T> annotations = new ArrayList<T>();
-		addAnnotationToList(annotations, AnnotationUtils.findAnnotation(testContext.getTestClass(), annotationType));
-		addAnnotationToList(annotations, AnnotationUtils.findAnnotation(testContext.getTestMethod(), annotationType));
-		return annotations;
-	}
-
-	private <T extends Annotation> void addAnnotationToList(List<T> annotations, T annotation) {
-		if (annotation != null) {
-			annotations.add(annotation);
-		}
-	}
-
-	private void verifyExpected(DbUnitTestContext testContext, Collection<ExpectedDatabase> annotations)
-			throws Exception {
+	private void verifyExpected(DbUnitTestContext testContext, List<Expectation> expectations) throws Exception {
 		if (testContext.getTestException() != null) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("Skipping @DatabaseTest expectation due to test exception "
@@ -108,27 +310,53 @@ class DbUnitRunner {
 			return;
 		}
 
-      for(ExpectedDatabase annotation : annotations) {
-         String connectionName = annotation.connection();
+      for(Expectation expectation : expectations) {
+         String connectionName = expectation.getConnectionName();
          IDatabaseConnection connection = testContext.getConnectionsMap().get(connectionName);
-         IDataSet actualDataSet = connection.createDataSet();
-         IDataSet expectedDataSet = loadDataset(testContext, annotation.value());
+         IDataSet expectedDataSet = loadDataset(testContext, connectionName, expectation.getValue());
          if (expectedDataSet != null) {
+            Assert.state(!isStreaming(expectedDataSet), "Streaming dataset " + expectation.getValue()
+                  + " cannot be used with @ExpectedDatabase");
             if (logger.isDebugEnabled()) {
-               logger.debug("Veriftying @DatabaseTest expectation using " + annotation.value());
+               logger.debug("Veriftying @DatabaseTest expectation using " + expectation.getValue());
             }
-            DatabaseAssertion assertion = annotation.assertionMode().getDatabaseAssertion();
+            long startTime = phaseStarted(Phase.FETCH);
+            IDataSet actualDataSet = getActualDataSet(connection, expectedDataSet, expectation.getAssertionMode());
+            phaseCompleted(testContext, Phase.FETCH, startTime, connectionName, expectation.getValue(), null,
+                  expectedDataSet);
+            DatabaseAssertion assertion = expectation.getAssertionMode().getDatabaseAssertion();
+            startTime = phaseStarted(Phase.COMPARE);
             assertion.assertEquals(expectedDataSet, actualDataSet);
+            phaseCompleted(testContext, Phase.COMPARE, startTime, connectionName, expectation.getValue(), null,
+                  expectedDataSet);
          }
 
       }
 
 	}
 
-	private IDataSet loadDataset(DbUnitTestContext testContext, String dataSetLocation) throws Exception {
+	private IDataSet getActualDataSet(IDatabaseConnection connection, IDataSet expectedDataSet,
+			DatabaseAssertionMode assertionMode) throws SQLException, DataSetException {
+		if (assertionMode == DatabaseAssertionMode.NON_STRICT_HASH) {
+			// Rows are only read when the hashes calculated by the comparison differ
+			return new FilteredDatabaseDataSet(connection, expectedDataSet, true);
+		}
+		IDataSet actualDataSet;
+		if (assertionMode == DatabaseAssertionMode.NON_STRICT) {
+			// Only expected tables and columns are compared so there is no need to read the entire schema
+			actualDataSet = new FilteredDatabaseDataSet(connection, expectedDataSet, true);
+		} else {
+			actualDataSet = DatabaseSnapshot.excludeSnapshotTables(connection.createDataSet());
+		}
+		// Read the tables now so that the time taken is reported as the fetch phase
+		return new CachedDataSet(actualDataSet);
+	}
+
+	private IDataSet loadDataset(DbUnitTestContext testContext, String connectionName, String dataSetLocation)
+			throws Exception {
 		DataSetLoader dataSetLoader = testContext.getDataSetLoader();
 		if (StringUtils.hasLength(dataSetLocation)) {
-			IDataSet dataSet = dataSetLoader.loadDataSet(testContext.getTestClass(), dataSetLocation);
+			IDataSet dataSet = loadDataset(testContext, dataSetLoader, connectionName, dataSetLocation);
 			Assert.notNull(dataSet,
 					"Unable to load dataset from \"" + dataSetLocation + "\" using " + dataSetLoader.getClass());
 			return dataSet;
@@ -136,85 +364,385 @@ class DbUnitRunner {
 		return null;
 	}
 
-   private void setupOrTeardown(DbUnitTestContext testContext, boolean isSetup,
-                                Collection<AnnotationAttributes> annotations) throws Exception {
-      Map<String, IDatabaseConnection> connectionsMap = testContext.getConnectionsMap();
-      DatabaseOperation lastOperation = null;
-      IDatabaseConnection connection = connectionsMap.values().iterator().next();
-
-      for(AnnotationAttributes annotation : annotations) {
-         DatabaseOperation operation = annotation.getType();
-         String connectionName = annotation.getConnectionName();
-         for(String dataSetLocation : annotation.getValue()) {
-
-            org.dbunit.operation.DatabaseOperation dbUnitDatabaseOperation =
-               getDbUnitDatabaseOperation(testContext, operation, lastOperation);
-            IDataSet dataSet = loadDataset(testContext, dataSetLocation);
-            if(dataSet != null) {
-               if(logger.isDebugEnabled()) {
-                  logger.debug("Executing " + (isSetup ? "Setup" : "Teardown") + " of @DatabaseTest using "
-                                  + operation + " on " + dataSetLocation);
-               }
-               if(StringUtils.hasText(connectionName)) {
-                  connection = connectionsMap.get(connectionName);
-                  if(logger.isDebugEnabled()) {
-                     logger.info("Loading dataset " + dataSetLocation + " to connection:" + connectionName);
-                  }
-               }
-               dbUnitDatabaseOperation.execute(connection, dataSet);
-               lastOperation = operation;
-            }
-         }
-         lastOperation = null;
-      }
-   }
+	private IDataSet loadDataset(DbUnitTestContext testContext, DataSetLoader dataSetLoader, String connectionName,
+			String dataSetLocation) throws Exception {
+		if (!(dataSetLoader instanceof AbstractDataSetLoader)) {
+			// Resolving and parsing cannot be separated for other loaders
+			long startTime = phaseStarted(Phase.PARSE);
+			IDataSet dataSet = dataSetLoader.loadDataSet(testContext.getTestClass(), dataSetLocation);
+			phaseCompleted(testContext, Phase.PARSE, startTime, connectionName, dataSetLocation, null, dataSet);
+			return dataSet;
+		}
+		AbstractDataSetLoader abstractDataSetLoader = (AbstractDataSetLoader) dataSetLoader;
+		long startTime = phaseStarted(Phase.RESOLVE);
+		Resource resource = getPlan(testContext).getResource(abstractDataSetLoader, testContext.getTestClass(),
+				dataSetLocation);
+		phaseCompleted(testContext, Phase.RESOLVE, startTime, connectionName, dataSetLocation, null, null);
+		if (resource == null) {
+			return null;
+		}
+		startTime = phaseStarted(Phase.PARSE);
+		IDataSet dataSet = abstractDataSetLoader.loadDataSet(resource);
+		phaseCompleted(testContext, Phase.PARSE, startTime, connectionName, dataSetLocation, null, dataSet);
+		return dataSet;
+	}
 
-	private org.dbunit.operation.DatabaseOperation getDbUnitDatabaseOperation(DbUnitTestContext testContext,
-			DatabaseOperation operation, DatabaseOperation lastOperation) {
-		if ((operation == DatabaseOperation.CLEAN_INSERT) && (lastOperation == DatabaseOperation.CLEAN_INSERT)) {
-			operation = DatabaseOperation.INSERT;
+	private long phaseStarted(Phase phase) {
+		if (PhaseListeners.hasListeners()) {
+			PhaseListeners.phaseStarted(phase);
 		}
-		org.dbunit.operation.DatabaseOperation databaseOperation = testContext.getDatbaseOperationLookup().get(
-				operation);
-		Assert.state(databaseOperation != null, "The databse operation " + operation + " is not supported");
-		return databaseOperation;
+		return System.nanoTime();
+	}
+
+	private void phaseCompleted(DbUnitTestContext testContext, Phase phase, long startTime, String connectionName,
+			String dataSetLocation, DatabaseOperation operation, IDataSet dataSet) {
+		if (PhaseListeners.hasListeners()) {
+			long duration = System.nanoTime() - startTime;
+			// Streaming datasets cannot be read again to count rows
+			PhaseListeners.phaseCompleted(new PhaseEvent(phase, testContext.getTestClass(), testContext
+					.getTestMethod(), connectionName, dataSetLocation, operation, duration,
+					(dataSet == null || isStreaming(dataSet) ? null : dataSet)));
+		}
+	}
+
+	private List<IDataSet> setupOrTeardown(DbUnitTestContext testContext, boolean isSetup,
+			Collection<AnnotationAttributes> annotations) throws Exception {
+		Map<IDatabaseConnection, ConstraintMode> deferredConnections = getDeferredConstraintConnections(testContext,
+				annotations);
+		if (deferredConnections.isEmpty()) {
+			return applyDataSets(testContext, isSetup, annotations);
+		}
+		List<IDatabaseConnection> disabledConnections = new ArrayList<IDatabaseConnection>();
+		List<IDataSet> dataSets = null;
+		try {
+			for (IDatabaseConnection connection : deferredConnections.keySet()) {
+				ReferentialIntegrity.get(connection).disable(connection);
+				disabledConnections.add(connection);
+			}
+			dataSets = applyDataSets(testContext, isSetup, annotations);
+		} finally {
+			enableConstraints(disabledConnections, dataSets != null);
+		}
+		validateConstraints(deferredConnections, dataSets);
+		return dataSets;
 	}
 
-	private static class AnnotationAttributes {
+	private void enableConstraints(List<IDatabaseConnection> connections, boolean throwOnFailure) throws SQLException {
+		// Every connection is enabled even if another fails so that none are left without referential integrity
+		SQLException failure = null;
+		for (IDatabaseConnection connection : connections) {
+			try {
+				ReferentialIntegrity.get(connection).enable(connection);
+			} catch (SQLException e) {
+				if (logger.isWarnEnabled()) {
+					logger.warn("Unable to enable referential integrity", e);
+				}
+				failure = (failure == null ? e : failure);
+			}
+		}
+		// Failures are only logged when the datasets could not be applied so that the original error is thrown
+		if ((failure != null) && throwOnFailure) {
+			throw failure;
+		}
+	}
 
-		private DatabaseOperation type;
+	private Map<IDatabaseConnection, ConstraintMode> getDeferredConstraintConnections(DbUnitTestContext testContext,
+			Collection<AnnotationAttributes> annotations) {
+		Map<IDatabaseConnection, ConstraintMode> deferredConnections = new LinkedHashMap<IDatabaseConnection, ConstraintMode>();
+		if (annotations.isEmpty()) {
+			return deferredConnections;
+		}
+		// Only the connections that datasets are applied to, selected in the same way as applyDataSets
+		Map<String, IDatabaseConnection> connectionsMap = testContext.getConnectionsMap();
+		IDatabaseConnection connection = connectionsMap.values().iterator().next();
+		for (AnnotationAttributes annotation : annotations) {
+			if (StringUtils.hasText(annotation.getConnectionName())) {
+				connection = connectionsMap.get(annotation.getConnectionName());
+			}
+			ConstraintMode constraintMode = getConstraintMode(testContext, connection);
+			if ((constraintMode != ConstraintMode.ENFORCED) && !deferredConnections.containsKey(connection)) {
+				deferredConnections.put(connection, constraintMode);
+			}
+		}
+		return deferredConnections;
+	}
 
-		private String[] value;
+	private ConstraintMode getConstraintMode(DbUnitTestContext testContext, IDatabaseConnection connection) {
+		ConstraintMode constraintMode = testContext.getConstraintMode();
+		if ((constraintMode == null) || (constraintMode == ConstraintMode.ENFORCED)) {
+			constraintMode = DatabaseConfigBean.getAppliedConstraintMode(connection.getConfig());
+		}
+		return constraintMode;
+	}
 
-      private String connectionName;
+	private void validateConstraints(Map<IDatabaseConnection, ConstraintMode> deferredConnections,
+			List<IDataSet> dataSets) throws Exception {
+		Set<String> tableNames = new LinkedHashSet<String>();
+		for (IDataSet dataSet : dataSets) {
+			if (!isStreaming(dataSet)) {
+				tableNames.addAll(Arrays.asList(dataSet.getTableNames()));
+			}
+		}
+		for (Map.Entry<IDatabaseConnection, ConstraintMode> entry : deferredConnections.entrySet()) {
+			if (entry.getValue() == ConstraintMode.DEFERRED_VALIDATED) {
+				// Datasets are not tracked by connection, tables missing from a connection are ignored
+				ReferentialIntegrity.validate(entry.getKey(), tableNames);
+			}
+		}
+	}
 
-      public AnnotationAttributes(Annotation annotation) {
-			Assert.state((annotation instanceof DatabaseConnectionSetup) || (annotation instanceof DatabaseTearDown),
-					"Only DatabaseSetup and DatabaseTearDown annotations are supported");
-			Map<String, Object> attributes = AnnotationUtils.getAnnotationAttributes(annotation);
-			this.type = (DatabaseOperation) attributes.get("type");
-			this.value = (String[]) attributes.get("value");
-         this.connectionName = (String) attributes.get("connectionName");
+	private List<IDataSet> applyDataSets(DbUnitTestContext testContext, boolean isSetup,
+			Collection<AnnotationAttributes> annotations) throws Exception {
+		Map<String, IDatabaseConnection> connectionsMap = testContext.getConnectionsMap();
+		Map<IDatabaseConnection, List<AnnotationAttributes>> annotationsByConnection = new LinkedHashMap<IDatabaseConnection, List<AnnotationAttributes>>();
+		List<IDataSet> dataSets = new ArrayList<IDataSet>();
+		IDatabaseConnection connection = connectionsMap.values().iterator().next();
+		for (AnnotationAttributes annotation : annotations) {
+			if (StringUtils.hasText(annotation.getConnectionName())) {
+				connection = connectionsMap.get(annotation.getConnectionName());
+			}
+			if (!testContext.isParallelSetup()) {
+				dataSets.addAll(setupOrTeardown(testContext, isSetup, connection, annotation));
+				continue;
+			}
+			List<AnnotationAttributes> connectionAnnotations = annotationsByConnection.get(connection);
+			if (connectionAnnotations == null) {
+				connectionAnnotations = new ArrayList<AnnotationAttributes>();
+				annotationsByConnection.put(connection, connectionAnnotations);
+			}
+			connectionAnnotations.add(annotation);
 		}
+		if ((annotationsByConnection.size() > 1) && !isBoundToThread()
+				&& !hasWorkerSchemaConnection(annotationsByConnection.keySet())) {
+			return setupOrTeardownInParallel(testContext, isSetup, annotationsByConnection);
+		}
+		for (Map.Entry<IDatabaseConnection, List<AnnotationAttributes>> entry : annotationsByConnection.entrySet()) {
+			for (AnnotationAttributes annotation : entry.getValue()) {
+				dataSets.addAll(setupOrTeardown(testContext, isSetup, entry.getKey(), annotation));
+			}
+		}
+		return dataSets;
+	}
 
-		public DatabaseOperation getType() {
-			return this.type;
+	private boolean isBoundToThread() {
+		// Transaction aware connections would not see thread bound resources from a worker thread
+		return TransactionSynchronizationManager.isSynchronizationActive()
+				|| !TransactionSynchronizationManager.getResourceMap().isEmpty();
+	}
+
+	private boolean hasWorkerSchemaConnection(Collection<IDatabaseConnection> connections) {
+		// Worker schemas are selected per thread and so cannot be used from a different thread
+		for (IDatabaseConnection connection : connections) {
+			if (connection instanceof WorkerSchemaDatabaseConnection) {
+				return true;
+			}
 		}
+		return false;
+	}
 
-		public String[] getValue() {
-			return this.value;
+	private List<IDataSet> setupOrTeardownInParallel(final DbUnitTestContext testContext, final boolean isSetup,
+			Map<IDatabaseConnection, List<AnnotationAttributes>> annotationsByConnection) throws Exception {
+		List<Future<List<IDataSet>>> results = new ArrayList<Future<List<IDataSet>>>();
+		for (final Map.Entry<IDatabaseConnection, List<AnnotationAttributes>> entry : annotationsByConnection
+				.entrySet()) {
+			results.add(SETUP_EXECUTOR.submit(new Callable<List<IDataSet>>() {
+				public List<IDataSet> call() throws Exception {
+					List<IDataSet> dataSets = new ArrayList<IDataSet>();
+					for (AnnotationAttributes annotation : entry.getValue()) {
+						dataSets.addAll(setupOrTeardown(testContext, isSetup, entry.getKey(), annotation));
+					}
+					return dataSets;
+				}
+			}));
 		}
+		// Wait for all connections and report the failure of the first connection in declaration order
+		List<IDataSet> dataSets = new ArrayList<IDataSet>();
+		Throwable failure = null;
+		for (Future<List<IDataSet>> result : results) {
+			try {
+				dataSets.addAll(result.get());
+			} catch (ExecutionException e) {
+				failure = (failure == null ? e.getCause() : failure);
+			}
+		}
+		if (failure instanceof Exception) {
+			throw (Exception) failure;
+		}
+		if (failure != null) {
+			throw (Error) failure;
+		}
+		return dataSets;
+	}
 
-		public static <T extends Annotation> Collection<AnnotationAttributes> get(Collection<T> annotations) {
-			List<AnnotationAttributes> annotationAttributes = new ArrayList<AnnotationAttributes>();
-			for (T annotation : annotations) {
-				annotationAttributes.add(new AnnotationAttributes(annotation));
+	private List<IDataSet> setupOrTeardown(DbUnitTestContext testContext, boolean isSetup,
+			IDatabaseConnection connection, AnnotationAttributes annotation) throws Exception {
+		DatabaseOperation operation = annotation.getType();
+		String connectionName = annotation.getConnectionName();
+		List<String> dataSetLocations = new ArrayList<String>();
+		List<IDataSet> dataSets = new ArrayList<IDataSet>();
+		for (String dataSetLocation : annotation.getValue()) {
+			IDataSet dataSet = loadDataset(testContext, connectionName, dataSetLocation);
+			if (dataSet != null) {
+				Assert.state(!isStreaming(dataSet) || STREAMING_OPERATIONS.contains(operation), "Streaming dataset "
+						+ dataSetLocation + " cannot be used with " + operation + ", supported operations are "
+						+ STREAMING_OPERATIONS);
+				dataSetLocations.add(dataSetLocation);
+				dataSets.add(dataSet);
 			}
-			return annotationAttributes;
 		}
+		if ((dataSets.size() > 1) && MERGED_OPERATIONS.contains(operation) && isMergeable(dataSets)) {
+			// Delete the union of all tables once and insert each table using a single statement
+			IDataSet dataSet = new CompositeDataSet(dataSets.toArray(new IDataSet[dataSets.size()]));
+			String dataSetLocation = StringUtils.collectionToCommaDelimitedString(dataSetLocations);
+			return Collections.singletonList(execute(testContext, isSetup, connection, connectionName, operation, null,
+					dataSetLocation, dataSet));
+		}
+		if ((operation == DatabaseOperation.SMART_CLEAN_INSERT) && (dataSets.size() > 1)) {
+			// Each dataset would otherwise be compared with tables that also contain rows from the other datasets
+			operation = DatabaseOperation.CLEAN_INSERT;
+		}
+		List<IDataSet> executedDataSets = new ArrayList<IDataSet>();
+		DatabaseOperation lastOperation = null;
+		for (int i = 0; i < dataSets.size(); i++) {
+			executedDataSets.add(execute(testContext, isSetup, connection, connectionName, operation, lastOperation,
+					dataSetLocations.get(i), dataSets.get(i)));
+			lastOperation = operation;
+		}
+		return executedDataSets;
+	}
 
-      public String getConnectionName() {
-         return connectionName;
-      }
-   }
+	private IDataSet execute(DbUnitTestContext testContext, boolean isSetup, IDatabaseConnection connection,
+			String connectionName, DatabaseOperation operation, DatabaseOperation lastOperation,
+			String dataSetLocation, IDataSet dataSet) throws Exception {
+		org.dbunit.operation.DatabaseOperation dbUnitDatabaseOperation = getDbUnitDatabaseOperation(testContext,
+				operation, lastOperation);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executing " + (isSetup ? "Setup" : "Teardown") + " of @DatabaseTest using " + operation
+					+ " on " + dataSetLocation);
+		}
+		if (StringUtils.hasText(connectionName) && logger.isDebugEnabled()) {
+			logger.debug("Loading dataset " + dataSetLocation + " to connection:" + connectionName);
+		}
+		long startTime = phaseStarted(Phase.EXECUTE);
+		dataSet = sortTables(testContext, connection, dataSet);
+		dbUnitDatabaseOperation = makeParallel(testContext, connection, dbUnitDatabaseOperation, dataSet);
+		executeTracked(connection, dbUnitDatabaseOperation, dataSet,
+				getTrackedContent(testContext, operation, lastOperation, dataSetLocation));
+		phaseCompleted(testContext, Phase.EXECUTE, startTime, connectionName, dataSetLocation, operation, dataSet);
+		return dataSet;
+	}
+
+	private boolean isMergeable(List<IDataSet> dataSets) throws DataSetException {
+		// Combined tables take their columns from the first dataset that contains the table
+		Map<String, Set<String>> columnNamesByTable = new HashMap<String, Set<String>>();
+		for (IDataSet dataSet : dataSets) {
+			if (isStreaming(dataSet)) {
+				return false;
+			}
+			for (String tableName : dataSet.getTableNames()) {
+				Set<String> columnNames = new HashSet<String>();
+				for (Column column : dataSet.getTableMetaData(tableName).getColumns()) {
+					columnNames.add(column.getColumnName().toUpperCase());
+				}
+				Set<String> existing = columnNamesByTable.put(tableName.toUpperCase(), columnNames);
+				if ((existing != null) && !existing.equals(columnNames)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private IDataSet sortTables(DbUnitTestContext testContext, IDatabaseConnection connection, IDataSet dataSet)
+			throws Exception {
+		// Deferred constraints allow any order and streaming datasets can only be read once
+		if (isStreaming(dataSet) || (getConstraintMode(testContext, connection) != ConstraintMode.ENFORCED)) {
+			return dataSet;
+		}
+		return TableDependencyGraph.get(connection, dataSet.getTableNames()).sort(dataSet);
+	}
+
+	private org.dbunit.operation.DatabaseOperation makeParallel(DbUnitTestContext testContext,
+			IDatabaseConnection connection, org.dbunit.operation.DatabaseOperation dbUnitDatabaseOperation,
+			IDataSet dataSet) throws SQLException {
+		if (!testContext.isParallelTableLoading() || isStreaming(dataSet)
+				|| (getConstraintMode(testContext, connection) == ConstraintMode.ENFORCED)) {
+			return dbUnitDatabaseOperation;
+		}
+		DataSource dataSource = DatabaseDataSourceConnectionFactoryBean.getDataSource(connection);
+		// Worker connections would not see thread bound resources or the schema of the test thread
+		if ((dataSource == null) || isBoundToThread() || (connection instanceof WorkerSchemaDatabaseConnection)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unable to load tables in parallel, loading sequentially");
+			}
+			return dbUnitDatabaseOperation;
+		}
+		return new ParallelTableOperation(dbUnitDatabaseOperation, dataSource, ReferentialIntegrity.get(connection));
+	}
+
+	private void executeTracked(IDatabaseConnection connection,
+			org.dbunit.operation.DatabaseOperation dbUnitDatabaseOperation, IDataSet dataSet, String content)
+			throws Exception {
+		TableModificationTracker tracker = null;
+		if ((connection instanceof TrackedDatabaseDataSourceConnection) && !isStreaming(dataSet)) {
+			tracker = ((TrackedDatabaseDataSourceConnection) connection).getTracker();
+		}
+		if ((tracker == null) || (content == null)) {
+			dbUnitDatabaseOperation.execute(connection, dataSet);
+			return;
+		}
+		String[] tableNames = dataSet.getTableNames();
+		int firstModified = 0;
+		while ((firstModified < tableNames.length) && tracker.hasContent(tableNames[firstModified], content)) {
+			firstModified++;
+		}
+		if (firstModified < tableNames.length) {
+			// Tables that follow a modified table may reference it and so are always reset
+			String[] modifiedTableNames = new String[tableNames.length - firstModified];
+			System.arraycopy(tableNames, firstModified, modifiedTableNames, 0, modifiedTableNames.length);
+			if (logger.isDebugEnabled()) {
+				logger.debug("Resetting modified tables " + Arrays.asList(modifiedTableNames));
+			}
+			dbUnitDatabaseOperation.execute(connection, new FilteredDataSet(modifiedTableNames, dataSet));
+		}
+		for (String tableName : tableNames) {
+			((TrackedDatabaseDataSourceConnection) connection).recordContent(tableName, content);
+		}
+	}
+
+	private String getTrackedContent(DbUnitTestContext testContext, DatabaseOperation operation,
+			DatabaseOperation lastOperation, String dataSetLocation) {
+		if ((operation == DatabaseOperation.DELETE_ALL) || (operation == DatabaseOperation.TRUNCATE_TABLE)) {
+			return "";
+		}
+		if (((operation == DatabaseOperation.CLEAN_INSERT) && (lastOperation != DatabaseOperation.CLEAN_INSERT))
+				|| (operation == DatabaseOperation.SMART_CLEAN_INSERT)) {
+			return testContext.getDataSetLoader().getClass().getName() + "|" + testContext.getTestClass().getPackage()
+					+ "|" + dataSetLocation;
+		}
+		return null;
+	}
+
+	private IDatabaseConnection getConnection(DbUnitTestContext testContext, String connectionName) {
+		Map<String, IDatabaseConnection> connectionsMap = testContext.getConnectionsMap();
+		if (StringUtils.hasText(connectionName)) {
+			return connectionsMap.get(connectionName);
+		}
+		return connectionsMap.values().iterator().next();
+	}
+
+	private boolean isStreaming(IDataSet dataSet) {
+		return (dataSet instanceof StreamingDataSet) || (dataSet instanceof FlatXmlStreamingDataSet);
+	}
+
+	private org.dbunit.operation.DatabaseOperation getDbUnitDatabaseOperation(DbUnitTestContext testContext,
+			DatabaseOperation operation, DatabaseOperation lastOperation) {
+		if ((operation == DatabaseOperation.CLEAN_INSERT) && (lastOperation == DatabaseOperation.CLEAN_INSERT)) {
+			operation = DatabaseOperation.INSERT;
+		}
+		org.dbunit.operation.DatabaseOperation databaseOperation = testContext.getDatbaseOperationLookup().get(
+				operation);
+		Assert.state(databaseOperation != null, "The databse operation " + operation + " is not supported");
+		return databaseOperation;
+	}
 }
@@ -15,6 +15,9 @@
  */
 package com.github.springtestdbunit;
 
+import com.github.springtestdbunit.annotation.ConstraintMode;
+import com.github.springtestdbunit.annotation.IsolationMode;
+import com.github.springtestdbunit.annotation.SetupMode;
 import com.github.springtestdbunit.dataset.DataSetLoader;
 import com.github.springtestdbunit.operation.DatabaseOperationLookup;
 import org.dbunit.database.IDatabaseConnection;
@@ -48,6 +51,36 @@ interface DbUnitTestContext {
 	 */
 	DatabaseOperationLookup getDatbaseOperationLookup();
 
+	/**
+	 * Returns the {@link SetupMode} that should be used to apply setup datasets.
+	 * @return the setup mode
+	 */
+	SetupMode getSetupMode();
+
+	/**
+	 * Returns the {@link IsolationMode} that should be used to isolate changes made by the test.
+	 * @return the isolation mode
+	 */
+	IsolationMode getIsolationMode();
+
+	/**
+	 * Returns if setup and teardown datasets for different connections can be applied in parallel.
+	 * @return if parallel setup is enabled
+	 */
+	boolean isParallelSetup();
+
+	/**
+	 * Returns the {@link ConstraintMode} that should be used when applying setup and teardown datasets.
+	 * @return the constraint mode
+	 */
+	ConstraintMode getConstraintMode();
+
+	/**
+	 * Returns if the tables of a dataset can be loaded in parallel.
+	 * @return if parallel table loading is enabled
+	 */
+	boolean isParallelTableLoading();
+
 	/**
 	 * Returns the class that is under test.
 	 * @return The class under test
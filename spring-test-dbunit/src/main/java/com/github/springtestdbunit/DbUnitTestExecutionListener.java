@@ -15,10 +15,13 @@
  */
 package com.github.springtestdbunit;
 
+import com.github.springtestdbunit.annotation.ConstraintMode;
 import com.github.springtestdbunit.annotation.DatabaseSetup;
 import com.github.springtestdbunit.annotation.DatabaseTearDown;
 import com.github.springtestdbunit.annotation.DbUnitConfiguration;
 import com.github.springtestdbunit.annotation.ExpectedDatabase;
+import com.github.springtestdbunit.annotation.IsolationMode;
+import com.github.springtestdbunit.annotation.SetupMode;
 import com.github.springtestdbunit.bean.DatabaseDataSourceConnectionFactoryBean;
 import com.github.springtestdbunit.dataset.DataSetLoader;
 import com.github.springtestdbunit.dataset.FlatXmlDataSetLoader;
@@ -72,18 +75,76 @@ public class DbUnitTestExecutionListener extends AbstractTestExecutionListener {
 	protected static final String DATABASE_OPERATION_LOOKUP_ATTRIBUTE = Conventions.getQualifiedAttributeName(
 			DbUnitTestExecutionListener.class, "databseOperationLookup");
 
+	protected static final String SETUP_MODE_ATTRIBUTE = Conventions.getQualifiedAttributeName(
+			DbUnitTestExecutionListener.class, "setupMode");
+
+	protected static final String ISOLATION_MODE_ATTRIBUTE = Conventions.getQualifiedAttributeName(
+			DbUnitTestExecutionListener.class, "isolationMode");
+
+	protected static final String PARALLEL_SETUP_ATTRIBUTE = Conventions.getQualifiedAttributeName(
+			DbUnitTestExecutionListener.class, "parallelSetup");
+
+	protected static final String CONSTRAINT_MODE_ATTRIBUTE = Conventions.getQualifiedAttributeName(
+			DbUnitTestExecutionListener.class, "constraintMode");
+
+	protected static final String PARALLEL_TABLE_LOADING_ATTRIBUTE = Conventions.getQualifiedAttributeName(
+			DbUnitTestExecutionListener.class, "parallelTableLoading");
+
+	protected static final String SAVEPOINT_ISOLATION_ATTRIBUTE = Conventions.getQualifiedAttributeName(
+			DbUnitTestExecutionListener.class, "savepointIsolation");
+
 	private static DbUnitRunner runner = new DbUnitRunner();
 
 	@Override
-	public void prepareTestInstance(TestContext testContext) throws Exception {
-
+	public void beforeTestClass(TestContext testContext) throws Exception {
+		DbUnitConfiguration configuration = testContext.getTestClass().getAnnotation(DbUnitConfiguration.class);
+		if ((configuration == null) || (configuration.isolationMode() != IsolationMode.SAVEPOINT)) {
+			return;
+		}
 		if (logger.isDebugEnabled()) {
-			logger.debug("Preparing test instance " + testContext.getTestClass() + " for DBUnit");
+			logger.debug("Preparing test class " + testContext.getTestClass() + " for DBUnit savepoint isolation");
+		}
+		prepare(testContext);
+		DbUnitTestContextAdapter dbUnitTestContext = new DbUnitTestContextAdapter(testContext);
+		Map<String, IDatabaseConnection> connections = dbUnitTestContext.getConnectionsMap();
+		Map<String, DataSource> dataSources = new HashMap<String, DataSource>();
+		for (String name : connections.keySet()) {
+			Object bean = testContext.getApplicationContext().getBean(name);
+			if (bean instanceof DataSource) {
+				dataSources.put(name, (DataSource) bean);
+			}
+		}
+		SavepointIsolation savepointIsolation = new SavepointIsolation(connections, dataSources);
+		testContext.setAttribute(SAVEPOINT_ISOLATION_ATTRIBUTE, savepointIsolation);
+		try {
+			runner.beforeTestClass(dbUnitTestContext);
+			savepointIsolation.setSavepoints();
+		} catch (Exception e) {
+			afterTestClass(testContext);
+			throw e;
 		}
+	}
+
+	@Override
+	public void prepareTestInstance(TestContext testContext) throws Exception {
+		if (testContext.getAttribute(SAVEPOINT_ISOLATION_ATTRIBUTE) == null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Preparing test instance " + testContext.getTestClass() + " for DBUnit");
+			}
+			prepare(testContext);
+		}
+	}
+
+	private void prepare(TestContext testContext) throws Exception {
 
 		Set<String> databaseConnectionBeanNames = new HashSet<String>();
 		Class<? extends DataSetLoader> dataSetLoaderClass = FlatXmlDataSetLoader.class;
 		Class<? extends DatabaseOperationLookup> databaseOperationLookupClass = DefaultDatabaseOperationLookup.class;
+		SetupMode setupMode = SetupMode.DEFAULT;
+		IsolationMode isolationMode = IsolationMode.TEARDOWN;
+		boolean parallelSetup = false;
+		ConstraintMode constraintMode = ConstraintMode.ENFORCED;
+		boolean parallelTableLoading = false;
 
 		DbUnitConfiguration configuration = testContext.getTestClass().getAnnotation(DbUnitConfiguration.class);
 		if (configuration != null) {
@@ -93,6 +154,11 @@ public class DbUnitTestExecutionListener extends AbstractTestExecutionListener {
 			databaseConnectionBeanNames = StringUtils.commaDelimitedListToSet(configuration.databaseConnections());
 			dataSetLoaderClass = configuration.dataSetLoader();
 			databaseOperationLookupClass = configuration.databaseOperationLookup();
+			setupMode = configuration.setupMode();
+			isolationMode = configuration.isolationMode();
+			parallelSetup = configuration.parallelSetup();
+			constraintMode = configuration.constraintMode();
+			parallelTableLoading = configuration.parallelTableLoading();
 		}
 
       if(databaseConnectionBeanNames.isEmpty()) {
@@ -106,6 +172,11 @@ public class DbUnitTestExecutionListener extends AbstractTestExecutionListener {
 		prepareDatabaseConnection(testContext, databaseConnectionBeanNames);
 		prepareDataSetLoader(testContext, dataSetLoaderClass);
 		prepareDatabaseOperationLookup(testContext, databaseOperationLookupClass);
+		testContext.setAttribute(SETUP_MODE_ATTRIBUTE, setupMode);
+		testContext.setAttribute(ISOLATION_MODE_ATTRIBUTE, isolationMode);
+		testContext.setAttribute(PARALLEL_SETUP_ATTRIBUTE, parallelSetup);
+		testContext.setAttribute(CONSTRAINT_MODE_ATTRIBUTE, constraintMode);
+		testContext.setAttribute(PARALLEL_TABLE_LOADING_ATTRIBUTE, parallelTableLoading);
 	}
 
 	private String getDatabaseConnectionUsingCommonBeanNames(TestContext testContext) {
@@ -159,7 +230,28 @@ public class DbUnitTestExecutionListener extends AbstractTestExecutionListener {
 
 	@Override
 	public void afterTestMethod(TestContext testContext) throws Exception {
-		runner.afterTestMethod(new DbUnitTestContextAdapter(testContext));
+		SavepointIsolation savepointIsolation = (SavepointIsolation) testContext
+				.getAttribute(SAVEPOINT_ISOLATION_ATTRIBUTE);
+		try {
+			runner.afterTestMethod(new DbUnitTestContextAdapter(testContext));
+		} finally {
+			if (savepointIsolation != null) {
+				savepointIsolation.rollbackToSavepoints();
+			}
+		}
+	}
+
+	@Override
+	public void afterTestClass(TestContext testContext) throws Exception {
+		SavepointIsolation savepointIsolation = (SavepointIsolation) testContext
+				.removeAttribute(SAVEPOINT_ISOLATION_ATTRIBUTE);
+		try {
+			if (savepointIsolation != null) {
+				savepointIsolation.close();
+			}
+		} finally {
+			runner.afterTestClass(testContext.getTestClass());
+		}
 	}
 
 	private static class DbUnitTestContextAdapter implements DbUnitTestContext {
@@ -182,6 +274,26 @@ public class DbUnitTestExecutionListener extends AbstractTestExecutionListener {
 			return (DatabaseOperationLookup) this.testContext.getAttribute(DATABASE_OPERATION_LOOKUP_ATTRIBUTE);
 		}
 
+		public SetupMode getSetupMode() {
+			return (SetupMode) this.testContext.getAttribute(SETUP_MODE_ATTRIBUTE);
+		}
+
+		public IsolationMode getIsolationMode() {
+			return (IsolationMode) this.testContext.getAttribute(ISOLATION_MODE_ATTRIBUTE);
+		}
+
+		public boolean isParallelSetup() {
+			return Boolean.TRUE.equals(this.testContext.getAttribute(PARALLEL_SETUP_ATTRIBUTE));
+		}
+
+		public ConstraintMode getConstraintMode() {
+			return (ConstraintMode) this.testContext.getAttribute(CONSTRAINT_MODE_ATTRIBUTE);
+		}
+
+		public boolean isParallelTableLoading() {
+			return Boolean.TRUE.equals(this.testContext.getAttribute(PARALLEL_TABLE_LOADING_ATTRIBUTE));
+		}
+
 		public Class<?> getTestClass() {
 			return this.testContext.getTestClass();
 		}
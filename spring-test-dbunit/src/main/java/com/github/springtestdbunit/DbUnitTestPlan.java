@@ -0,0 +1,296 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.annotation.DatabaseTearDown;
+import com.github.springtestdbunit.annotation.ExpectedDatabase;
+import com.github.springtestdbunit.assertion.DatabaseAssertionMode;
+import com.github.springtestdbunit.dataset.AbstractDataSetLoader;
+
+/**
+ * The {@link DatabaseSetup &#064;DatabaseSetup}, {@link DatabaseTearDown &#064;DatabaseTearDown} and
+ * {@link ExpectedDatabase &#064;ExpectedDatabase} annotations that apply to a test method, resolved once and then
+ * cached for each test class and method so that annotations are not searched again for every test. Dataset resources
+ * are resolved the first time they are needed and are then also held by the plan. Plans are softly referenced and do
+ * not prevent test classes from being unloaded.
+ *
+ * @author agent
+ */
+class DbUnitTestPlan {
+
+	private static final Map<Class<?>, SoftReference<Map<Key, DbUnitTestPlan>>> plans = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<Map<Key, DbUnitTestPlan>>>());
+
+	private final List<List<AnnotationAttributes>> classSetups;
+
+	private final List<List<AnnotationAttributes>> methodSetups;
+
+	private final List<List<AnnotationAttributes>> setups;
+
+	private final List<AnnotationAttributes> teardowns;
+
+	private final List<Expectation> expectations;
+
+	private final Map<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+
+	private DbUnitTestPlan(Class<?> testClass, Method testMethod) {
+		this.classSetups = getSetups(AnnotationUtils.findAnnotation(testClass, DatabaseSetup.class));
+		this.methodSetups = getSetups(testMethod == null ? null : AnnotationUtils.findAnnotation(testMethod,
+				DatabaseSetup.class));
+		List<List<AnnotationAttributes>> setups = new ArrayList<List<AnnotationAttributes>>(this.classSetups);
+		setups.addAll(this.methodSetups);
+		this.setups = Collections.unmodifiableList(setups);
+		this.teardowns = Collections.unmodifiableList(AnnotationAttributes.get(getAnnotations(testClass, testMethod,
+				DatabaseTearDown.class)));
+		List<Expectation> expectations = new ArrayList<Expectation>();
+		for (ExpectedDatabase annotation : getAnnotations(testClass, testMethod, ExpectedDatabase.class)) {
+			expectations.add(new Expectation(annotation));
+		}
+		this.expectations = Collections.unmodifiableList(expectations);
+	}
+
+	private List<List<AnnotationAttributes>> getSetups(DatabaseSetup annotation) {
+		if (annotation == null) {
+			return Collections.emptyList();
+		}
+		List<AnnotationAttributes> setup = AnnotationAttributes.get(Arrays.asList(annotation.connections()));
+		return Collections.singletonList(Collections.unmodifiableList(setup));
+	}
+
+	private <T extends Annotation> List<T> getAnnotations(Class<?> testClass, Method testMethod,
+			Class<T> annotationType) {
+		List<T> annotations = new ArrayList<T>();
+		addAnnotationToList(annotations, AnnotationUtils.findAnnotation(testClass, annotationType));
+		if (testMethod != null) {
+			addAnnotationToList(annotations, AnnotationUtils.findAnnotation(testMethod, annotationType));
+		}
+		return annotations;
+	}
+
+	private <T extends Annotation> void addAnnotationToList(List<T> annotations, T annotation) {
+		if (annotation != null) {
+			annotations.add(annotation);
+		}
+	}
+
+	/**
+	 * Returns the setups declared on the test class, one list of connection setups for each annotation.
+	 * @return the class setups
+	 */
+	public List<List<AnnotationAttributes>> getClassSetups() {
+		return this.classSetups;
+	}
+
+	/**
+	 * Returns the setups declared on the test method, one list of connection setups for each annotation.
+	 * @return the method setups
+	 */
+	public List<List<AnnotationAttributes>> getMethodSetups() {
+		return this.methodSetups;
+	}
+
+	/**
+	 * Returns the class setups followed by the method setups.
+	 * @return all setups
+	 */
+	public List<List<AnnotationAttributes>> getSetups() {
+		return this.setups;
+	}
+
+	/**
+	 * Returns the teardowns declared on the test class and method.
+	 * @return the teardowns
+	 */
+	public List<AnnotationAttributes> getTeardowns() {
+		return this.teardowns;
+	}
+
+	/**
+	 * Returns the expectations declared on the test class and method.
+	 * @return the expectations
+	 */
+	public List<Expectation> getExpectations() {
+		return this.expectations;
+	}
+
+	/**
+	 * Returns the resource for the specified dataset location, resolving it using the loader the first time it is
+	 * requested.
+	 * @param dataSetLoader the dataset loader
+	 * @param testClass the class under test
+	 * @param location the dataset location
+	 * @return the resource or <tt>null</tt>
+	 */
+	public Resource getResource(AbstractDataSetLoader dataSetLoader, Class<?> testClass, String location) {
+		String key = dataSetLoader.getClass().getName() + "|" + location;
+		Resource resource = this.resources.get(key);
+		if (resource == null) {
+			resource = dataSetLoader.getResource(testClass, location);
+			if (resource != null) {
+				this.resources.put(key, resource);
+			}
+		}
+		return resource;
+	}
+
+	/**
+	 * Returns the plan for the specified test class and method.
+	 * @param testClass the class under test
+	 * @param testMethod the method under test or <tt>null</tt> if only class annotations should be considered
+	 * @return the plan
+	 */
+	public static DbUnitTestPlan get(Class<?> testClass, Method testMethod) {
+		Map<Key, DbUnitTestPlan> classPlans = getClassPlans(testClass);
+		Key key = new Key(testClass, testMethod);
+		DbUnitTestPlan plan = classPlans.get(key);
+		if (plan == null) {
+			// Plans are only read once built, building the same plan on two threads is harmless
+			plan = new DbUnitTestPlan(testClass, testMethod);
+			classPlans.put(key, plan);
+		}
+		return plan;
+	}
+
+	private static Map<Key, DbUnitTestPlan> getClassPlans(Class<?> testClass) {
+		SoftReference<Map<Key, DbUnitTestPlan>> reference = plans.get(testClass);
+		Map<Key, DbUnitTestPlan> classPlans = (reference == null ? null : reference.get());
+		if (classPlans == null) {
+			classPlans = new ConcurrentHashMap<Key, DbUnitTestPlan>();
+			plans.put(testClass, new SoftReference<Map<Key, DbUnitTestPlan>>(classPlans));
+		}
+		return classPlans;
+	}
+
+	/**
+	 * The attributes of a {@link DatabaseConnectionSetup} or {@link DatabaseTearDown} annotation.
+	 */
+	static class AnnotationAttributes {
+
+		private final DatabaseOperation type;
+
+		private final String[] value;
+
+		private final String connectionName;
+
+		public AnnotationAttributes(Annotation annotation) {
+			Assert.state((annotation instanceof DatabaseConnectionSetup) || (annotation instanceof DatabaseTearDown),
+					"Only DatabaseSetup and DatabaseTearDown annotations are supported");
+			Map<String, Object> attributes = AnnotationUtils.getAnnotationAttributes(annotation);
+			this.type = (DatabaseOperation) attributes.get("type");
+			this.value = (String[]) attributes.get("value");
+			this.connectionName = (String) attributes.get("connectionName");
+		}
+
+		public DatabaseOperation getType() {
+			return this.type;
+		}
+
+		public String[] getValue() {
+			return this.value.clone();
+		}
+
+		public String getConnectionName() {
+			return this.connectionName;
+		}
+
+		public static <T extends Annotation> List<AnnotationAttributes> get(Iterable<T> annotations) {
+			List<AnnotationAttributes> annotationAttributes = new ArrayList<AnnotationAttributes>();
+			for (T annotation : annotations) {
+				annotationAttributes.add(new AnnotationAttributes(annotation));
+			}
+			return annotationAttributes;
+		}
+	}
+
+	/**
+	 * The attributes of an {@link ExpectedDatabase} annotation.
+	 */
+	static class Expectation {
+
+		private final String value;
+
+		private final String connectionName;
+
+		private final DatabaseAssertionMode assertionMode;
+
+		public Expectation(ExpectedDatabase annotation) {
+			this.value = annotation.value();
+			this.connectionName = annotation.connection();
+			this.assertionMode = annotation.assertionMode();
+		}
+
+		public String getValue() {
+			return this.value;
+		}
+
+		public String getConnectionName() {
+			return this.connectionName;
+		}
+
+		public DatabaseAssertionMode getAssertionMode() {
+			return this.assertionMode;
+		}
+	}
+
+	private static class Key {
+
+		private final Class<?> testClass;
+
+		private final Method testMethod;
+
+		public Key(Class<?> testClass, Method testMethod) {
+			this.testClass = testClass;
+			this.testMethod = testMethod;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.testClass.hashCode() * 31 + ObjectUtils.nullSafeHashCode(this.testMethod);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.testClass.equals(other.testClass)
+					&& ObjectUtils.nullSafeEquals(this.testMethod, other.testMethod);
+		}
+	}
+}
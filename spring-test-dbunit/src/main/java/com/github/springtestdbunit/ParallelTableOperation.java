@@ -0,0 +1,267 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseConfig.ConfigProperty;
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.operation.DatabaseOperation;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.github.springtestdbunit.annotation.ConstraintMode;
+
+/**
+ * A DBUnit {@link DatabaseOperation} that applies each table of a dataset using its own task so that independent
+ * tables are loaded concurrently over several connections obtained from a {@link DataSource}. Tables are only
+ * independent when {@link ConstraintMode#DEFERRED constraints are deferred}. Where the database
+ * {@link ReferentialIntegrity#isConcurrentTransactionSupported supports it} worker connections are left uncommitted
+ * until every table has been applied and are then committed one after another, or are all rolled back if any table
+ * fails. The commits are not atomic, if a commit fails the tables of connections that have already been committed are
+ * kept. Otherwise each table is committed as it is applied. The throughput of each table is logged at <tt>INFO</tt>
+ * level.
+ * <p>
+ * Worker connections are all obtained before any table is applied so that workers never wait for a connection held by
+ * another worker. When a pool cannot provide a connection for every worker fewer workers are used, and the operation is
+ * applied sequentially using the existing connection if no worker connection can be obtained.
+ *
+ * @author agent
+ */
+class ParallelTableOperation extends DatabaseOperation {
+
+	private static final Log logger = LogFactory.getLog(ParallelTableOperation.class);
+
+	private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private static final ExecutorService TABLE_EXECUTOR;
+	static {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("dbunit-table-");
+		threadFactory.setDaemon(true);
+		TABLE_EXECUTOR = Executors.newFixedThreadPool(THREADS, threadFactory);
+	}
+
+	private final DatabaseOperation operation;
+
+	private final DataSource dataSource;
+
+	private final ReferentialIntegrity referentialIntegrity;
+
+	/**
+	 * Create a new {@link ParallelTableOperation}.
+	 * @param operation the operation applied to each table
+	 * @param dataSource the data source used to obtain worker connections
+	 * @param referentialIntegrity the referential integrity statements of the database
+	 */
+	public ParallelTableOperation(DatabaseOperation operation, DataSource dataSource,
+			ReferentialIntegrity referentialIntegrity) {
+		this.operation = operation;
+		this.dataSource = dataSource;
+		this.referentialIntegrity = referentialIntegrity;
+	}
+
+	@Override
+	public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+		String[] tableNames = dataSet.getTableNames();
+		if (tableNames.length < 2) {
+			this.operation.execute(connection, dataSet);
+			return;
+		}
+		boolean atomic = this.referentialIntegrity.isConcurrentTransactionSupported(connection.getConnection());
+		if (!atomic && logger.isDebugEnabled()) {
+			logger.debug("Concurrent transactions are not supported, tables will be committed individually");
+		}
+		List<Connection> workerConnections = getWorkerConnections(Math.min(THREADS, tableNames.length));
+		if (workerConnections.isEmpty()) {
+			this.operation.execute(connection, dataSet);
+			return;
+		}
+		int workers = workerConnections.size();
+		List<List<ITable>> tablesByWorker = new ArrayList<List<ITable>>();
+		for (int i = 0; i < workers; i++) {
+			tablesByWorker.add(new ArrayList<ITable>());
+		}
+		for (int i = 0; i < tableNames.length; i++) {
+			tablesByWorker.get(i % workers).add(dataSet.getTable(tableNames[i]));
+		}
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		for (int i = 0; i < workers; i++) {
+			results.add(TABLE_EXECUTOR.submit(new TableLoader(connection, workerConnections.get(i),
+					tablesByWorker.get(i), atomic)));
+		}
+		Throwable failure = null;
+		for (Future<Void> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failure = (failure == null ? e : failure);
+			} catch (ExecutionException e) {
+				failure = (failure == null ? e.getCause() : failure);
+			}
+		}
+		complete(workerConnections, atomic, failure == null);
+		if (failure instanceof DatabaseUnitException) {
+			throw (DatabaseUnitException) failure;
+		}
+		if (failure instanceof SQLException) {
+			throw (SQLException) failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			throw new DatabaseUnitException(failure);
+		}
+	}
+
+	private List<Connection> getWorkerConnections(int workers) {
+		List<Connection> workerConnections = new ArrayList<Connection>();
+		for (int i = 0; i < workers; i++) {
+			try {
+				workerConnections.add(this.dataSource.getConnection());
+			} catch (SQLException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Unable to obtain worker connection " + (i + 1) + " of " + workers, e);
+				}
+				break;
+			}
+		}
+		return workerConnections;
+	}
+
+	private void complete(List<Connection> workerConnections, boolean atomic, boolean commit) throws SQLException {
+		SQLException failure = null;
+		for (Connection workerConnection : workerConnections) {
+			try {
+				if (atomic && commit) {
+					workerConnection.commit();
+				} else if (atomic) {
+					workerConnection.rollback();
+				}
+			} catch (SQLException e) {
+				if (commit) {
+					failure = (failure == null ? e : failure);
+				} else {
+					// The failure that caused the rollback is thrown instead
+					logger.warn("Unable to roll back worker connection", e);
+				}
+			} finally {
+				release(workerConnection);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private void release(Connection workerConnection) {
+		try {
+			if (this.referentialIntegrity.isSessionScoped()) {
+				this.referentialIntegrity.enable(workerConnection);
+			}
+			workerConnection.setAutoCommit(true);
+		} catch (SQLException e) {
+			logger.warn("Unable to reset worker connection", e);
+		} finally {
+			try {
+				workerConnection.close();
+			} catch (SQLException e) {
+				logger.warn("Unable to close worker connection", e);
+			}
+		}
+	}
+
+	private IDatabaseConnection createWorkerConnection(Connection workerConnection, IDatabaseConnection connection)
+			throws DatabaseUnitException {
+		DatabaseConnection databaseConnection = new DatabaseConnection(workerConnection, connection.getSchema());
+		DatabaseConfig config = connection.getConfig();
+		for (ConfigProperty configProperty : DatabaseConfig.ALL_PROPERTIES) {
+			Object value = config.getProperty(configProperty.getProperty());
+			if (value != null) {
+				databaseConnection.getConfig().setProperty(configProperty.getProperty(), value);
+			}
+		}
+		return databaseConnection;
+	}
+
+	/**
+	 * Loads a group of tables using a single worker connection which is left uncommitted when atomic. The worker
+	 * connection is committed or rolled back and released once all tables have been loaded.
+	 */
+	private class TableLoader implements Callable<Void> {
+
+		private final IDatabaseConnection connection;
+
+		private final Connection workerConnection;
+
+		private final List<ITable> tables;
+
+		private final boolean atomic;
+
+		public TableLoader(IDatabaseConnection connection, Connection workerConnection, List<ITable> tables,
+				boolean atomic) {
+			this.connection = connection;
+			this.workerConnection = workerConnection;
+			this.tables = tables;
+			this.atomic = atomic;
+		}
+
+		public Void call() throws Exception {
+			this.workerConnection.setAutoCommit(!this.atomic);
+			if (ParallelTableOperation.this.referentialIntegrity.isSessionScoped()) {
+				ParallelTableOperation.this.referentialIntegrity.disable(this.workerConnection);
+			}
+			IDatabaseConnection databaseConnection = createWorkerConnection(this.workerConnection, this.connection);
+			for (ITable table : this.tables) {
+				long startTime = System.nanoTime();
+				ParallelTableOperation.this.operation.execute(databaseConnection, new DefaultDataSet(table));
+				logThroughput(table, System.nanoTime() - startTime);
+			}
+			return null;
+		}
+
+		private void logThroughput(ITable table, long duration) {
+			if (logger.isInfoEnabled()) {
+				int rows = table.getRowCount();
+				double millis = duration / 1000000.0;
+				long rowsPerSecond = (duration == 0 ? rows : Math.round(rows * 1000000000.0 / duration));
+				logger.info(String.format("Loaded %d rows into %s in %.1f ms (%d rows/s)", rows, table
+						.getTableMetaData().getTableName(), millis, rowsPerSecond));
+			}
+		}
+	}
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchTableException;
+import org.springframework.util.StringUtils;
+
+import com.github.springtestdbunit.annotation.ConstraintMode;
+
+/**
+ * Database specific statements used to disable and enable referential integrity. Used to support
+ * {@link ConstraintMode#DEFERRED}.
+ * <p>
+ * Databases that do not support {@link #isSessionScoped() session scoped} referential integrity are shared by every
+ * test using them, so the number of times that each database has been disabled is counted. Referential integrity is
+ * only disabled by the first caller and is only enabled again by the last.
+ *
+ * @author agent
+ */
+enum ReferentialIntegrity {
+
+	HSQLDB("hsql", false, "SET DATABASE REFERENTIAL INTEGRITY FALSE", "SET DATABASE REFERENTIAL INTEGRITY TRUE") {
+
+		@Override
+		public boolean isConcurrentTransactionSupported(Connection connection) throws SQLException {
+			// With lock based transaction control writes to a child table wait for locks held on its parent
+			Statement statement = connection.createStatement();
+			try {
+				ResultSet resultSet = statement.executeQuery("SELECT PROPERTY_VALUE FROM "
+						+ "INFORMATION_SCHEMA.SYSTEM_PROPERTIES WHERE PROPERTY_NAME = 'hsqldb.tx'");
+				return resultSet.next() && "mvcc".equalsIgnoreCase(resultSet.getString(1));
+			} finally {
+				statement.close();
+			}
+		}
+	},
+
+	H2("h2", false, "SET REFERENTIAL_INTEGRITY FALSE", "SET REFERENTIAL_INTEGRITY TRUE"),
+
+	MYSQL("mysql", true, "SET FOREIGN_KEY_CHECKS = 0", "SET FOREIGN_KEY_CHECKS = 1"),
+
+	MARIADB("mariadb", true, "SET FOREIGN_KEY_CHECKS = 0", "SET FOREIGN_KEY_CHECKS = 1"),
+
+	POSTGRESQL("postgresql", true, "SET session_replication_role = replica", "SET session_replication_role = DEFAULT");
+
+	private static final Log logger = LogFactory.getLog(ReferentialIntegrity.class);
+
+	private static final Map<String, Integer> disabledCounts = new HashMap<String, Integer>();
+
+	private final String productNamePrefix;
+
+	private final boolean sessionScoped;
+
+	private final String disableSql;
+
+	private final String enableSql;
+
+	private ReferentialIntegrity(String productNamePrefix, boolean sessionScoped, String disableSql,
+			String enableSql) {
+		this.productNamePrefix = productNamePrefix;
+		this.sessionScoped = sessionScoped;
+		this.disableSql = disableSql;
+		this.enableSql = enableSql;
+	}
+
+	/**
+	 * Returns if referential integrity is disabled only for the connection rather than the entire database.
+	 * @return if referential integrity is session scoped
+	 */
+	public boolean isSessionScoped() {
+		return this.sessionScoped;
+	}
+
+	/**
+	 * Returns if uncommitted changes can be made to related tables from several connections at the same time while
+	 * referential integrity is disabled.
+	 * @param connection the JDBC connection
+	 * @return if concurrent transactions are supported
+	 * @throws SQLException on SQL error
+	 */
+	public boolean isConcurrentTransactionSupported(Connection connection) throws SQLException {
+		return true;
+	}
+
+	/**
+	 * Disable referential integrity checks. Each call must be followed by a call to
+	 * {@link #enable(IDatabaseConnection)}.
+	 * @param connection the connection
+	 * @throws SQLException on SQL error
+	 */
+	public void disable(IDatabaseConnection connection) throws SQLException {
+		disable(connection.getConnection());
+	}
+
+	/**
+	 * Disable referential integrity checks. Each call must be followed by a call to {@link #enable(Connection)}.
+	 * @param connection the JDBC connection
+	 * @throws SQLException on SQL error
+	 */
+	public void disable(Connection connection) throws SQLException {
+		if (this.sessionScoped) {
+			execute(connection, this.disableSql);
+			return;
+		}
+		String database = connection.getMetaData().getURL();
+		synchronized (disabledCounts) {
+			Integer count = disabledCounts.get(database);
+			if (count == null) {
+				execute(connection, this.disableSql);
+				count = 0;
+			}
+			disabledCounts.put(database, count + 1);
+		}
+	}
+
+	/**
+	 * Enable referential integrity checks. For databases that are not session scoped referential integrity remains
+	 * disabled until every caller that disabled it has enabled it again.
+	 * @param connection the connection
+	 * @throws SQLException on SQL error
+	 */
+	public void enable(IDatabaseConnection connection) throws SQLException {
+		enable(connection.getConnection());
+	}
+
+	/**
+	 * Enable referential integrity checks. For databases that are not session scoped referential integrity remains
+	 * disabled until every caller that disabled it has enabled it again.
+	 * @param connection the JDBC connection
+	 * @throws SQLException on SQL error
+	 */
+	public void enable(Connection connection) throws SQLException {
+		if (this.sessionScoped) {
+			execute(connection, this.enableSql);
+			return;
+		}
+		String database = connection.getMetaData().getURL();
+		synchronized (disabledCounts) {
+			Integer count = disabledCounts.get(database);
+			if ((count != null) && (count > 1)) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Referential integrity remains disabled for " + (count - 1) + " other user(s)");
+				}
+				disabledCounts.put(database, count - 1);
+				return;
+			}
+			disabledCounts.remove(database);
+			execute(connection, this.enableSql);
+		}
+	}
+
+	private void execute(Connection connection, String sql) throws SQLException {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executing " + sql);
+		}
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(sql);
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Returns the {@link ReferentialIntegrity} for the database of the specified connection.
+	 * @param connection the connection
+	 * @return the referential integrity statements
+	 * @throws SQLException on SQL error
+	 * @throws IllegalStateException if the database is not supported
+	 */
+	public static ReferentialIntegrity get(IDatabaseConnection connection) throws SQLException {
+		String productName = connection.getConnection().getMetaData().getDatabaseProductName();
+		String name = (productName == null ? "" : productName.toLowerCase());
+		for (ReferentialIntegrity referentialIntegrity : values()) {
+			if (name.startsWith(referentialIntegrity.productNamePrefix)) {
+				return referentialIntegrity;
+			}
+		}
+		throw new IllegalStateException("Deferred constraints are not supported for " + productName);
+	}
+
+	/**
+	 * Validate the foreign keys of the specified tables, checking that every referenced row exists. Tables that do
+	 * not exist in the database of the connection are ignored.
+	 * @param connection the connection
+	 * @param tableNames the names of the tables to validate
+	 * @throws SQLException on SQL error
+	 * @throws DataSetException on DBUnit error
+	 * @throws IllegalStateException if a foreign key is violated
+	 */
+	public static void validate(IDatabaseConnection connection, Collection<String> tableNames) throws SQLException,
+			DataSetException {
+		DatabaseMetaData metaData = connection.getConnection().getMetaData();
+		String quote = metaData.getIdentifierQuoteString();
+		quote = (quote == null ? "" : quote.trim());
+		for (String tableName : tableNames) {
+			ITableMetaData tableMetaData;
+			try {
+				tableMetaData = connection.createDataSet().getTableMetaData(tableName);
+			} catch (NoSuchTableException e) {
+				continue;
+			}
+			String table = tableMetaData.getTableName();
+			String schema = connection.getSchema();
+			if (table.indexOf('.') != -1) {
+				schema = table.substring(0, table.lastIndexOf('.'));
+				table = table.substring(table.lastIndexOf('.') + 1);
+			}
+			for (ForeignKey foreignKey : getForeignKeys(metaData, schema, table)) {
+				int violations = foreignKey.countViolations(connection, quote);
+				if (violations > 0) {
+					throw new IllegalStateException(violations + " row(s) of " + table + " violate foreign key "
+							+ foreignKey);
+				}
+			}
+		}
+	}
+
+	private static Collection<ForeignKey> getForeignKeys(DatabaseMetaData metaData, String schema, String table)
+			throws SQLException {
+		Map<String, ForeignKey> foreignKeys = new LinkedHashMap<String, ForeignKey>();
+		ResultSet resultSet = metaData.getImportedKeys(null, schema, table);
+		try {
+			while (resultSet.next()) {
+				String name = resultSet.getString("FKTABLE_NAME") + "." + resultSet.getString("FK_NAME");
+				ForeignKey foreignKey = foreignKeys.get(name);
+				if (foreignKey == null) {
+					foreignKey = new ForeignKey(resultSet.getString("FK_NAME"), resultSet.getString("FKTABLE_SCHEM"),
+							resultSet.getString("FKTABLE_NAME"), resultSet.getString("PKTABLE_SCHEM"),
+							resultSet.getString("PKTABLE_NAME"));
+					foreignKeys.put(name, foreignKey);
+				}
+				foreignKey.addColumns(resultSet.getString("FKCOLUMN_NAME"), resultSet.getString("PKCOLUMN_NAME"));
+			}
+		} finally {
+			resultSet.close();
+		}
+		return foreignKeys.values();
+	}
+
+	/**
+	 * A foreign key read from the database meta-data.
+	 */
+	private static class ForeignKey {
+
+		private final String name;
+
+		private final String schema;
+
+		private final String table;
+
+		private final String referencedSchema;
+
+		private final String referencedTable;
+
+		private final List<String> columns = new ArrayList<String>();
+
+		private final List<String> referencedColumns = new ArrayList<String>();
+
+		public ForeignKey(String name, String schema, String table, String referencedSchema, String referencedTable) {
+			this.name = name;
+			this.schema = schema;
+			this.table = table;
+			this.referencedSchema = referencedSchema;
+			this.referencedTable = referencedTable;
+		}
+
+		public void addColumns(String column, String referencedColumn) {
+			this.columns.add(column);
+			this.referencedColumns.add(referencedColumn);
+		}
+
+		public int countViolations(IDatabaseConnection connection, String quote) throws SQLException {
+			StringBuilder sql = new StringBuilder();
+			sql.append("SELECT COUNT(*) FROM ").append(qualify(this.schema, this.table, quote)).append(" c WHERE ");
+			for (String column : this.columns) {
+				sql.append("c.").append(quote(column, quote)).append(" IS NOT NULL AND ");
+			}
+			sql.append("NOT EXISTS (SELECT 1 FROM ").append(qualify(this.referencedSchema, this.referencedTable, quote));
+			sql.append(" p WHERE ");
+			for (int i = 0; i < this.columns.size(); i++) {
+				sql.append(i == 0 ? "" : " AND ").append("p.").append(quote(this.referencedColumns.get(i), quote));
+				sql.append(" = c.").append(quote(this.columns.get(i), quote));
+			}
+			sql.append(")");
+			Statement statement = connection.getConnection().createStatement();
+			try {
+				ResultSet resultSet = statement.executeQuery(sql.toString());
+				resultSet.next();
+				return resultSet.getInt(1);
+			} finally {
+				statement.close();
+			}
+		}
+
+		private String qualify(String schema, String table, String quote) {
+			return (StringUtils.hasLength(schema) ? quote(schema, quote) + "." : "") + quote(table, quote);
+		}
+
+		private String quote(String identifier, String quote) {
+			return quote + identifier + quote;
+		}
+
+		@Override
+		public String toString() {
+			return this.name + " " + this.columns + " referencing " + this.referencedTable + " "
+					+ this.referencedColumns;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.database.IDatabaseConnection;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import com.github.springtestdbunit.annotation.IsolationMode;
+
+/**
+ * Holds the JDBC connections used by a test class running with {@link IsolationMode#SAVEPOINT}. Each connection is
+ * kept open with auto-commit disabled for the lifetime of the test class so that class-level setup can be applied once
+ * and method-level changes can be rolled back to a savepoint. Connections obtained from {@link DataSource} beans are
+ * bound to the current thread so that code using
+ * {@link org.springframework.jdbc.datasource.DataSourceUtils DataSourceUtils} (for example a
+ * <code>JdbcTemplate</code>) shares the same connection.
+ *
+ * @author agent
+ */
+class SavepointIsolation {
+
+	private static final Log logger = LogFactory.getLog(SavepointIsolation.class);
+
+	private final Map<String, IDatabaseConnection> databaseConnections;
+
+	private final Map<String, Connection> connections = new LinkedHashMap<String, Connection>();
+
+	private final Map<String, Boolean> autoCommit = new LinkedHashMap<String, Boolean>();
+
+	private final List<DataSource> boundDataSources = new ArrayList<DataSource>();
+
+	private final Map<String, Savepoint> savepoints = new LinkedHashMap<String, Savepoint>();
+
+	/**
+	 * Create a new {@link SavepointIsolation} instance and start a transaction on each connection.
+	 * @param databaseConnections the DBUnit connections keyed by name
+	 * @param dataSources the data sources that back any of the named connections
+	 * @throws SQLException
+	 */
+	public SavepointIsolation(Map<String, IDatabaseConnection> databaseConnections, Map<String, DataSource> dataSources)
+			throws SQLException {
+		Assert.state(!TransactionSynchronizationManager.isActualTransactionActive(),
+				"IsolationMode.SAVEPOINT cannot be used with Spring managed transactions");
+		this.databaseConnections = databaseConnections;
+		try {
+			for (Map.Entry<String, IDatabaseConnection> entry : databaseConnections.entrySet()) {
+				String name = entry.getKey();
+				DataSource dataSource = dataSources.get(name);
+				Connection connection;
+				if (dataSource != null && !TransactionSynchronizationManager.hasResource(dataSource)) {
+					connection = dataSource.getConnection();
+					TransactionSynchronizationManager.bindResource(dataSource, new ConnectionHolder(connection));
+					this.boundDataSources.add(dataSource);
+				} else {
+					connection = entry.getValue().getConnection();
+				}
+				boolean autoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(false);
+				this.connections.put(name, connection);
+				this.autoCommit.put(name, autoCommit);
+			}
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Set a savepoint on each connection, releasing any previous savepoint.
+	 * @throws SQLException
+	 */
+	public void setSavepoints() throws SQLException {
+		for (Map.Entry<String, Connection> entry : this.connections.entrySet()) {
+			Savepoint previous = this.savepoints.get(entry.getKey());
+			if (previous != null) {
+				releaseSavepoint(entry.getKey(), entry.getValue(), previous);
+			}
+			this.savepoints.put(entry.getKey(), entry.getValue().setSavepoint());
+		}
+	}
+
+	/**
+	 * Rollback each connection to the last savepoint. The savepoint is then released and a new savepoint is set so
+	 * that savepoints do not accumulate on the connection for each test method.
+	 * @throws SQLException
+	 */
+	public void rollbackToSavepoints() throws SQLException {
+		for (Map.Entry<String, Connection> entry : this.connections.entrySet()) {
+			Savepoint savepoint = this.savepoints.get(entry.getKey());
+			Assert.state(savepoint != null, "No savepoint has been set for connection " + entry.getKey());
+			if (logger.isDebugEnabled()) {
+				logger.debug("Rolling back connection " + entry.getKey() + " to savepoint");
+			}
+			entry.getValue().rollback(savepoint);
+		}
+		setSavepoints();
+	}
+
+	private void releaseSavepoint(String name, Connection connection, Savepoint savepoint) {
+		try {
+			connection.releaseSavepoint(savepoint);
+		} catch (SQLException e) {
+			// Some drivers (for example HSQLDB) release the savepoint as part of the rollback
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unable to release savepoint of connection " + name + " (" + e.getMessage() + ")");
+			}
+		}
+	}
+
+	/**
+	 * Rollback all changes, including class-level setup, and release the connections.
+	 * @throws SQLException
+	 */
+	public void close() throws SQLException {
+		SQLException exception = null;
+		for (Map.Entry<String, Connection> entry : this.connections.entrySet()) {
+			Connection connection = entry.getValue();
+			try {
+				connection.rollback();
+				connection.setAutoCommit(this.autoCommit.get(entry.getKey()));
+			} catch (SQLException e) {
+				exception = (exception == null ? e : exception);
+			}
+		}
+		for (IDatabaseConnection databaseConnection : this.databaseConnections.values()) {
+			try {
+				databaseConnection.close();
+			} catch (SQLException e) {
+				exception = (exception == null ? e : exception);
+			}
+		}
+		for (DataSource dataSource : this.boundDataSources) {
+			ConnectionHolder holder = (ConnectionHolder) TransactionSynchronizationManager.unbindResource(dataSource);
+			try {
+				holder.getConnection().close();
+			} catch (SQLException e) {
+				exception = (exception == null ? e : exception);
+			}
+		}
+		this.connections.clear();
+		this.boundDataSources.clear();
+		this.savepoints.clear();
+		if (exception != null) {
+			throw exception;
+		}
+	}
+}
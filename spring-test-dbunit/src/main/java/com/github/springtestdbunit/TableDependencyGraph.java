@@ -0,0 +1,280 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.FilteredDataSet;
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * The foreign key dependencies between the tables of a database schema, used to sort datasets so that parent tables
+ * are inserted before and deleted after the tables that reference them. Graphs are built from the database meta-data
+ * once for each database URL, user and schema and are then cached. Tables that form a foreign key cycle cannot be
+ * ordered safely, cycles are logged once when the graph is built and the tables of a cycle are ordered by name.
+ * <p>
+ * Tables created after a graph has been built are not known to the graph and are ordered after known tables.
+ *
+ * @author agent
+ */
+class TableDependencyGraph {
+
+	private static final Log logger = LogFactory.getLog(TableDependencyGraph.class);
+
+	private static final Map<String, TableDependencyGraph> graphs = new ConcurrentHashMap<String, TableDependencyGraph>();
+
+	/**
+	 * The insert order of each upper case table name.
+	 */
+	private final Map<String, Integer> order;
+
+	private final List<Set<String>> cycles;
+
+	private TableDependencyGraph(Map<String, Integer> order, List<Set<String>> cycles) {
+		this.order = order;
+		this.cycles = cycles;
+	}
+
+	/**
+	 * Returns the foreign key cycles found when the graph was built.
+	 * @return the cycles, each containing the upper case names of the tables in the cycle
+	 */
+	public List<Set<String>> getCycles() {
+		return this.cycles;
+	}
+
+	/**
+	 * Returns the specified table names sorted so that referenced tables are before the tables that reference them.
+	 * The sort is stable and tables that are not known to the graph are placed last.
+	 * @param tableNames the table names to sort
+	 * @return the sorted table names
+	 */
+	public String[] sort(String[] tableNames) {
+		List<String> sorted = new ArrayList<String>(tableNames.length);
+		Map<Integer, List<String>> known = new TreeMap<Integer, List<String>>();
+		List<String> unknown = new ArrayList<String>();
+		for (String tableName : tableNames) {
+			Integer position = this.order.get(tableName.toUpperCase());
+			if (position == null) {
+				unknown.add(tableName);
+			} else {
+				List<String> names = known.get(position);
+				if (names == null) {
+					names = new ArrayList<String>(1);
+					known.put(position, names);
+				}
+				names.add(tableName);
+			}
+		}
+		for (List<String> names : known.values()) {
+			sorted.addAll(names);
+		}
+		sorted.addAll(unknown);
+		return sorted.toArray(new String[sorted.size()]);
+	}
+
+	/**
+	 * Returns the specified dataset with its tables {@link #sort(String[]) sorted}. The dataset is returned unchanged
+	 * when it is already in order or contains the same table more than once.
+	 * @param dataSet the dataset
+	 * @return the sorted dataset
+	 * @throws DataSetException on dataset error
+	 */
+	public IDataSet sort(IDataSet dataSet) throws DataSetException {
+		String[] tableNames = dataSet.getTableNames();
+		String[] sorted = sort(tableNames);
+		Set<String> uniqueNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		uniqueNames.addAll(Arrays.asList(tableNames));
+		if (Arrays.equals(tableNames, sorted) || (uniqueNames.size() != tableNames.length)) {
+			return dataSet;
+		}
+		return new FilteredDataSet(sorted, dataSet);
+	}
+
+	/**
+	 * Returns the graph for the database and schema of the specified connection, building it on first use. The graph
+	 * is rebuilt if any of the specified tables is not known to the cached graph, for example when the table has been
+	 * created since the graph was built.
+	 * @param connection the connection
+	 * @param tableNames the names of the tables that will be sorted
+	 * @return the table dependency graph
+	 * @throws SQLException on SQL error
+	 * @throws DataSetException on DBUnit error
+	 */
+	public static TableDependencyGraph get(IDatabaseConnection connection, String[] tableNames) throws SQLException,
+			DataSetException {
+		DatabaseMetaData metaData = connection.getConnection().getMetaData();
+		String key = metaData.getURL() + "|" + metaData.getUserName() + "|" + connection.getSchema();
+		TableDependencyGraph graph = graphs.get(key);
+		if ((graph == null) || !graph.containsAll(tableNames)) {
+			synchronized (graphs) {
+				TableDependencyGraph previous = graphs.get(key);
+				graph = previous;
+				if ((graph == null) || !graph.containsAll(tableNames)) {
+					graph = build(connection, metaData, previous);
+					graphs.put(key, graph);
+				}
+			}
+		}
+		return graph;
+	}
+
+	private boolean containsAll(String[] tableNames) {
+		for (String tableName : tableNames) {
+			if (!this.order.containsKey(tableName.toUpperCase())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static TableDependencyGraph build(IDatabaseConnection connection, DatabaseMetaData metaData,
+			TableDependencyGraph previous) throws SQLException, DataSetException {
+		long startTime = System.nanoTime();
+		// Sorted so that the order of unrelated tables and of tables within a cycle is predictable
+		Map<String, Set<String>> parents = new TreeMap<String, Set<String>>();
+		for (String tableName : DatabaseSnapshot.excludeSnapshotTables(connection.createDataSet()).getTableNames()) {
+			// Qualified table names are used when the connection has been configured to use them
+			int separator = tableName.lastIndexOf('.');
+			String schema = (separator == -1 ? connection.getSchema() : tableName.substring(0, separator));
+			String table = tableName.substring(separator + 1);
+			parents.put(tableName.toUpperCase(), getReferencedTables(metaData, schema, table, separator != -1));
+		}
+		List<Set<String>> components = new StronglyConnectedComponents(parents).find();
+		Map<String, Integer> order = new HashMap<String, Integer>();
+		List<Set<String>> cycles = new ArrayList<Set<String>>();
+		for (Set<String> component : components) {
+			if (component.size() > 1) {
+				cycles.add(Collections.unmodifiableSet(component));
+			}
+			for (String table : component) {
+				order.put(table, order.size());
+			}
+		}
+		// Cycles are only reported when first found, not each time that the graph is rebuilt
+		List<Set<String>> newCycles = new ArrayList<Set<String>>(cycles);
+		newCycles.removeAll(previous == null ? Collections.<Set<String>> emptyList() : previous.getCycles());
+		if (!newCycles.isEmpty() && logger.isWarnEnabled()) {
+			logger.warn("Foreign key cycles found between tables " + newCycles
+					+ ", the tables of each cycle will be ordered by name");
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Built table dependency graph for " + order.size() + " tables in "
+					+ (System.nanoTime() - startTime) / 1000000 + "ms");
+		}
+		return new TableDependencyGraph(order, Collections.unmodifiableList(cycles));
+	}
+
+	private static Set<String> getReferencedTables(DatabaseMetaData metaData, String schema, String table,
+			boolean qualified) throws SQLException {
+		Set<String> referencedTables = new LinkedHashSet<String>();
+		ResultSet resultSet = metaData.getImportedKeys(null, schema, table);
+		try {
+			while (resultSet.next()) {
+				String referencedSchema = resultSet.getString("PKTABLE_SCHEM");
+				String referencedTable = resultSet.getString("PKTABLE_NAME");
+				// Self references do not affect the order of tables
+				if (!referencedTable.equalsIgnoreCase(table)
+						|| ((referencedSchema != null) && !referencedSchema.equalsIgnoreCase(schema))) {
+					referencedTables.add((qualified ? referencedSchema + "." + referencedTable : referencedTable)
+							.toUpperCase());
+				}
+			}
+		} finally {
+			resultSet.close();
+		}
+		return referencedTables;
+	}
+
+	/**
+	 * Tarjan's strongly connected components algorithm. Components are found in reverse topological order, since edges
+	 * lead from a table to the tables that it references, referenced tables are found first.
+	 */
+	private static class StronglyConnectedComponents {
+
+		private final Map<String, Set<String>> edges;
+
+		private final Map<String, Integer> index = new HashMap<String, Integer>();
+
+		private final Map<String, Integer> lowLink = new HashMap<String, Integer>();
+
+		private final List<String> stack = new ArrayList<String>();
+
+		private final Set<String> onStack = new LinkedHashSet<String>();
+
+		private final List<Set<String>> components = new ArrayList<Set<String>>();
+
+		public StronglyConnectedComponents(Map<String, Set<String>> edges) {
+			this.edges = edges;
+		}
+
+		public List<Set<String>> find() {
+			for (String node : this.edges.keySet()) {
+				if (!this.index.containsKey(node)) {
+					visit(node);
+				}
+			}
+			return this.components;
+		}
+
+		private void visit(String node) {
+			this.index.put(node, this.index.size());
+			this.lowLink.put(node, this.index.get(node));
+			this.stack.add(node);
+			this.onStack.add(node);
+			Set<String> targets = this.edges.get(node);
+			for (String target : (targets == null ? Collections.<String> emptySet() : targets)) {
+				if (!this.edges.containsKey(target)) {
+					// References to tables outside of the schema
+					continue;
+				}
+				if (!this.index.containsKey(target)) {
+					visit(target);
+					this.lowLink.put(node, Math.min(this.lowLink.get(node), this.lowLink.get(target)));
+				} else if (this.onStack.contains(target)) {
+					this.lowLink.put(node, Math.min(this.lowLink.get(node), this.index.get(target)));
+				}
+			}
+			if (this.lowLink.get(node).equals(this.index.get(node))) {
+				Set<String> component = new TreeSet<String>();
+				String member;
+				do {
+					member = this.stack.remove(this.stack.size() - 1);
+					this.onStack.remove(member);
+					component.add(member);
+				} while (!member.equals(node));
+				this.components.add(component);
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.annotation;
+
+/**
+ * Modes that determine if foreign key constraints are checked while setup and teardown datasets are applied.
+ * 
+ * @see DbUnitConfiguration#constraintMode()
+ * @see com.github.springtestdbunit.bean.DatabaseConfigBean#setConstraintMode
+ * 
+ * @author agent
+ */
+public enum ConstraintMode {
+
+	/**
+	 * Constraints are checked as each row is written so tables must be loaded in foreign key order.
+	 */
+	ENFORCED,
+
+	/**
+	 * Referential integrity is disabled while datasets are applied so that tables can be loaded in any order and is
+	 * enabled again once all datasets have been applied. Existing rows are not checked when referential integrity is
+	 * enabled.
+	 * <p>
+	 * <strong>Notes:</strong>
+	 * <ul>
+	 * <li>Supported for HSQLDB, H2, MySQL and PostgreSQL. On HSQLDB and H2 referential integrity is disabled for the
+	 * entire database rather than just the connection used by DBUnit.</li>
+	 * <li>PostgreSQL requires superuser privileges.</li>
+	 * </ul>
+	 */
+	DEFERRED,
+
+	/**
+	 * As {@link #DEFERRED} but the foreign keys of the tables that were loaded are validated once referential
+	 * integrity has been enabled again. Validation fails if any row references a missing parent row.
+	 */
+	DEFERRED_VALIDATED
+
+}
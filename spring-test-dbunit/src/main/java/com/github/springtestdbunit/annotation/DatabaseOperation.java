@@ -63,8 +63,19 @@ public enum DatabaseOperation {
 
 	/**
 	 * Deletes all rows from a database table when the tables is specified in the dataset and subsequently insert new
-	 * contents. Equivalent to calling {@link #DELETE_ALL} followed by {@link #INSERT}.
+	 * contents. Equivalent to calling {@link #DELETE_ALL} followed by {@link #INSERT}. When several datasets are
+	 * specified they are merged so that the tables of all datasets are deleted before any rows are inserted.
 	 */
-	CLEAN_INSERT;
+	CLEAN_INSERT,
+
+	/**
+	 * Equivalent to {@link #CLEAN_INSERT} except that tables are only deleted and re-inserted when their content differs
+	 * from the dataset. Tables are compared using a row count and a hash of their rows, which is usually much faster
+	 * than re-inserting data that a previous test has already applied. When several datasets are specified they are
+	 * merged and compared as a whole. Datasets that cannot be merged, because the same table is declared with different
+	 * columns, are applied using {@link #CLEAN_INSERT}. This operation cannot be used with streaming datasets.
+	 * @see com.github.springtestdbunit.operation.SmartCleanInsertOperation
+	 */
+	SMART_CLEAN_INSERT;
 
 }
@@ -59,4 +59,45 @@ public @interface DbUnitConfiguration {
 	 */
 	Class<? extends DatabaseOperationLookup> databaseOperationLookup() default DefaultDatabaseOperationLookup.class;
 
+	/**
+	 * Returns the {@link SetupMode mode} used to apply {@link DatabaseSetup &#064;DatabaseSetup} datasets. Defaults to
+	 * {@link SetupMode#DEFAULT}.
+	 * @return the setup mode
+	 */
+	SetupMode setupMode() default SetupMode.DEFAULT;
+
+	/**
+	 * Returns the {@link IsolationMode mode} used to isolate changes made by a test. Defaults to
+	 * {@link IsolationMode#TEARDOWN}.
+	 * @return the isolation mode
+	 */
+	IsolationMode isolationMode() default IsolationMode.TEARDOWN;
+
+	/**
+	 * Returns if setup and teardown datasets for different connections should be applied in parallel. Datasets for the
+	 * same connection are always applied in order. Parallel setup is not used when a Spring managed transaction or
+	 * savepoint isolation binds connections to the test thread. Defaults to <code>false</code>.
+	 * @return if parallel setup is enabled
+	 */
+	boolean parallelSetup() default false;
+
+	/**
+	 * Returns the {@link ConstraintMode mode} used to check foreign key constraints while setup and teardown datasets
+	 * are applied. When {@link ConstraintMode#ENFORCED} the mode of any
+	 * {@link com.github.springtestdbunit.bean.DatabaseConfigBean DatabaseConfigBean} applied to the connection is used.
+	 * Defaults to {@link ConstraintMode#ENFORCED}.
+	 * @return the constraint mode
+	 */
+	ConstraintMode constraintMode() default ConstraintMode.ENFORCED;
+
+	/**
+	 * Returns if the tables of each dataset should be loaded in parallel using several connections. Tables are only
+	 * loaded in parallel when {@link #constraintMode() constraints are deferred} and the connection was created by a
+	 * {@link com.github.springtestdbunit.bean.DatabaseDataSourceConnectionFactoryBean
+	 * DatabaseDataSourceConnectionFactoryBean} from a data source that is not bound to the test thread. Tables are
+	 * committed together once all tables have been loaded. Defaults to <code>false</code>.
+	 * @return if parallel table loading is enabled
+	 */
+	boolean parallelTableLoading() default false;
+
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.annotation;
+
+import com.github.springtestdbunit.TransactionDbUnitTestExecutionListener;
+
+/**
+ * Modes that determine how changes made by a test are isolated from subsequent tests.
+ * 
+ * @see DbUnitConfiguration#isolationMode()
+ * 
+ * @author agent
+ */
+public enum IsolationMode {
+
+	/**
+	 * Changes are reset using {@link DatabaseTearDown &#064;DatabaseTearDown} after each test.
+	 */
+	TEARDOWN,
+
+	/**
+	 * Setup, the test itself and {@link ExpectedDatabase &#064;ExpectedDatabase} verification run in a single
+	 * transaction that is rolled back when the test completes. {@link DatabaseTearDown &#064;DatabaseTearDown}
+	 * annotations are ignored.
+	 * <p>
+	 * Tests must run in a transaction, typically by using the {@link TransactionDbUnitTestExecutionListener} with
+	 * <code>&#064;Transactional</code> tests, and the transaction must not be committed. Each connection must use the
+	 * transaction's JDBC connection, for example by obtaining it from a <code>TransactionAwareDataSourceProxy</code>.
+	 * Connections are not closed when the test completes, they are released by the transaction.
+	 */
+	ROLLBACK,
+
+	/**
+	 * Class-level {@link DatabaseSetup &#064;DatabaseSetup} is applied once before the first test, followed by a
+	 * savepoint. Each test applies only its own setup and is rolled back to the savepoint when it completes, all
+	 * changes are rolled back after the last test. {@link DatabaseTearDown &#064;DatabaseTearDown} annotations are
+	 * ignored.
+	 * <p>
+	 * Connections are held open for the lifetime of the test class, connections configured as
+	 * <code>DataSource</code> beans are bound to the test thread so that code using Spring's
+	 * <code>DataSourceUtils</code> (for example a <code>JdbcTemplate</code>) sees uncommitted changes. Cannot be used
+	 * with Spring managed test transactions.
+	 */
+	SAVEPOINT;
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.annotation;
+
+/**
+ * Modes that determine how {@link DatabaseSetup &#064;DatabaseSetup} datasets are applied to the database.
+ * 
+ * @see DbUnitConfiguration#setupMode()
+ * 
+ * @author agent
+ */
+public enum SetupMode {
+
+	/**
+	 * Apply the setup datasets using their {@link DatabaseOperation operations} before each test.
+	 */
+	DEFAULT,
+
+	/**
+	 * Apply the setup datasets once and then copy the affected tables into snapshot tables held in the database. When
+	 * the same combination of datasets is used again the tables are restored from the snapshot using set based
+	 * <tt>DELETE</tt> and <tt>INSERT ... SELECT</tt> statements rather than re-inserting each row.
+	 * <p>
+	 * <strong>Notes:</strong>
+	 * <ul>
+	 * <li>Only setups that use {@link DatabaseOperation#CLEAN_INSERT CLEAN_INSERT},
+	 * {@link DatabaseOperation#SMART_CLEAN_INSERT SMART_CLEAN_INSERT}, {@link DatabaseOperation#DELETE_ALL DELETE_ALL}
+	 * or {@link DatabaseOperation#TRUNCATE_TABLE TRUNCATE_TABLE} can be restored from a snapshot, other setups are
+	 * always applied using their operation.</li>
+	 * <li>Snapshot tables are created in a <tt>DBUNIT_SNAPSHOT</tt> schema using <tt>CREATE TABLE ... AS SELECT</tt>.
+	 * Snapshots are supported on HSQLDB, H2, DB2, PostgreSQL and MySQL, other databases fail with an
+	 * {@link IllegalStateException}.</li>
+	 * <li>Since DDL commits the current transaction on most databases snapshots cannot be used with Spring managed
+	 * transactions.</li>
+	 * <li>Snapshot tables are not included when the tables of a connection are listed, for example when comparing an
+	 * {@link ExpectedDatabase &#064;ExpectedDatabase} dataset using the <tt>DEFAULT</tt> assertion mode.</li>
+	 * <li>Snapshots are shared by the tests of a class that use the same database and datasets and are dropped once
+	 * all tests of the class have run. A new connection is obtained from the <tt>DataSource</tt> of the connection to
+	 * drop them, setups for connections that were not created from a <tt>DataSource</tt> are always applied using their
+	 * operation.</li>
+	 * <li>When using the <tt>DbUnitRule</tt>, the rule must be <tt>static</tt> and its class rule declared.</li>
+	 * </ul>
+	 */
+	SNAPSHOT;
+
+}
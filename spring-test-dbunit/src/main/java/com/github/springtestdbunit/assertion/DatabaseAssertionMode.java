@@ -39,7 +39,20 @@ public enum DatabaseAssertionMode {
 	 * rows.</li>
 	 * </ul>
 	 */
-	NON_STRICT(new NonStrictDatabaseAssertion());
+	NON_STRICT(new NonStrictDatabaseAssertion()),
+
+	/**
+	 * Compares an order independent hash of the columns specified in the expected data set with a hash of the same
+	 * columns in the database. The hash is calculated by PostgreSQL and MySQL databases, for other databases the
+	 * columns are streamed and hashed by the client. Rows are only compared individually, using the
+	 * {@link #NON_STRICT} strategy, when the hashes differ. </p> <strong>Notes:</strong>
+	 * <ul>
+	 * <li>Unspecified tables and columns are ignored.</li>
+	 * <li>Row order is ignored unless the hashes differ, in which case failures are reported as for
+	 * {@link #NON_STRICT}.</li>
+	 * </ul>
+	 */
+	NON_STRICT_HASH(new HashDatabaseAssertion());
 
 	private DatabaseAssertion databaseAssertion;
 
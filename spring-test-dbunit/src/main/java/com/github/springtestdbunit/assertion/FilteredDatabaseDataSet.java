@@ -0,0 +1,323 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.assertion;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.Columns;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableIterator;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.util.QualifiedTableName;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link IDataSet} containing the current database content of only those tables that appear in an expected
+ * dataset. Unlike {@link IDatabaseConnection#createDataSet()} the tables of the schema are never listed, each table is
+ * read using a single query ordered by its primary key. Optionally only the columns that appear in the expected dataset
+ * are selected.
+ *
+ * @author agent
+ */
+public class FilteredDatabaseDataSet extends AbstractDataSet {
+
+	private final IDatabaseConnection connection;
+
+	private final IDataSet expectedDataSet;
+
+	private final boolean expectedColumnsOnly;
+
+	private TableHash.Dialect dialect;
+
+	private boolean dialectResolved;
+
+	/**
+	 * Create a new {@link FilteredDatabaseDataSet} instance.
+	 * @param connection the database connection
+	 * @param expectedDataSet the expected dataset used to determine the tables (and columns) to query
+	 * @param expectedColumnsOnly if only columns that appear in the expected dataset should be queried
+	 */
+	public FilteredDatabaseDataSet(IDatabaseConnection connection, IDataSet expectedDataSet,
+			boolean expectedColumnsOnly) {
+		Assert.notNull(connection, "Connection must not be null");
+		Assert.notNull(expectedDataSet, "ExpectedDataSet must not be null");
+		this.connection = connection;
+		this.expectedDataSet = expectedDataSet;
+		this.expectedColumnsOnly = expectedColumnsOnly;
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		String[] tableNames = this.expectedDataSet.getTableNames();
+		ITable[] tables = new ITable[tableNames.length];
+		try {
+			for (int i = 0; i < tableNames.length; i++) {
+				tables[i] = this.connection.createQueryTable(tableNames[i], getSelectStatement(tableNames[i]));
+			}
+		} catch (SQLException e) {
+			throw new DataSetException(e);
+		}
+		return new DefaultTableIterator(tables, reversed);
+	}
+
+	String getSelectStatement(String tableName) throws DataSetException, SQLException {
+		StringBuilder sql = new StringBuilder(getUnorderedSelectStatement(tableName));
+		List<String> primaryKeys = getPrimaryKeys(tableName);
+		for (int i = 0; i < primaryKeys.size(); i++) {
+			sql.append(i == 0 ? " order by " : ", ");
+			sql.append(escape(primaryKeys.get(i), null));
+		}
+		return sql.toString();
+	}
+
+	private String getUnorderedSelectStatement(String tableName) throws DataSetException {
+		StringBuilder sql = new StringBuilder("select ");
+		if (this.expectedColumnsOnly) {
+			Column[] columns = this.expectedDataSet.getTableMetaData(tableName).getColumns();
+			for (int i = 0; i < columns.length; i++) {
+				sql.append(i == 0 ? "" : ", ");
+				sql.append(escape(columns[i].getColumnName(), null));
+			}
+		} else {
+			sql.append("*");
+		}
+		sql.append(" from ");
+		sql.append(escape(tableName, this.connection.getSchema()));
+		return sql.toString();
+	}
+
+	private String escape(String name, String schema) {
+		String escapePattern = (String) this.connection.getConfig().getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN);
+		return new QualifiedTableName(name, schema, escapePattern).getQualifiedName();
+	}
+
+	/**
+	 * Returns if the database table contains the same rows as the expected table, in any order. Rows are compared using
+	 * an order independent hash of their values. Where supported the hash of the database table is calculated by the
+	 * database, otherwise the rows are counted by the database and, only if the count matches, streamed from the
+	 * database and hashed as they are read. Columns of the database table that are not in the expected table are
+	 * expected to be <tt>null</tt>.
+	 * @param tableName the name of the table to compare
+	 * @return <tt>true</tt> if the rows are the same, <tt>false</tt> if they differ or cannot be compared
+	 * @throws DataSetException
+	 */
+	public boolean hasExpectedContent(String tableName) throws DataSetException {
+		ITable expected = this.expectedDataSet.getTable(tableName);
+		String sql = getUnorderedSelectStatement(tableName);
+		try {
+			Statement statement = this.connection.getConnection().createStatement(ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			try {
+				TableHash.Dialect dialect = getDialect();
+				if (dialect != null) {
+					TableHash expectedHash = null;
+					String[] columnNames = null;
+					ResultSet resultSet = statement.executeQuery(sql + " where 1 = 0");
+					try {
+						ResultSetMetaData metaData = resultSet.getMetaData();
+						if (dialect.supports(metaData)) {
+							expectedHash = getExpectedHash(expected, metaData, tableName, dialect);
+							columnNames = getEscapedColumnNames(metaData);
+						}
+					} finally {
+						resultSet.close();
+					}
+					if (expectedHash != null) {
+						return expectedHash.equals(getDatabaseHash(statement, columnNames, tableName, dialect));
+					}
+				}
+				if (getRowCount(statement, tableName) != expected.getRowCount()) {
+					return false;
+				}
+				Integer fetchSize = (Integer) this.connection.getConfig().getProperty(DatabaseConfig.PROPERTY_FETCH_SIZE);
+				if (fetchSize != null) {
+					statement.setFetchSize(fetchSize);
+				}
+				ResultSet resultSet = statement.executeQuery(sql);
+				try {
+					return getExpectedHash(expected, resultSet.getMetaData(), tableName, null).equals(
+							getDatabaseHash(resultSet, tableName));
+				} finally {
+					resultSet.close();
+				}
+			} finally {
+				statement.close();
+			}
+		} catch (DataTypeException e) {
+			// Values that cannot be converted will be reported when rows are compared
+			return false;
+		} catch (SQLException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	private TableHash.Dialect getDialect() throws SQLException {
+		// Resolved once since the same dataset is often used to compare several tables
+		if (!this.dialectResolved) {
+			this.dialect = TableHash.Dialect.get(this.connection.getConnection());
+			this.dialectResolved = true;
+		}
+		return this.dialect;
+	}
+
+	private int getRowCount(Statement statement, String tableName) throws SQLException {
+		ResultSet resultSet = statement.executeQuery("select count(*) from "
+				+ escape(tableName, this.connection.getSchema()));
+		try {
+			resultSet.next();
+			return resultSet.getInt(1);
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	private TableHash getExpectedHash(ITable expected, ResultSetMetaData metaData, String tableName,
+			TableHash.Dialect dialect) throws SQLException, DataSetException, DataTypeException {
+		DataType[] dataTypes = getDataTypes(metaData, tableName);
+		Column[] expectedColumns = expected.getTableMetaData().getColumns();
+		String[] columnNames = new String[dataTypes.length];
+		for (int i = 0; i < columnNames.length; i++) {
+			Column column = Columns.getColumn(metaData.getColumnName(i + 1), expectedColumns);
+			columnNames[i] = (column == null ? null : column.getColumnName());
+		}
+		TableHash hash = new TableHash();
+		Object[] row = new Object[dataTypes.length];
+		for (int rowIndex = 0; rowIndex < expected.getRowCount(); rowIndex++) {
+			for (int i = 0; i < row.length; i++) {
+				Object value = (columnNames[i] == null ? null : expected.getValue(rowIndex, columnNames[i]));
+				row[i] = dataTypes[i].typeCast(value);
+			}
+			if (dialect == null) {
+				hash.add(row);
+			} else {
+				dialect.add(hash, row);
+			}
+		}
+		return hash;
+	}
+
+	private String[] getEscapedColumnNames(ResultSetMetaData metaData) throws SQLException {
+		String[] columnNames = new String[metaData.getColumnCount()];
+		for (int i = 0; i < columnNames.length; i++) {
+			columnNames[i] = escape(metaData.getColumnName(i + 1), null);
+		}
+		return columnNames;
+	}
+
+	private TableHash getDatabaseHash(Statement statement, String[] columnNames, String tableName,
+			TableHash.Dialect dialect) throws SQLException {
+		ResultSet resultSet = statement.executeQuery(dialect.getSelectStatement(columnNames,
+				escape(tableName, this.connection.getSchema())));
+		try {
+			return dialect.read(resultSet);
+		} finally {
+			resultSet.close();
+		}
+	}
+
+	private TableHash getDatabaseHash(ResultSet resultSet, String tableName) throws SQLException, DataTypeException {
+		DataType[] dataTypes = getDataTypes(resultSet.getMetaData(), tableName);
+		TableHash hash = new TableHash();
+		Object[] row = new Object[dataTypes.length];
+		while (resultSet.next()) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] = dataTypes[i].getSqlValue(i + 1, resultSet);
+			}
+			hash.add(row);
+		}
+		return hash;
+	}
+
+	private DataType[] getDataTypes(ResultSetMetaData metaData, String tableName) throws SQLException,
+			DataTypeException {
+		IDataTypeFactory dataTypeFactory = (IDataTypeFactory) this.connection.getConfig().getProperty(
+				DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
+		DataType[] dataTypes = new DataType[metaData.getColumnCount()];
+		for (int i = 0; i < dataTypes.length; i++) {
+			dataTypes[i] = dataTypeFactory.createDataType(metaData.getColumnType(i + 1),
+					metaData.getColumnTypeName(i + 1), tableName, metaData.getColumnName(i + 1));
+		}
+		return dataTypes;
+	}
+
+	private List<String> getPrimaryKeys(String tableName) throws SQLException {
+		DatabaseMetaData metaData = this.connection.getConnection().getMetaData();
+		QualifiedTableName qualifiedTableName = new QualifiedTableName(tableName, this.connection.getSchema());
+		String schema = toMetaDataIdentifier(metaData, qualifiedTableName.getSchema());
+		String table = toMetaDataIdentifier(metaData, qualifiedTableName.getTable());
+		SortedMap<Short, String> primaryKeys = new TreeMap<Short, String>();
+		ResultSet resultSet = metaData.getPrimaryKeys(null, schema, table);
+		try {
+			while (resultSet.next()) {
+				primaryKeys.put(resultSet.getShort("KEY_SEQ"), resultSet.getString("COLUMN_NAME"));
+			}
+		} finally {
+			resultSet.close();
+		}
+		return new ArrayList<String>(primaryKeys.values());
+	}
+
+	private String toMetaDataIdentifier(DatabaseMetaData metaData, String identifier) throws SQLException {
+		if (identifier == null) {
+			return null;
+		}
+		if (metaData.storesUpperCaseIdentifiers()) {
+			return identifier.toUpperCase();
+		}
+		if (metaData.storesLowerCaseIdentifiers()) {
+			return identifier.toLowerCase();
+		}
+		return identifier;
+	}
+
+	@Override
+	public String[] getTableNames() throws DataSetException {
+		return this.expectedDataSet.getTableNames();
+	}
+
+	/**
+	 * Returns the database connection used to query tables.
+	 * @return the connection
+	 */
+	public IDatabaseConnection getConnection() {
+		return this.connection;
+	}
+
+	/**
+	 * Returns the expected dataset used to determine the tables to query.
+	 * @return the expected dataset
+	 */
+	public IDataSet getExpectedDataSet() {
+		return this.expectedDataSet;
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.assertion;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * Database assertion strategy that compares an order independent hash of each expected table with a hash of the
+ * matching database columns, see {@link FilteredDatabaseDataSet#hasExpectedContent(String)}. Rows are only compared
+ * individually, using the {@link NonStrictDatabaseAssertion non-strict} strategy, when the hashes differ.
+ *
+ * @author agent
+ */
+class HashDatabaseAssertion implements DatabaseAssertion {
+
+	private static final Log logger = LogFactory.getLog(HashDatabaseAssertion.class);
+
+	private final DatabaseAssertion fallback = new NonStrictDatabaseAssertion();
+
+	public void assertEquals(IDataSet expectedDataSet, IDataSet actualDataSet) throws DatabaseUnitException {
+		if ((expectedDataSet != actualDataSet) && !hashesMatch(expectedDataSet, actualDataSet)) {
+			this.fallback.assertEquals(expectedDataSet, actualDataSet);
+		}
+	}
+
+	private boolean hashesMatch(IDataSet expectedDataSet, IDataSet actualDataSet) throws DataSetException {
+		if (!(actualDataSet instanceof FilteredDatabaseDataSet)) {
+			return false;
+		}
+		FilteredDatabaseDataSet filteredDataSet = (FilteredDatabaseDataSet) actualDataSet;
+		if (filteredDataSet.getExpectedDataSet() != expectedDataSet) {
+			return false;
+		}
+		for (String tableName : expectedDataSet.getTableNames()) {
+			if (!filteredDataSet.hasExpectedContent(tableName)) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Hash mismatch for table " + tableName + ", comparing rows");
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+}
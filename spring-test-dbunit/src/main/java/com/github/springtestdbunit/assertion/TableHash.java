@@ -0,0 +1,291 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.assertion;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * An order independent hash of table rows. Rows with the same values produce the same hash regardless of the order in
+ * which they are added. The hash is made from the row count and the sums of the high and low 32 bits of each row hash,
+ * so that it can also be calculated by a database using standard <tt>COUNT</tt> and <tt>SUM</tt> aggregates, see
+ * {@link Dialect}.
+ *
+ * @author agent
+ */
+class TableHash {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private static final long LOW_BITS = 0xffffffffL;
+
+	private long rowCount;
+
+	private long high;
+
+	private long low;
+
+	/**
+	 * Create a new empty {@link TableHash} instance.
+	 */
+	public TableHash() {
+	}
+
+	private TableHash(long rowCount, long high, long low) {
+		this.rowCount = rowCount;
+		this.high = high;
+		this.low = low;
+	}
+
+	/**
+	 * Add a row to the hash. Numbers are compared by value and dates by time so that values read from a dataset can be
+	 * compared with values read from the database.
+	 * @param row the row values
+	 */
+	public void add(Object[] row) {
+		long hash = FNV_OFFSET_BASIS;
+		for (Object value : row) {
+			hash = hash(hash, normalize(value));
+			hash = hash(hash, "\u0000");
+		}
+		addRowHash(mix(hash));
+	}
+
+	private void addRowHash(long hash) {
+		this.rowCount++;
+		this.high += (hash >>> 32);
+		this.low += (hash & LOW_BITS);
+	}
+
+	/**
+	 * Returns the number of rows that have been added.
+	 * @return the row count
+	 */
+	public long getRowCount() {
+		return this.rowCount;
+	}
+
+	private long hash(long hash, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private long mix(long hash) {
+		hash ^= (hash >>> 33);
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= (hash >>> 33);
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= (hash >>> 33);
+		return hash;
+	}
+
+	private String normalize(Object value) {
+		if (value == null) {
+			return "\u0001";
+		}
+		if (value instanceof Number) {
+			try {
+				BigDecimal decimal = new BigDecimal(value.toString());
+				return (decimal.signum() == 0 ? "0" : decimal.stripTrailingZeros().toPlainString());
+			} catch (NumberFormatException e) {
+				return value.toString();
+			}
+		}
+		if (value instanceof java.util.Date) {
+			return String.valueOf(((java.util.Date) value).getTime());
+		}
+		if (value instanceof byte[]) {
+			return Arrays.toString((byte[]) value);
+		}
+		return value.toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) ((this.high * 31 + this.low) * 31 + this.rowCount);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof TableHash)) {
+			return false;
+		}
+		TableHash other = (TableHash) obj;
+		return (this.rowCount == other.rowCount) && (this.high == other.high) && (this.low == other.low);
+	}
+
+	/**
+	 * The databases that can calculate a {@link TableHash} using SQL, identified by their product name. Each row is
+	 * hashed using the MD5 of its column values, encoded as <tt>length:value</tt> or <tt>N</tt> for <tt>null</tt>, and
+	 * the same hash is calculated for expected rows using {@link #add(TableHash, Object[])}. Since values are compared
+	 * using their text only integer and <tt>VARCHAR</tt> columns are {@link #supports(ResultSetMetaData) supported}.
+	 */
+	static enum Dialect {
+
+		POSTGRESQL("PostgreSQL", "COALESCE(CAST(CHAR_LENGTH(CAST(%1$s AS VARCHAR)) AS VARCHAR) || ':' || "
+				+ "CAST(%1$s AS VARCHAR), 'N')", "(", " || ", ")",
+				"CAST(CAST('x' || LPAD(%s, 16, '0') AS BIT(64)) AS BIGINT)"),
+
+		MYSQL("MySQL", "COALESCE(CONCAT(CHAR_LENGTH(CAST(%1$s AS CHAR)), ':', CAST(%1$s AS CHAR)), 'N')", "CONCAT(",
+				", ", ")", "CAST(CONV(%s, 16, 10) AS UNSIGNED)");
+
+		private final String productName;
+
+		private final String columnSql;
+
+		private final String concatPrefix;
+
+		private final String concatSeparator;
+
+		private final String concatSuffix;
+
+		private final String hexToNumberSql;
+
+		private Dialect(String productName, String columnSql, String concatPrefix, String concatSeparator,
+				String concatSuffix, String hexToNumberSql) {
+			this.productName = productName;
+			this.columnSql = columnSql;
+			this.concatPrefix = concatPrefix;
+			this.concatSeparator = concatSeparator;
+			this.concatSuffix = concatSuffix;
+			this.hexToNumberSql = hexToNumberSql;
+		}
+
+		/**
+		 * Returns if the columns of the specified result set can be hashed by the database.
+		 * @param metaData the meta data of a query selecting the columns to hash
+		 * @return if the columns are supported
+		 * @throws SQLException
+		 */
+		public boolean supports(ResultSetMetaData metaData) throws SQLException {
+			for (int i = 1; i <= metaData.getColumnCount(); i++) {
+				if (!isSupported(metaData.getColumnType(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean isSupported(int type) {
+			switch (type) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Returns the SQL used to calculate the hash of the specified columns.
+		 * @param columnNames the escaped column names
+		 * @param tableName the escaped table name
+		 * @return the SQL statement
+		 */
+		public String getSelectStatement(String[] columnNames, String tableName) {
+			StringBuilder row = new StringBuilder(this.concatPrefix);
+			for (int i = 0; i < columnNames.length; i++) {
+				row.append(i == 0 ? "" : this.concatSeparator);
+				row.append(String.format(this.columnSql, columnNames[i]));
+			}
+			row.append(this.concatSuffix);
+			return "SELECT COUNT(*), SUM(" + String.format(this.hexToNumberSql, "SUBSTRING(ROW_HASH, 1, 8)")
+					+ "), SUM(" + String.format(this.hexToNumberSql, "SUBSTRING(ROW_HASH, 9, 8)")
+					+ ") FROM (SELECT MD5(" + row + ") AS ROW_HASH FROM " + tableName + ") ROW_HASHES";
+		}
+
+		/**
+		 * Read the hash from a result set returned by the {@link #getSelectStatement(String[], String) select
+		 * statement}.
+		 * @param resultSet the result set
+		 * @return the hash
+		 * @throws SQLException
+		 */
+		public TableHash read(ResultSet resultSet) throws SQLException {
+			resultSet.next();
+			return new TableHash(resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3));
+		}
+
+		/**
+		 * Add a row to the hash using the same encoding as the database. Values must have been converted to the type
+		 * of the database column.
+		 * @param hash the hash to update
+		 * @param row the row values
+		 */
+		public void add(TableHash hash, Object[] row) {
+			StringBuilder text = new StringBuilder();
+			for (Object value : row) {
+				if (value == null) {
+					text.append("N");
+				} else {
+					String string = value.toString();
+					text.append(string.codePointCount(0, string.length())).append(":").append(string);
+				}
+			}
+			byte[] digest = md5(text.toString());
+			long rowHash = 0;
+			for (int i = 0; i < 8; i++) {
+				rowHash = (rowHash << 8) | (digest[i] & 0xff);
+			}
+			hash.addRowHash(rowHash);
+		}
+
+		private byte[] md5(String text) {
+			try {
+				return MessageDigest.getInstance("MD5").digest(text.getBytes("UTF-8"));
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			} catch (UnsupportedEncodingException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Returns the dialect for the specified connection or <tt>null</tt> if the database cannot calculate hashes.
+		 * @param connection the connection
+		 * @return the dialect or <tt>null</tt>
+		 * @throws SQLException
+		 */
+		public static Dialect get(Connection connection) throws SQLException {
+			String productName = connection.getMetaData().getDatabaseProductName();
+			for (Dialect dialect : values()) {
+				if ((productName != null) && productName.startsWith(dialect.productName)) {
+					return dialect;
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dbunit.database.DefaultMetadataHandler;
+import org.dbunit.database.IMetadataHandler;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link IMetadataHandler} decorator that caches the table, column and primary key meta-data returned from the
+ * database so that it can be shared between connections and tests. Cached meta-data is keyed on the database URL, user
+ * and schema. The cache must be {@link #invalidate() invalidated} if the database structure is changed, for example
+ * after executing DDL.
+ * <p>
+ * Caching is not used unless it is enabled using {@link DatabaseConfigBean#setCacheMetadata(Boolean)}.
+ *
+ * @author agent
+ */
+public class CachingMetadataHandler implements IMetadataHandler {
+
+	private final IMetadataHandler delegate;
+
+	private final Map<String, CachedResultSet> cache = new ConcurrentHashMap<String, CachedResultSet>();
+
+	/**
+	 * Create a new {@link CachingMetadataHandler} backed by a {@link DefaultMetadataHandler}.
+	 */
+	public CachingMetadataHandler() {
+		this(new DefaultMetadataHandler());
+	}
+
+	/**
+	 * Create a new {@link CachingMetadataHandler} instance.
+	 * @param delegate the handler used to obtain meta-data that has not been cached
+	 */
+	public CachingMetadataHandler(IMetadataHandler delegate) {
+		Assert.notNull(delegate, "Delegate must not be null");
+		this.delegate = delegate;
+	}
+
+	public ResultSet getColumns(DatabaseMetaData databaseMetaData, String schemaName, String tableName)
+			throws SQLException {
+		String key = getKey(databaseMetaData, "columns", schemaName, tableName);
+		CachedResultSet resultSet = this.cache.get(key);
+		if (resultSet == null) {
+			resultSet = new CachedResultSet(this.delegate.getColumns(databaseMetaData, schemaName, tableName));
+			this.cache.put(key, resultSet);
+		}
+		return resultSet.open();
+	}
+
+	public ResultSet getTables(DatabaseMetaData databaseMetaData, String schemaName, String[] tableTypes)
+			throws SQLException {
+		String key = getKey(databaseMetaData, "tables", schemaName, (tableTypes == null ? null : Arrays
+				.asList(tableTypes)));
+		CachedResultSet resultSet = this.cache.get(key);
+		if (resultSet == null) {
+			resultSet = new CachedResultSet(this.delegate.getTables(databaseMetaData, schemaName, tableTypes));
+			this.cache.put(key, resultSet);
+		}
+		return resultSet.open();
+	}
+
+	public ResultSet getPrimaryKeys(DatabaseMetaData databaseMetaData, String schemaName, String tableName)
+			throws SQLException {
+		String key = getKey(databaseMetaData, "primaryKeys", schemaName, tableName);
+		CachedResultSet resultSet = this.cache.get(key);
+		if (resultSet == null) {
+			resultSet = new CachedResultSet(this.delegate.getPrimaryKeys(databaseMetaData, schemaName, tableName));
+			this.cache.put(key, resultSet);
+		}
+		return resultSet.open();
+	}
+
+	public boolean tableExists(DatabaseMetaData databaseMetaData, String schemaName, String tableName)
+			throws SQLException {
+		// Only positive results are cached since missing tables are often created later
+		String key = getKey(databaseMetaData, "tableExists", schemaName, tableName);
+		if (this.cache.containsKey(key)) {
+			return true;
+		}
+		boolean exists = this.delegate.tableExists(databaseMetaData, schemaName, tableName);
+		if (exists) {
+			this.cache.put(key, CachedResultSet.EMPTY);
+		}
+		return exists;
+	}
+
+	public boolean matches(ResultSet resultSet, String schema, String table, boolean caseSensitive)
+			throws SQLException {
+		return this.delegate.matches(resultSet, schema, table, caseSensitive);
+	}
+
+	public boolean matches(ResultSet resultSet, String catalog, String schema, String table, String column,
+			boolean caseSensitive) throws SQLException {
+		return this.delegate.matches(resultSet, catalog, schema, table, column, caseSensitive);
+	}
+
+	public String getSchema(ResultSet resultSet) throws SQLException {
+		return this.delegate.getSchema(resultSet);
+	}
+
+	private String getKey(DatabaseMetaData databaseMetaData, String type, String schemaName, Object name)
+			throws SQLException {
+		return databaseMetaData.getURL() + "|" + databaseMetaData.getUserName() + "|" + type + "|" + schemaName + "|"
+				+ name;
+	}
+
+	/**
+	 * Discard all cached meta-data. Should be called whenever the structure of the database changes.
+	 */
+	public void invalidate() {
+		this.cache.clear();
+	}
+
+	/**
+	 * Returns the number of cached meta-data entries.
+	 * @return the size of the cache
+	 */
+	public int size() {
+		return this.cache.size();
+	}
+
+	/**
+	 * Rows of a meta-data {@link ResultSet} held in memory. Each call to {@link #open()} returns a new read-only,
+	 * forward-only result set over the rows.
+	 */
+	private static class CachedResultSet {
+
+		public static final CachedResultSet EMPTY = new CachedResultSet();
+
+		private final List<String> columnLabels = new ArrayList<String>();
+
+		private final List<Object[]> rows = new ArrayList<Object[]>();
+
+		private CachedResultSet() {
+		}
+
+		public CachedResultSet(ResultSet resultSet) throws SQLException {
+			try {
+				ResultSetMetaData metaData = resultSet.getMetaData();
+				int columnCount = metaData.getColumnCount();
+				for (int i = 1; i <= columnCount; i++) {
+					this.columnLabels.add(metaData.getColumnLabel(i).toUpperCase());
+				}
+				while (resultSet.next()) {
+					Object[] row = new Object[columnCount];
+					for (int i = 0; i < columnCount; i++) {
+						row[i] = resultSet.getObject(i + 1);
+					}
+					this.rows.add(row);
+				}
+			} finally {
+				resultSet.close();
+			}
+		}
+
+		public ResultSet open() {
+			return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+					new Cursor());
+		}
+
+		private class Cursor implements InvocationHandler {
+
+			private int row = -1;
+
+			private boolean wasNull;
+
+			private boolean closed;
+
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.equals("next")) {
+					this.row++;
+					return this.row < CachedResultSet.this.rows.size();
+				}
+				if (name.equals("close")) {
+					this.closed = true;
+					return null;
+				}
+				if (name.equals("isClosed")) {
+					return this.closed;
+				}
+				if (name.equals("wasNull")) {
+					return this.wasNull;
+				}
+				if (name.equals("findColumn")) {
+					return getColumnIndex(args[0]) + 1;
+				}
+				if (name.equals("equals")) {
+					return proxy == args[0];
+				}
+				if (name.equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				}
+				if (name.equals("toString")) {
+					return "Cached meta-data result set";
+				}
+				if (name.startsWith("get") && (args != null) && (args.length == 1)) {
+					return getValue(name, args[0]);
+				}
+				throw new SQLException("Method " + name + " is not supported by cached meta-data");
+			}
+
+			private Object getValue(String name, Object column) throws SQLException {
+				if ((this.row < 0) || (this.row >= CachedResultSet.this.rows.size())) {
+					throw new SQLException("Result set is not positioned on a row");
+				}
+				Object value = CachedResultSet.this.rows.get(this.row)[getColumnIndex(column)];
+				this.wasNull = (value == null);
+				if (name.equals("getObject")) {
+					return value;
+				}
+				if (name.equals("getString")) {
+					return (value == null ? null : value.toString());
+				}
+				if (name.equals("getBoolean")) {
+					if (value instanceof Number) {
+						return ((Number) value).intValue() != 0;
+					}
+					return (value == null ? false : Boolean.valueOf(value.toString()));
+				}
+				Number number = (value instanceof Number || value == null ? (Number) value : Long.valueOf(value
+						.toString().trim()));
+				if (name.equals("getInt")) {
+					return (number == null ? 0 : number.intValue());
+				}
+				if (name.equals("getShort")) {
+					return (number == null ? (short) 0 : number.shortValue());
+				}
+				if (name.equals("getLong")) {
+					return (number == null ? 0L : number.longValue());
+				}
+				throw new SQLException("Method " + name + " is not supported by cached meta-data");
+			}
+
+			private int getColumnIndex(Object column) throws SQLException {
+				int index = (column instanceof Integer ? ((Integer) column) - 1 : CachedResultSet.this.columnLabels
+						.indexOf(column.toString().toUpperCase()));
+				if ((index < 0) || (index >= CachedResultSet.this.columnLabels.size())) {
+					throw new SQLException("Invalid column " + column);
+				}
+				return index;
+			}
+		}
+	}
+}
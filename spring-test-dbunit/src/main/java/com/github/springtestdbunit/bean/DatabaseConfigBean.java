@@ -15,8 +15,10 @@
  */
 package com.github.springtestdbunit.bean;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.DatabaseConfig.ConfigProperty;
@@ -27,6 +29,8 @@ import org.dbunit.dataset.datatype.IDataTypeFactory;
 import org.dbunit.dataset.filter.IColumnFilter;
 import org.springframework.util.Assert;
 
+import com.github.springtestdbunit.annotation.ConstraintMode;
+
 /**
  * A bean representation of the DB unit {@link DatabaseConfig} class. This bean allows the database configuration from
  * spring using standard property arguments. The configuration from this bean can be {@link #apply applied} to an
@@ -44,8 +48,20 @@ public class DatabaseConfigBean {
 		}
 	}
 
+	/**
+	 * Constraint modes of applied configs, DBUnit does not allow additional properties to be held in the config itself.
+	 */
+	private static final Map<DatabaseConfig, ConstraintMode> APPLIED_CONSTRAINT_MODES = Collections
+			.synchronizedMap(new WeakHashMap<DatabaseConfig, ConstraintMode>());
+
 	private DatabaseConfig databaseConfig = new DatabaseConfig();
 
+	private boolean cacheMetadata;
+
+	private CachingMetadataHandler cachingMetadataHandler;
+
+	private ConstraintMode constraintMode = ConstraintMode.ENFORCED;
+
 	/**
 	 * Gets the statement factory database config property.
 	 * @return the statement factory
@@ -59,6 +75,7 @@ public class DatabaseConfigBean {
 	 * Sets the statement factory database config property.
 	 * @param statementFactory the statement factory
 	 * @see DatabaseConfig#PROPERTY_STATEMENT_FACTORY
+	 * @see com.github.springtestdbunit.statement.MultiRowInsertStatementFactory
 	 */
 	public void setStatementFactory(IStatementFactory statementFactory) {
 		setProperty("statementFactory", DatabaseConfig.PROPERTY_STATEMENT_FACTORY, statementFactory);
@@ -207,6 +224,68 @@ public class DatabaseConfigBean {
 	 */
 	public void setMetadataHandler(IMetadataHandler metadataHandler) {
 		setProperty("metadataHandler", DatabaseConfig.PROPERTY_METADATA_HANDLER, metadataHandler);
+		synchronized (this) {
+			this.cachingMetadataHandler = null;
+		}
+	}
+
+	/**
+	 * Gets if meta-data should be cached.
+	 * @return if meta-data is cached
+	 * @see #setCacheMetadata(Boolean)
+	 */
+	public Boolean getCacheMetadata() {
+		return this.cacheMetadata;
+	}
+
+	/**
+	 * Sets if meta-data should be cached. When <tt>true</tt> the {@link #getMetadataHandler() meta-data handler} is
+	 * wrapped in a {@link CachingMetadataHandler} that is shared by all connections this bean is
+	 * {@link #apply(DatabaseConfig) applied} to. Cached meta-data is not refreshed when the database structure changes,
+	 * see {@link #invalidateMetadataCache()}. Defaults to <tt>false</tt>.
+	 * @param cacheMetadata if meta-data should be cached
+	 * @see #invalidateMetadataCache()
+	 */
+	public void setCacheMetadata(Boolean cacheMetadata) {
+		Assert.notNull(cacheMetadata, "cacheMetadata cannot be null");
+		this.cacheMetadata = cacheMetadata;
+	}
+
+	/**
+	 * Discard any cached meta-data. Should be called whenever the structure of the database changes.
+	 */
+	public synchronized void invalidateMetadataCache() {
+		if (this.cachingMetadataHandler != null) {
+			this.cachingMetadataHandler.invalidate();
+		}
+	}
+
+	private synchronized CachingMetadataHandler getCachingMetadataHandler() {
+		if (this.cachingMetadataHandler == null) {
+			this.cachingMetadataHandler = new CachingMetadataHandler(getMetadataHandler());
+		}
+		return this.cachingMetadataHandler;
+	}
+
+	/**
+	 * Gets the mode used to check foreign key constraints while setup and teardown datasets are applied.
+	 * @return the constraint mode
+	 * @see #setConstraintMode(ConstraintMode)
+	 */
+	public ConstraintMode getConstraintMode() {
+		return this.constraintMode;
+	}
+
+	/**
+	 * Sets the mode used to check foreign key constraints while setup and teardown datasets are applied to connections
+	 * that this bean is {@link #apply(DatabaseConfig) applied} to. A mode specified using
+	 * {@link com.github.springtestdbunit.annotation.DbUnitConfiguration#constraintMode() &#064;DbUnitConfiguration}
+	 * takes precedence. Defaults to {@link ConstraintMode#ENFORCED}.
+	 * @param constraintMode the constraint mode
+	 */
+	public void setConstraintMode(ConstraintMode constraintMode) {
+		Assert.notNull(constraintMode, "constraintMode cannot be null");
+		this.constraintMode = constraintMode;
 	}
 
 	/**
@@ -346,5 +425,24 @@ public class DatabaseConfigBean {
 				databaseConfig.setProperty(name, value);
 			}
 		}
+		if (this.cacheMetadata) {
+			databaseConfig.setProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER, getCachingMetadataHandler());
+		}
+		if (this.constraintMode == ConstraintMode.ENFORCED) {
+			APPLIED_CONSTRAINT_MODES.remove(databaseConfig);
+		} else {
+			APPLIED_CONSTRAINT_MODES.put(databaseConfig, this.constraintMode);
+		}
+	}
+
+	/**
+	 * Returns the {@link ConstraintMode} of the bean that was last {@link #apply(DatabaseConfig) applied} to the
+	 * specified database config.
+	 * @param databaseConfig the database config
+	 * @return the constraint mode, {@link ConstraintMode#ENFORCED} if no bean with a different mode has been applied
+	 */
+	public static ConstraintMode getAppliedConstraintMode(DatabaseConfig databaseConfig) {
+		ConstraintMode constraintMode = APPLIED_CONSTRAINT_MODES.get(databaseConfig);
+		return (constraintMode == null ? ConstraintMode.ENFORCED : constraintMode);
 	}
 }
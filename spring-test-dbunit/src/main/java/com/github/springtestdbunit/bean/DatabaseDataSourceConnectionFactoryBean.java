@@ -15,12 +15,19 @@
  */
 package com.github.springtestdbunit.bean;
 
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import javax.sql.DataSource;
 
 import org.dbunit.database.DatabaseDataSourceConnection;
 import org.dbunit.database.IDatabaseConnection;
 import org.springframework.beans.factory.FactoryBean;
+import org.springframework.core.io.Resource;
 import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.jdbc.datasource.UserCredentialsDataSourceAdapter;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.util.Assert;
 
@@ -28,17 +35,29 @@ import org.springframework.util.Assert;
  * A {@link FactoryBean} that can be used to create a {@link #setTransactionAware transaction} aware
  * {@link DatabaseDataSourceConnection} using the specified {@link #setDataSource dataSource}. Additional configuration
  * is also supported using {@link #setDatabaseConfig(DatabaseConfigBean)}.
+ * <p>
+ * If the data source is a {@link TableModificationTrackingDataSource} a {@link TrackedDatabaseDataSourceConnection} is
+ * created so that modified tables can be tracked.
+ * <p>
+ * If the data source is a {@link WorkerSchemaDataSource}, or {@link #setSchemaIsolation schema isolation} is set, a
+ * {@link WorkerSchemaDatabaseConnection} is created that routes DBUnit to the schema of the current test worker.
  * 
  * @author Phillip Webb
  */
 public class DatabaseDataSourceConnectionFactoryBean implements FactoryBean<DatabaseDataSourceConnection> {
 
+	private static final Map<IDatabaseConnection, DataSource> CONNECTION_DATA_SOURCES = Collections
+			.synchronizedMap(new WeakHashMap<IDatabaseConnection, DataSource>());
+
 	private DataSource dataSource;
 	private boolean transactionAware = true;
 	private String username;
 	private String password;
 	private String schema;
 	private DatabaseConfigBean databaseConfig;
+	private SchemaIsolationMode schemaIsolation;
+	private Resource[] schemaScripts;
+	private WorkerSchemaDataSource workerSchemaDataSource;
 
 	public DatabaseDataSourceConnectionFactoryBean() {
 		super();
@@ -51,14 +70,52 @@ public class DatabaseDataSourceConnectionFactoryBean implements FactoryBean<Data
 
 	public DatabaseDataSourceConnection getObject() throws Exception {
 		Assert.notNull(this.dataSource, "The dataSource is required");
-		DatabaseDataSourceConnection dataSourceConntection = new DatabaseDataSourceConnection(
-				makeTransactionAware(this.dataSource), this.schema, this.username, this.password);
+		DataSource dataSource = makeWorkerSchemaAware(this.dataSource);
+		DatabaseDataSourceConnection dataSourceConntection = createConnection(makeTransactionAware(dataSource));
 		if (this.databaseConfig != null) {
 			this.databaseConfig.apply(dataSourceConntection.getConfig());
 		}
+		CONNECTION_DATA_SOURCES.put(dataSourceConntection, withCredentials(dataSource));
 		return dataSourceConntection;
 	}
 
+	private DatabaseDataSourceConnection createConnection(DataSource dataSource) throws SQLException {
+		if (WorkerSchemaDataSource.get(dataSource) != null) {
+			return new WorkerSchemaDatabaseConnection(dataSource, this.username, this.password);
+		}
+		TableModificationTracker tracker = TableModificationTrackingDataSource.getTracker(dataSource);
+		if (tracker != null) {
+			return new TrackedDatabaseDataSourceConnection(dataSource, this.schema, this.username, this.password,
+					tracker);
+		}
+		return new DatabaseDataSourceConnection(dataSource, this.schema, this.username, this.password);
+	}
+
+	private synchronized DataSource makeWorkerSchemaAware(DataSource dataSource) {
+		if ((this.schemaIsolation == null) || (WorkerSchemaDataSource.get(dataSource) != null)) {
+			return dataSource;
+		}
+		if (this.workerSchemaDataSource == null) {
+			this.workerSchemaDataSource = new WorkerSchemaDataSource(dataSource);
+			this.workerSchemaDataSource.setIsolationMode(this.schemaIsolation);
+			if (this.schemaScripts != null) {
+				this.workerSchemaDataSource.setScripts(this.schemaScripts);
+			}
+		}
+		return this.workerSchemaDataSource;
+	}
+
+	private DataSource withCredentials(DataSource dataSource) {
+		if (this.username == null) {
+			return dataSource;
+		}
+		UserCredentialsDataSourceAdapter credentialsDataSource = new UserCredentialsDataSourceAdapter();
+		credentialsDataSource.setTargetDataSource(dataSource);
+		credentialsDataSource.setUsername(this.username);
+		credentialsDataSource.setPassword(this.password);
+		return credentialsDataSource;
+	}
+
 	private DataSource makeTransactionAware(DataSource dataSource) {
 		if ((dataSource instanceof TransactionAwareDataSourceProxy) || !this.transactionAware) {
 			return dataSource;
@@ -118,6 +175,27 @@ public class DatabaseDataSourceConnectionFactoryBean implements FactoryBean<Data
 		this.databaseConfig = databaseConfig;
 	}
 
+	/**
+	 * Set the schema isolation mode used to give each test worker its own schema. The schema of a worker is created
+	 * from the {@link #setSchemaScripts schema scripts} the first time that it is used. Code under test will only see
+	 * the worker schema if it accesses the database using the same {@link WorkerSchemaDataSource}, consider declaring
+	 * the {@link WorkerSchemaDataSource} as a bean when this is required. Defaults to <tt>null</tt> meaning that schemas
+	 * are not isolated unless the data source is already a {@link WorkerSchemaDataSource}.
+	 * @param schemaIsolation the schema isolation mode or <tt>null</tt>
+	 */
+	public void setSchemaIsolation(SchemaIsolationMode schemaIsolation) {
+		this.schemaIsolation = schemaIsolation;
+	}
+
+	/**
+	 * Set the DDL scripts used to create the schema of each worker when {@link #setSchemaIsolation schema isolation}
+	 * is used.
+	 * @param schemaScripts the DDL scripts
+	 */
+	public void setSchemaScripts(Resource[] schemaScripts) {
+		this.schemaScripts = schemaScripts;
+	}
+
 	/**
 	 * Determines if the {@link IDatabaseConnection} created by this bean should be aware of Spring
 	 * {@link PlatformTransactionManager}s. Defaults to <tt>true</tt>
@@ -140,4 +218,15 @@ public class DatabaseDataSourceConnectionFactoryBean implements FactoryBean<Data
 			throw new IllegalStateException(e);
 		}
 	}
+
+	/**
+	 * Returns the {@link DataSource} that the specified connection was created from. The returned data source is not
+	 * transaction aware and can be used to obtain additional connections to the same database and schema, for example
+	 * to load tables in parallel.
+	 * @param connection the connection
+	 * @return the data source or <tt>null</tt> if the connection was not created by this factory bean
+	 */
+	public static DataSource getDataSource(IDatabaseConnection connection) {
+		return CONNECTION_DATA_SOURCES.get(connection);
+	}
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+/**
+ * Determines how {@link WorkerSchemaDataSource} assigns schemas to test workers.
+ *
+ * @author agent
+ */
+public enum SchemaIsolationMode {
+
+	/**
+	 * Each forked JVM uses its own schema. Forks are identified using the <tt>surefire.forkNumber</tt> system property
+	 * when it is set, or the process ID otherwise.
+	 */
+	FORK,
+
+	/**
+	 * Each thread of each forked JVM uses its own schema.
+	 */
+	THREAD
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.util.Assert;
+
+/**
+ * Tracks the known contents of database tables and discards that knowledge when SQL that may modify a table is
+ * executed. Used by {@link TableModificationTrackingDataSource} so that setup and teardown operations only need to
+ * reset tables that have been modified since they were last reset.
+ * <p>
+ * Table names are compared ignoring case. Qualified table names are tracked separately for each schema, modifying a
+ * table using a name with fewer qualifiers, such as an unqualified name, is assumed to modify any table that the name
+ * could refer to. SQL that cannot be attributed to a single table, such as DDL or stored procedure calls, causes all
+ * tables to be considered modified.
+ * <p>
+ * Content that is reset within a transaction is held against the connection and only recorded when the transaction is
+ * {@link #recordCommit(Connection) committed}.
+ * 
+ * @see TableModificationTrackingDataSource
+ * 
+ * @author agent
+ */
+public class TableModificationTracker {
+
+	private static final Pattern DML_PATTERN = Pattern.compile(
+			"^\\s*(?:insert\\s+into|update|delete\\s+from|delete|merge\\s+into|replace\\s+into|truncate\\s+table)"
+					+ "\\s+([^\\s(,;]+)", Pattern.CASE_INSENSITIVE);
+
+	private static final Pattern READ_ONLY_PATTERN = Pattern.compile(
+			"^\\s*(?:select|values|set|commit|rollback|savepoint|release|show|explain"
+					+ "|call\\s+identity\\s*\\(|call\\s+next\\s+value)", Pattern.CASE_INSENSITIVE);
+
+	private final Map<String, String> contents = new ConcurrentHashMap<String, String>();
+
+	private final Map<Connection, Map<String, String>> pendingContents = Collections
+			.synchronizedMap(new WeakHashMap<Connection, Map<String, String>>());
+
+	/**
+	 * Record that the specified SQL is about to be executed.
+	 * @param sql the SQL
+	 */
+	public void recordSql(String sql) {
+		if (sql == null || READ_ONLY_PATTERN.matcher(sql).find()) {
+			return;
+		}
+		Matcher matcher = DML_PATTERN.matcher(sql);
+		if (matcher.find()) {
+			recordModified(matcher.group(1));
+		} else {
+			recordAllModified();
+		}
+	}
+
+	/**
+	 * Record that the specified table has been modified.
+	 * @param tableName the table name
+	 */
+	public void recordModified(String tableName) {
+		String key = getKey(tableName);
+		removeMatching(this.contents, key);
+		synchronized (this.pendingContents) {
+			for (Map<String, String> pending : this.pendingContents.values()) {
+				removeMatching(pending, key);
+			}
+		}
+	}
+
+	private void removeMatching(Map<String, String> contents, String key) {
+		for (Iterator<String> iterator = contents.keySet().iterator(); iterator.hasNext();) {
+			if (isMatch(iterator.next(), key)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private boolean isMatch(String key, String modifiedKey) {
+		// A name with fewer qualifiers may refer to the same table as a more qualified name
+		return key.equals(modifiedKey) || key.endsWith("." + modifiedKey) || modifiedKey.endsWith("." + key);
+	}
+
+	/**
+	 * Record that all tables may have been modified.
+	 */
+	public void recordAllModified() {
+		this.contents.clear();
+		synchronized (this.pendingContents) {
+			for (Map<String, String> pending : this.pendingContents.values()) {
+				pending.clear();
+			}
+		}
+	}
+
+	/**
+	 * Record that the specified table contains known content.
+	 * @param tableName the table name
+	 * @param content a key describing the content of the table
+	 */
+	public void recordContent(String tableName, String content) {
+		Assert.notNull(content, "Content must not be null");
+		this.contents.put(getKey(tableName), content);
+	}
+
+	/**
+	 * Record that the specified table contains known content once the current transaction of the connection has been
+	 * committed. Content is recorded immediately when the connection is in auto-commit mode.
+	 * @param connection the connection used to reset the table
+	 * @param tableName the table name
+	 * @param content a key describing the content of the table
+	 * @throws SQLException if the auto-commit mode of the connection cannot be determined
+	 */
+	public void recordContent(Connection connection, String tableName, String content) throws SQLException {
+		Assert.notNull(content, "Content must not be null");
+		if (connection.getAutoCommit()) {
+			recordContent(tableName, content);
+			return;
+		}
+		synchronized (this.pendingContents) {
+			Map<String, String> pending = this.pendingContents.get(connection);
+			if (pending == null) {
+				pending = new HashMap<String, String>();
+				this.pendingContents.put(connection, pending);
+			}
+			pending.put(getKey(tableName), content);
+		}
+	}
+
+	/**
+	 * Record that the transaction of the specified connection has been committed.
+	 * @param connection the connection
+	 */
+	public void recordCommit(Connection connection) {
+		Map<String, String> pending = this.pendingContents.remove(connection);
+		if (pending != null) {
+			this.contents.putAll(pending);
+		}
+	}
+
+	/**
+	 * Record that the transaction of the specified connection has been rolled back, which may undo an earlier reset of
+	 * any table.
+	 * @param connection the connection
+	 */
+	public void recordRollback(Connection connection) {
+		this.pendingContents.remove(connection);
+		recordAllModified();
+	}
+
+	/**
+	 * Record that the specified connection has been closed, discarding content that was not committed.
+	 * @param connection the connection
+	 */
+	public void recordClose(Connection connection) {
+		this.pendingContents.remove(connection);
+	}
+
+	/**
+	 * Determine if the specified table has not been modified since it was recorded as holding the specified content.
+	 * @param tableName the table name
+	 * @param content a key describing the content of the table
+	 * @return <tt>true</tt> if the table is known to hold the content
+	 */
+	public boolean hasContent(String tableName, String content) {
+		return content.equals(this.contents.get(getKey(tableName)));
+	}
+
+	private String getKey(String tableName) {
+		String key = tableName.replace("\"", "").replace("`", "");
+		return key.toUpperCase(Locale.ENGLISH);
+	}
+}
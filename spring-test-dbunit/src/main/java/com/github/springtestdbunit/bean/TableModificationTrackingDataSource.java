@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * A {@link DataSource} proxy that records the tables modified by SQL executed through its connections using a
+ * {@link TableModificationTracker}. The data source used by the code under test should be wrapped so that
+ * modifications made by the test are seen. When a {@link DatabaseDataSourceConnectionFactoryBean} creates a connection
+ * for a tracking data source, setup and teardown operations that reset whole tables (<tt>CLEAN_INSERT</tt>,
+ * <tt>DELETE_ALL</tt> and <tt>TRUNCATE_TABLE</tt>) skip tables that are already known to hold the required content.
+ * <p>
+ * SQL is recorded when a statement is executed, prepared statements are recorded each time they are executed. Table
+ * content reset inside a transaction is only recorded when the transaction is committed through a tracked connection
+ * and, since a rollback may undo an earlier reset, rolling back a tracked connection causes all tables to be
+ * considered modified.
+ * 
+ * <pre>
+ * &lt;bean id=&quot;dataSource&quot; class=&quot;com.github.springtestdbunit.bean.TableModificationTrackingDataSource&quot;&gt;
+ *   &lt;constructor-arg ref=&quot;targetDataSource&quot;/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ * 
+ * @see TableModificationTracker
+ * 
+ * @author agent
+ */
+public class TableModificationTrackingDataSource extends DelegatingDataSource {
+
+	private final TableModificationTracker tracker = new TableModificationTracker();
+
+	public TableModificationTrackingDataSource() {
+		super();
+	}
+
+	public TableModificationTrackingDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return proxy(Connection.class, super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return proxy(Connection.class, super.getConnection(username, password));
+	}
+
+	/**
+	 * Returns the tracker used to record table modifications.
+	 * @return the tracker
+	 */
+	public TableModificationTracker getTracker() {
+		return this.tracker;
+	}
+
+	private <T> T proxy(Class<T> type, T target) {
+		return proxy(type, target, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T proxy(Class<T> type, T target, String sql) {
+		return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type },
+				new TrackingInvocationHandler(target, sql));
+	}
+
+	/**
+	 * Returns the {@link TableModificationTracker} for the specified data source, which may be wrapped by other
+	 * {@link DelegatingDataSource}s.
+	 * @param dataSource the data source
+	 * @return the tracker or <tt>null</tt> if the data source is not tracked
+	 */
+	public static TableModificationTracker getTracker(DataSource dataSource) {
+		while (dataSource instanceof DelegatingDataSource) {
+			if (dataSource instanceof TableModificationTrackingDataSource) {
+				return ((TableModificationTrackingDataSource) dataSource).getTracker();
+			}
+			dataSource = ((DelegatingDataSource) dataSource).getTargetDataSource();
+		}
+		return null;
+	}
+
+	private class TrackingInvocationHandler implements InvocationHandler {
+
+		private final Object target;
+
+		private final String sql;
+
+		private final List<String> batch = new ArrayList<String>();
+
+		public TrackingInvocationHandler(Object target, String sql) {
+			this.target = target;
+			this.sql = sql;
+		}
+
+		@SuppressWarnings("unchecked")
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			TableModificationTracker tracker = TableModificationTrackingDataSource.this.tracker;
+			String name = method.getName();
+			if (name.equals("equals")) {
+				return (proxy == args[0]);
+			}
+			if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			if (name.equals("rollback")) {
+				tracker.recordRollback((Connection) proxy);
+			}
+			String sql = ((args != null) && (args.length > 0) && (args[0] instanceof String) ? (String) args[0] : null);
+			if (this.target instanceof Statement) {
+				recordExecution(tracker, name, sql);
+			}
+			try {
+				Object result = method.invoke(this.target, args);
+				if (name.equals("commit") || (name.equals("setAutoCommit") && Boolean.TRUE.equals(args[0]))) {
+					// Enabling auto-commit commits any active transaction
+					tracker.recordCommit((Connection) proxy);
+				}
+				if (name.equals("close") && (this.target instanceof Connection)) {
+					tracker.recordClose((Connection) proxy);
+				}
+				if (result instanceof Statement) {
+					Class<?> type = method.getReturnType();
+					// Prepared statements are recorded when they are executed
+					return proxy((Class<Object>) type, result, (name.startsWith("prepare") ? sql : null));
+				}
+				return result;
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+
+		private void recordExecution(TableModificationTracker tracker, String name, String sql) {
+			if (name.equals("addBatch")) {
+				this.batch.add(sql == null ? this.sql : sql);
+			} else if (name.equals("clearBatch")) {
+				this.batch.clear();
+			} else if (name.equals("executeBatch")) {
+				for (String batchSql : this.batch) {
+					tracker.recordSql(batchSql);
+				}
+				this.batch.clear();
+			} else if (name.startsWith("execute")) {
+				tracker.recordSql(sql == null ? this.sql : sql);
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.DatabaseDataSourceConnection;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link DatabaseDataSourceConnection} for a {@link TableModificationTrackingDataSource}, providing access to the
+ * {@link TableModificationTracker}.
+ * 
+ * @see DatabaseDataSourceConnectionFactoryBean
+ * 
+ * @author agent
+ */
+public class TrackedDatabaseDataSourceConnection extends DatabaseDataSourceConnection {
+
+	private final TableModificationTracker tracker;
+
+	public TrackedDatabaseDataSourceConnection(DataSource dataSource, String schema, String username,
+			String password, TableModificationTracker tracker) throws SQLException {
+		super(dataSource, schema, username, password);
+		Assert.notNull(tracker, "Tracker must not be null");
+		this.tracker = tracker;
+	}
+
+	/**
+	 * Returns the tracker that records modifications made to tables.
+	 * @return the tracker
+	 */
+	public TableModificationTracker getTracker() {
+		return this.tracker;
+	}
+
+	/**
+	 * Record that the specified table has been reset to known content using this connection. If the connection is
+	 * part of a transaction the content is only recorded when the transaction commits.
+	 * @param tableName the table name
+	 * @param content a key describing the content of the table
+	 * @throws SQLException on SQL error
+	 * @see TableModificationTracker#recordContent(Connection, String, String)
+	 */
+	public void recordContent(String tableName, String content) throws SQLException {
+		Connection connection = getConnection();
+		// Transaction aware connections are keyed by the tracked connection that they use
+		while (connection instanceof ConnectionProxy) {
+			connection = ((ConnectionProxy) connection).getTargetConnection();
+		}
+		this.tracker.recordContent(connection, tableName, content);
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * A {@link DataSource} proxy that gives each test worker its own schema so that tests running in parallel do not
+ * interfere with each other. A schema is created from the configured {@link #setScripts DDL scripts} the first time a
+ * worker obtains a connection and every connection is switched to the schema of the worker that obtains it. The data
+ * source used by the code under test should be wrapped so that it sees the same schema as DBUnit. When a
+ * {@link DatabaseDataSourceConnectionFactoryBean} creates a connection for a worker schema data source, DBUnit is
+ * routed to the schema of the current worker.
+ * 
+ * <pre>
+ * &lt;bean id=&quot;dataSource&quot; class=&quot;com.github.springtestdbunit.bean.WorkerSchemaDataSource&quot;&gt;
+ *   &lt;constructor-arg ref=&quot;targetDataSource&quot;/&gt;
+ *   &lt;property name=&quot;isolationMode&quot; value=&quot;THREAD&quot;/&gt;
+ *   &lt;property name=&quot;scripts&quot; value=&quot;classpath:/schema.sql&quot;/&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ * 
+ * The default statements used to create and select schemas are supported by HSQLDB, H2, Derby and DB2.
+ * 
+ * @see SchemaIsolationMode
+ * 
+ * @author agent
+ */
+public class WorkerSchemaDataSource extends DelegatingDataSource {
+
+	private static final Log logger = LogFactory.getLog(WorkerSchemaDataSource.class);
+
+	private static final String FORK_ID = getForkId();
+
+	private SchemaIsolationMode isolationMode = SchemaIsolationMode.FORK;
+
+	private String schemaPrefix = "WORKER_";
+
+	private Resource[] scripts = new Resource[0];
+
+	private String createSchemaStatement = "CREATE SCHEMA {0}";
+
+	private String setSchemaStatement = "SET SCHEMA {0}";
+
+	private final Map<String, Boolean> createdSchemas = new ConcurrentHashMap<String, Boolean>();
+
+	public WorkerSchemaDataSource() {
+		super();
+	}
+
+	public WorkerSchemaDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return prepare(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return prepare(super.getConnection(username, password));
+	}
+
+	private Connection prepare(Connection connection) throws SQLException {
+		try {
+			String schema = getSchema();
+			if (!this.createdSchemas.containsKey(schema)) {
+				createSchema(connection, schema);
+			}
+			execute(connection, this.setSchemaStatement, schema);
+			return connection;
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		} catch (RuntimeException e) {
+			connection.close();
+			throw e;
+		}
+	}
+
+	private synchronized void createSchema(Connection connection, String schema) throws SQLException {
+		if (this.createdSchemas.containsKey(schema)) {
+			return;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Creating worker schema " + schema);
+		}
+		execute(connection, this.createSchemaStatement, schema);
+		execute(connection, this.setSchemaStatement, schema);
+		ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+		populator.setScripts(this.scripts);
+		populator.populate(connection);
+		if (!connection.getAutoCommit()) {
+			connection.commit();
+		}
+		this.createdSchemas.put(schema, Boolean.TRUE);
+	}
+
+	private void execute(Connection connection, String sql, String schema) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(StringUtils.replace(sql, "{0}", schema));
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Returns the name of the schema used by the current worker.
+	 * @return the schema name
+	 */
+	public String getSchema() {
+		String schema = this.schemaPrefix + FORK_ID;
+		if (this.isolationMode == SchemaIsolationMode.THREAD) {
+			schema = schema + "_" + Thread.currentThread().getId();
+		}
+		// Unquoted identifiers are stored in upper case by most databases
+		return schema.toUpperCase();
+	}
+
+	/**
+	 * Set how schemas are assigned to workers. Defaults to {@link SchemaIsolationMode#FORK}.
+	 * @param isolationMode the isolation mode
+	 */
+	public void setIsolationMode(SchemaIsolationMode isolationMode) {
+		Assert.notNull(isolationMode, "IsolationMode must not be null");
+		this.isolationMode = isolationMode;
+	}
+
+	/**
+	 * Returns how schemas are assigned to workers.
+	 * @return the isolation mode
+	 */
+	public SchemaIsolationMode getIsolationMode() {
+		return this.isolationMode;
+	}
+
+	/**
+	 * Set the prefix used for schema names. Defaults to <tt>WORKER_</tt>.
+	 * @param schemaPrefix the schema prefix
+	 */
+	public void setSchemaPrefix(String schemaPrefix) {
+		Assert.hasLength(schemaPrefix, "SchemaPrefix must not be empty");
+		this.schemaPrefix = schemaPrefix;
+	}
+
+	/**
+	 * Set the DDL scripts that are run to create the tables of each schema. Scripts are run once the schema has been
+	 * selected so they should not qualify table names.
+	 * @param scripts the DDL scripts
+	 */
+	public void setScripts(Resource[] scripts) {
+		Assert.notNull(scripts, "Scripts must not be null");
+		this.scripts = scripts;
+	}
+
+	/**
+	 * Set the SQL statement used to create a schema, <tt>{0}</tt> is replaced with the schema name. Defaults to
+	 * <tt>CREATE SCHEMA {0}</tt>.
+	 * @param createSchemaStatement the create schema statement
+	 */
+	public void setCreateSchemaStatement(String createSchemaStatement) {
+		Assert.hasLength(createSchemaStatement, "CreateSchemaStatement must not be empty");
+		this.createSchemaStatement = createSchemaStatement;
+	}
+
+	/**
+	 * Set the SQL statement used to select the schema of a connection, <tt>{0}</tt> is replaced with the schema name.
+	 * Defaults to <tt>SET SCHEMA {0}</tt>.
+	 * @param setSchemaStatement the set schema statement
+	 */
+	public void setSetSchemaStatement(String setSchemaStatement) {
+		Assert.hasLength(setSchemaStatement, "SetSchemaStatement must not be empty");
+		this.setSchemaStatement = setSchemaStatement;
+	}
+
+	/**
+	 * Returns the {@link WorkerSchemaDataSource} for the specified data source, which may be wrapped by other
+	 * {@link DelegatingDataSource}s.
+	 * @param dataSource the data source
+	 * @return the worker schema data source or <tt>null</tt>
+	 */
+	public static WorkerSchemaDataSource get(DataSource dataSource) {
+		while (dataSource instanceof DelegatingDataSource) {
+			if (dataSource instanceof WorkerSchemaDataSource) {
+				return (WorkerSchemaDataSource) dataSource;
+			}
+			dataSource = ((DelegatingDataSource) dataSource).getTargetDataSource();
+		}
+		return null;
+	}
+
+	private static String getForkId() {
+		String forkId = System.getProperty("surefire.forkNumber");
+		if (!StringUtils.hasText(forkId)) {
+			// The runtime name is typically pid@hostname
+			forkId = ManagementFactory.getRuntimeMXBean().getName();
+			forkId = (forkId.contains("@") ? forkId.substring(0, forkId.indexOf('@')) : forkId);
+		}
+		return forkId.replaceAll("[^A-Za-z0-9_]", "_");
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseDataSet;
+import org.dbunit.database.DatabaseDataSourceConnection;
+import org.dbunit.dataset.IDataSet;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link DatabaseDataSourceConnection} for a {@link WorkerSchemaDataSource} that routes DBUnit to the schema of the
+ * current worker. Each thread uses its own JDBC connection which must be {@link #close() closed} by the same thread.
+ * <p>
+ * Modifications are not {@link TableModificationTracker tracked} for worker schemas since the tracker of a data source
+ * does not distinguish between schemas.
+ * 
+ * @see DatabaseDataSourceConnectionFactoryBean
+ * 
+ * @author agent
+ */
+public class WorkerSchemaDatabaseConnection extends DatabaseDataSourceConnection {
+
+	private final DataSource dataSource;
+
+	private final WorkerSchemaDataSource workerSchemaDataSource;
+
+	private final String username;
+
+	private final String password;
+
+	private final ThreadLocal<Connection> connection = new ThreadLocal<Connection>();
+
+	private final Map<String, IDataSet> dataSets = new ConcurrentHashMap<String, IDataSet>();
+
+	public WorkerSchemaDatabaseConnection(DataSource dataSource, String username, String password)
+			throws SQLException {
+		super(dataSource, null, username, password);
+		this.workerSchemaDataSource = WorkerSchemaDataSource.get(dataSource);
+		Assert.notNull(this.workerSchemaDataSource, "DataSource must be a WorkerSchemaDataSource");
+		this.dataSource = dataSource;
+		this.username = username;
+		this.password = password;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		Connection connection = this.connection.get();
+		if (connection == null) {
+			connection = (this.username == null ? this.dataSource.getConnection() : this.dataSource.getConnection(
+					this.username, this.password));
+			this.connection.set(connection);
+		}
+		return connection;
+	}
+
+	@Override
+	public String getSchema() {
+		return this.workerSchemaDataSource.getSchema();
+	}
+
+	@Override
+	public IDataSet createDataSet() throws SQLException {
+		String schema = getSchema();
+		IDataSet dataSet = this.dataSets.get(schema);
+		if (dataSet == null) {
+			Boolean caseSensitiveTableNames = (Boolean) getConfig().getProperty(
+					DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES);
+			dataSet = new DatabaseDataSet(this, caseSensitiveTableNames);
+			this.dataSets.put(schema, dataSet);
+		}
+		return dataSet;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		Connection connection = this.connection.get();
+		if (connection != null) {
+			this.connection.remove();
+			connection.close();
+		}
+	}
+
+	/**
+	 * Returns the worker schema data source used by this connection.
+	 * @return the worker schema data source
+	 */
+	public WorkerSchemaDataSource getWorkerSchemaDataSource() {
+		return this.workerSchemaDataSource;
+	}
+}
@@ -15,24 +15,49 @@
  */
 package com.github.springtestdbunit.dataset;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.dbunit.dataset.IDataSet;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.ClassRelativeResourceLoader;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * Abstract data set loader, which provides a basis for concrete implementations of the {@link DataSetLoader} strategy.
  * Provides a <em>Template Method</em> based approach for {@link #loadDataSet(Class, String) loading} data using a
  * Spring {@link #getResourceLoader resource loader}.
+ * <p>
+ * Subclasses can override {@link #getDataSetCache()} to hold parsed datasets in a {@link DataSetCache} so that a
+ * resource shared by many tests is only parsed once. Cached datasets are returned as read-only views.
+ * <p>
+ * Resources listed for the test class in a dataset index, written when tests are compiled using the
+ * <tt>spring-test-dbunit-processor</tt> annotation processor, are obtained directly from the class path without
+ * probing resource locations. The index is trusted, indexed resources are not checked to exist, so tests must be
+ * recompiled when a dataset is removed. The index is only used by loaders that do not override
+ * {@link #getResourceLoader} or {@link #getResourceLocations}.
  * 
  * @author Phillip Webb
  * 
  * @see #getResourceLoader
  * @see #getResourceLocations
  * @see #createDataSet(Resource)
+ * @see #getDataSetCache()
  */
 public abstract class AbstractDataSetLoader implements DataSetLoader {
 
+	private static final Log logger = LogFactory.getLog(AbstractDataSetLoader.class);
+
+	private static final Map<Class<?>, Boolean> defaultResourceResolution = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, Boolean>());
+
 	/**
 	 * Loads a {@link IDataSet dataset} from {@link Resource}s obtained from the specified <tt>location</tt>. Each
 	 * <tt>location</tt> can be mapped to a number of potential {@link #getResourceLocations resources}, the first
@@ -45,17 +70,95 @@ public abstract class AbstractDataSetLoader implements DataSetLoader {
 	 * @see com.github.springtestdbunit.dataset.DataSetLoader#loadDataSet(Class, String) java.lang.String)
 	 */
 	public IDataSet loadDataSet(Class<?> testClass, String location) throws Exception {
+		Resource resource = getResource(testClass, location);
+		return (resource == null ? null : loadDataSet(resource));
+	}
+
+	/**
+	 * Returns the first {@link Resource} obtained from the specified <tt>location</tt> that {@link Resource#exists()
+	 * exists}, or the indexed resource when the location is listed in the dataset index. This method and {@link #loadDataSet(Resource)} are the two steps performed by
+	 * {@link #loadDataSet(Class, String)} and may be called separately to time each step.
+	 * @param testClass The class under test
+	 * @param location The source location
+	 * @return the resource or <tt>null</tt> if no resource can be found
+	 */
+	public Resource getResource(Class<?> testClass, String location) {
+		Resource indexedResource = getIndexedResource(testClass, location);
+		if (indexedResource != null) {
+			return indexedResource;
+		}
 		ResourceLoader resourceLoader = getResourceLoader(testClass);
 		String[] resourceLocations = getResourceLocations(testClass, location);
 		for (String resourceLocation : resourceLocations) {
 			Resource resource = resourceLoader.getResource(resourceLocation);
 			if (resource.exists()) {
-				return createDataSet(resource);
+				return resource;
 			}
 		}
 		return null;
 	}
 
+	private Resource getIndexedResource(Class<?> testClass, String location) {
+		ClassLoader classLoader = testClass.getClassLoader();
+		if ((classLoader == null) || !isDefaultResourceResolution()) {
+			return null;
+		}
+		String path = DataSetIndex.getClassPathLocation(testClass, location);
+		if ((path == null) || !DataSetIndex.get(classLoader).contains(testClass, path)) {
+			return null;
+		}
+		return new ClassPathResource(path, classLoader);
+	}
+
+	private boolean isDefaultResourceResolution() {
+		Class<?> loaderClass = getClass();
+		Boolean result = defaultResourceResolution.get(loaderClass);
+		if (result == null) {
+			Method resourceLoader = ReflectionUtils.findMethod(loaderClass, "getResourceLoader", Class.class);
+			Method resourceLocations = ReflectionUtils.findMethod(loaderClass, "getResourceLocations", Class.class,
+					String.class);
+			result = (resourceLoader.getDeclaringClass() == AbstractDataSetLoader.class)
+					&& (resourceLocations.getDeclaringClass() == AbstractDataSetLoader.class);
+			defaultResourceResolution.put(loaderClass, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Loads a {@link IDataSet dataset} from the specified resource, using the {@link #getDataSetCache() cache} when
+	 * possible.
+	 * @param resource an existing resource that contains the dataset data
+	 * @return a dataset
+	 * @throws Exception if the dataset could not be loaded
+	 * @see #getResource(Class, String)
+	 */
+	public IDataSet loadDataSet(Resource resource) throws Exception {
+		DataSetCache cache = getDataSetCache();
+		DataSetCache.Key key = (cache == null ? null : getCacheKey(resource));
+		if (key == null) {
+			return createDataSet(resource);
+		}
+		IDataSet dataSet = cache.get(key);
+		if (dataSet == null) {
+			dataSet = createDataSet(resource);
+			if (dataSet != null) {
+				dataSet = cache.put(key, dataSet);
+			}
+		}
+		return dataSet;
+	}
+
+	private DataSetCache.Key getCacheKey(Resource resource) {
+		try {
+			return new DataSetCache.Key(getDataSetCacheKey(), resource);
+		} catch (IOException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Unable to cache dataset " + resource + " (" + e.getMessage() + ")");
+			}
+			return null;
+		}
+	}
+
 	/**
 	 * Gets the {@link ResourceLoader} that will be used to load the dataset {@link Resource}s.
 	 * @param testClass The class under test
@@ -76,6 +179,27 @@ public abstract class AbstractDataSetLoader implements DataSetLoader {
 		return new String[] { location };
 	}
 
+	/**
+	 * Returns the {@link DataSetCache} used to hold datasets created by this loader or <tt>null</tt> if datasets should
+	 * not be cached. By default datasets are not cached. Loaders that create datasets that can be safely shared between
+	 * tests can override this method, usually to return the {@link DataSetCache#getSharedInstance() shared cache}.
+	 * @return the dataset cache or <tt>null</tt>
+	 * @see #getDataSetCacheKey()
+	 */
+	protected DataSetCache getDataSetCache() {
+		return null;
+	}
+
+	/**
+	 * Returns the object used to identify datasets created by this loader in the {@link #getDataSetCache() cache}. By
+	 * default the loader class is used. Loaders that have configuration affecting the datasets that they create must
+	 * override this method to return a key that includes that configuration.
+	 * @return the key of the loader, implementing <tt>equals</tt> and <tt>hashCode</tt>
+	 */
+	protected Object getDataSetCacheKey() {
+		return getClass();
+	}
+
 	/**
 	 * Factory method used to create the {@link IDataSet dataset}
 	 * @param resource an existing resource that contains the dataset data
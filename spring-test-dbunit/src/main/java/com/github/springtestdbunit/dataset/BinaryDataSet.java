@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.AbstractTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableIterator;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+
+/**
+ * A read-only {@link org.dbunit.dataset.IDataSet dataset} backed by a {@link ByteBuffer} containing data written by
+ * the {@link BinaryDataSetWriter}. Only the table directory is read up front, cell values are decoded from the buffer
+ * each time they are requested.
+ * 
+ * @see BinaryDataSetLoader
+ * 
+ * @author agent
+ */
+public class BinaryDataSet extends AbstractDataSet {
+
+	private final ITable[] tables;
+
+	/**
+	 * Create a new {@link BinaryDataSet} instance.
+	 * @param buffer the buffer containing the binary dataset
+	 * @throws DataSetException if the buffer does not contain a valid dataset
+	 */
+	public BinaryDataSet(ByteBuffer buffer) throws DataSetException {
+		ByteBuffer directory = buffer.duplicate();
+		if (directory.limit() < 16 || directory.getInt(0) != BinaryDataSetWriter.MAGIC) {
+			throw new DataSetException("Buffer does not contain a binary dataset");
+		}
+		if (directory.getInt(4) != BinaryDataSetWriter.VERSION) {
+			throw new DataSetException("Unsupported binary dataset version " + directory.getInt(4));
+		}
+		directory.position((int) directory.getLong(directory.limit() - 8));
+		this.tables = new ITable[directory.getInt()];
+		for (int i = 0; i < this.tables.length; i++) {
+			String tableName = readString(directory);
+			int rowCount = directory.getInt();
+			Column[] columns = new Column[directory.getInt()];
+			int[] columnOffsets = new int[columns.length];
+			for (int j = 0; j < columns.length; j++) {
+				columns[j] = new Column(readString(directory), DataType.UNKNOWN);
+				columnOffsets[j] = (int) directory.getLong();
+			}
+			this.tables[i] = new BinaryTable(buffer, new DefaultTableMetaData(tableName, columns), rowCount,
+					columnOffsets);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) throws DataSetException {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return decode(bytes);
+	}
+
+	private static String decode(byte[] bytes) throws DataSetException {
+		try {
+			return new String(bytes, BinaryDataSetWriter.ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		return new DefaultTableIterator(this.tables, reversed);
+	}
+
+	/**
+	 * An {@link ITable} view over a region of the buffer.
+	 */
+	private static class BinaryTable extends AbstractTable {
+
+		private final ByteBuffer buffer;
+
+		private final ITableMetaData metaData;
+
+		private final int rowCount;
+
+		private final int[] columnOffsets;
+
+		public BinaryTable(ByteBuffer buffer, ITableMetaData metaData, int rowCount, int[] columnOffsets) {
+			this.buffer = buffer;
+			this.metaData = metaData;
+			this.rowCount = rowCount;
+			this.columnOffsets = columnOffsets;
+		}
+
+		public ITableMetaData getTableMetaData() {
+			return this.metaData;
+		}
+
+		public int getRowCount() {
+			return this.rowCount;
+		}
+
+		public Object getValue(int row, String column) throws DataSetException {
+			assertValidRowIndex(row);
+			int columnOffset = this.columnOffsets[getColumnIndex(column)];
+			if ((this.buffer.get(columnOffset + (row / 8)) & (1 << (row % 8))) != 0) {
+				return null;
+			}
+			int offsetsStart = columnOffset + ((this.rowCount + 7) / 8);
+			int dataStart = offsetsStart + ((this.rowCount + 1) * 4);
+			int start = this.buffer.getInt(offsetsStart + (row * 4));
+			int end = this.buffer.getInt(offsetsStart + ((row + 1) * 4));
+			byte[] bytes = new byte[end - start];
+			ByteBuffer value = this.buffer.duplicate();
+			value.position(dataStart + start);
+			value.get(bytes);
+			return decode(bytes);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.dbunit.dataset.IDataSet;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * A {@link DataSetLoader data set loader} that can be used to load {@link BinaryDataSet binary datasets} that have
+ * been precompiled using the {@link BinaryDataSetWriter}. Resources that are files are memory mapped, other resources
+ * (for example those packaged in a jar) are read into memory. In both cases values are only decoded when they are
+ * read.
+ * 
+ * @see BinaryDataSetWriter
+ * 
+ * @author agent
+ */
+public class BinaryDataSetLoader extends AbstractDataSetLoader {
+
+	@Override
+	protected IDataSet createDataSet(Resource resource) throws Exception {
+		return new BinaryDataSet(getBuffer(resource));
+	}
+
+	private ByteBuffer getBuffer(Resource resource) throws IOException {
+		File file = getFile(resource);
+		if (file == null) {
+			return ByteBuffer.wrap(FileCopyUtils.copyToByteArray(resource.getInputStream()));
+		}
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private File getFile(Resource resource) {
+		try {
+			return resource.getFile();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Binary datasets are held in the {@link DataSetCache#getSharedInstance() shared cache}. {@inheritDoc}
+	 */
+	@Override
+	protected DataSetCache getDataSetCache() {
+		return DataSetCache.getSharedInstance();
+	}
+}
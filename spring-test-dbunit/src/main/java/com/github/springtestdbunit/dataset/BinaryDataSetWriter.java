@@ -0,0 +1,200 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.xml.FlatXmlDataSetBuilder;
+import org.springframework.util.Assert;
+
+/**
+ * Writes {@link IDataSet datasets} using the compact columnar format read by {@link BinaryDataSetLoader}. Values are
+ * stored as UTF-8 strings, column by column, so that a loaded table can read a single cell without decoding the rest
+ * of the file.
+ * <p>
+ * The {@link #main(String[])} method can be used at build time to convert flat XML datasets, for example using the
+ * <tt>exec-maven-plugin</tt>:
+ * 
+ * <pre>
+ * java com.github.springtestdbunit.dataset.BinaryDataSetWriter source.xml target.dbub
+ * </pre>
+ * 
+ * <h3>File format</h3>
+ * 
+ * <pre>
+ * header    : int magic, int version
+ * column*   : byte[] nulls (one bit per row), int[rowCount + 1] offsets, byte[] utf8 data
+ * directory : int tableCount, (string name, int rowCount, int columnCount, (string name, long offset)*)*
+ * trailer   : long directoryOffset
+ * </pre>
+ * 
+ * Strings are written as an <tt>int</tt> byte length followed by UTF-8 bytes. All numbers are big-endian. Since the
+ * file is memory mapped as a single buffer it cannot exceed 2GB.
+ * 
+ * @see BinaryDataSetLoader
+ * 
+ * @author agent
+ */
+public class BinaryDataSetWriter {
+
+	static final int MAGIC = 0x53544442;
+
+	static final int VERSION = 1;
+
+	static final String ENCODING = "UTF-8";
+
+	/**
+	 * Write the specified dataset to the output stream. The stream is not closed.
+	 * @param dataSet the dataset to write
+	 * @param outputStream the destination
+	 * @throws IOException on write error
+	 * @throws DataSetException if the dataset cannot be read
+	 */
+	public void write(IDataSet dataSet, OutputStream outputStream) throws IOException, DataSetException {
+		Assert.notNull(dataSet, "DataSet must not be null");
+		Assert.notNull(outputStream, "OutputStream must not be null");
+		DataOutputStream out = new DataOutputStream(outputStream);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		List<TableEntry> directory = new ArrayList<TableEntry>();
+		ITableIterator iterator = dataSet.iterator();
+		while (iterator.next()) {
+			directory.add(writeTable(iterator.getTable(), out));
+		}
+		long directoryOffset = getOffset(out);
+		out.writeInt(directory.size());
+		for (TableEntry entry : directory) {
+			entry.write(out);
+		}
+		out.writeLong(directoryOffset);
+		out.flush();
+	}
+
+	private TableEntry writeTable(ITable table, DataOutputStream out) throws IOException, DataSetException {
+		ITableMetaData metaData = table.getTableMetaData();
+		Column[] columns = metaData.getColumns();
+		TableEntry entry = new TableEntry(metaData.getTableName(), table.getRowCount(), columns.length);
+		for (int i = 0; i < columns.length; i++) {
+			entry.columnNames[i] = columns[i].getColumnName();
+			entry.columnOffsets[i] = getOffset(out);
+			writeColumn(table, columns[i].getColumnName(), out);
+		}
+		return entry;
+	}
+
+	private void writeColumn(ITable table, String columnName, DataOutputStream out) throws IOException,
+			DataSetException {
+		int rowCount = table.getRowCount();
+		byte[] nulls = new byte[(rowCount + 7) / 8];
+		int[] offsets = new int[rowCount + 1];
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		for (int row = 0; row < rowCount; row++) {
+			Object value = table.getValue(row, columnName);
+			if (value == null) {
+				nulls[row / 8] |= (1 << (row % 8));
+			} else {
+				data.write(DataType.asString(value).getBytes(ENCODING));
+			}
+			offsets[row + 1] = data.size();
+		}
+		out.write(nulls);
+		for (int offset : offsets) {
+			out.writeInt(offset);
+		}
+		data.writeTo(out);
+	}
+
+	private long getOffset(DataOutputStream out) {
+		Assert.state(out.size() < Integer.MAX_VALUE, "Binary datasets are limited to " + Integer.MAX_VALUE + " bytes");
+		return out.size();
+	}
+
+	/**
+	 * Convert a flat XML dataset to the binary format.
+	 * @param args the source flat XML file followed by the destination file
+	 * @throws Exception on error
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: BinaryDataSetWriter <source.xml> <target>");
+			System.exit(1);
+		}
+		InputStream inputStream = new FileInputStream(args[0]);
+		try {
+			IDataSet dataSet = new FlatXmlDataSetBuilder().setColumnSensing(true).build(inputStream);
+			File target = new File(args[1]);
+			OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(target));
+			try {
+				new BinaryDataSetWriter().write(dataSet, outputStream);
+			} finally {
+				outputStream.close();
+			}
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	private static class TableEntry {
+
+		private final String tableName;
+
+		private final int rowCount;
+
+		private final String[] columnNames;
+
+		private final long[] columnOffsets;
+
+		public TableEntry(String tableName, int rowCount, int columnCount) {
+			this.tableName = tableName;
+			this.rowCount = rowCount;
+			this.columnNames = new String[columnCount];
+			this.columnOffsets = new long[columnCount];
+		}
+
+		public void write(DataOutputStream out) throws IOException {
+			writeString(out, this.tableName);
+			out.writeInt(this.rowCount);
+			out.writeInt(this.columnNames.length);
+			for (int i = 0; i < this.columnNames.length; i++) {
+				writeString(out, this.columnNames[i]);
+				out.writeLong(this.columnOffsets[i]);
+			}
+		}
+
+		private void writeString(DataOutputStream out, String value) throws IOException {
+			byte[] bytes = value.getBytes(ENCODING);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+}
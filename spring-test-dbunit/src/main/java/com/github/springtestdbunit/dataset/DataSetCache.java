@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dbunit.dataset.IDataSet;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * A bounded, thread-safe, least recently used cache of parsed {@link IDataSet datasets}. Entries are {@link Key keyed}
+ * on the loader together with the {@link Resource#getURL() URL}, {@link Resource#lastModified() last modified} time
+ * and {@link Resource#contentLength() length} of the resource so that a changed file is always parsed again. Cached
+ * datasets are shared between tests so the cache only holds, and returns, read-only views of them.
+ *
+ * @see AbstractDataSetLoader#getDataSetCache()
+ *
+ * @author agent
+ */
+public class DataSetCache {
+
+	/**
+	 * The default maximum number of datasets held by the cache.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 128;
+
+	private static final DataSetCache sharedInstance = new DataSetCache();
+
+	private final Map<Key, IDataSet> dataSets;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Create a new {@link DataSetCache} holding at most {@link #DEFAULT_MAX_SIZE} datasets.
+	 */
+	public DataSetCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Create a new {@link DataSetCache}.
+	 * @param maxSize the maximum number of datasets held before the least recently used entry is evicted
+	 */
+	public DataSetCache(final int maxSize) {
+		Assert.isTrue(maxSize > 0, "MaxSize must be greater than zero");
+		this.dataSets = new LinkedHashMap<Key, IDataSet>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, IDataSet> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached dataset for the specified key, or <tt>null</tt> if the resource has not been cached or has
+	 * changed since it was cached.
+	 * @param key the key of the dataset
+	 * @return the cached dataset or <tt>null</tt>
+	 */
+	public IDataSet get(Key key) {
+		Assert.notNull(key, "Key must not be null");
+		IDataSet dataSet;
+		synchronized (this.dataSets) {
+			dataSet = this.dataSets.get(key);
+		}
+		(dataSet == null ? this.missCount : this.hitCount).incrementAndGet();
+		return dataSet;
+	}
+
+	/**
+	 * Add the dataset for the specified key to the cache. The dataset itself is not shared, callers should use the
+	 * returned read-only view in its place.
+	 * @param key the key of the dataset
+	 * @param dataSet the dataset
+	 * @return the read-only view of the dataset that was cached
+	 */
+	public IDataSet put(Key key, IDataSet dataSet) {
+		Assert.notNull(key, "Key must not be null");
+		Assert.notNull(dataSet, "DataSet must not be null");
+		IDataSet readOnlyDataSet = ReadOnlyDataSet.of(dataSet);
+		synchronized (this.dataSets) {
+			this.dataSets.put(key, readOnlyDataSet);
+		}
+		return readOnlyDataSet;
+	}
+
+	/**
+	 * Remove all datasets from the cache.
+	 */
+	public void clear() {
+		synchronized (this.dataSets) {
+			this.dataSets.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of datasets currently cached.
+	 * @return the size of the cache
+	 */
+	public int size() {
+		synchronized (this.dataSets) {
+			return this.dataSets.size();
+		}
+	}
+
+	/**
+	 * Returns the number of lookups that were satisfied from the cache.
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * Returns the number of lookups that could not be satisfied from the cache.
+	 * @return the miss count
+	 */
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "DataSetCache [size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+	}
+
+	/**
+	 * Returns a cache instance that is shared by the JVM.
+	 * @return the shared cache
+	 */
+	public static DataSetCache getSharedInstance() {
+		return sharedInstance;
+	}
+
+	/**
+	 * The key of a cached dataset. Keys should be created once for each load since the resource is inspected when the
+	 * key is created.
+	 */
+	public static final class Key {
+
+		private final Object loaderKey;
+
+		private final String url;
+
+		private final long lastModified;
+
+		private final long contentLength;
+
+		/**
+		 * Create a new {@link Key}.
+		 * @param loaderKey identifies the loader and any configuration that affects the datasets that it creates. Must
+		 * implement <tt>equals</tt> and <tt>hashCode</tt>
+		 * @param resource the dataset resource
+		 * @throws IOException if the resource cannot be inspected
+		 */
+		public Key(Object loaderKey, Resource resource) throws IOException {
+			Assert.notNull(loaderKey, "LoaderKey must not be null");
+			Assert.notNull(resource, "Resource must not be null");
+			this.loaderKey = loaderKey;
+			this.url = resource.getURL().toExternalForm();
+			this.lastModified = resource.lastModified();
+			this.contentLength = resource.contentLength();
+		}
+
+		@Override
+		public int hashCode() {
+			int hashCode = this.loaderKey.hashCode();
+			hashCode = 31 * hashCode + this.url.hashCode();
+			hashCode = 31 * hashCode + ObjectUtils.hashCode(this.lastModified);
+			hashCode = 31 * hashCode + ObjectUtils.hashCode(this.contentLength);
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.loaderKey.equals(other.loaderKey) && this.url.equals(other.url)
+					&& (this.lastModified == other.lastModified) && (this.contentLength == other.contentLength);
+		}
+	}
+}
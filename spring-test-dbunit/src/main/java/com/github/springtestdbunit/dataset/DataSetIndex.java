@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Index of dataset resources that were verified to exist when tests were compiled. Index files are written to
+ * {@value #LOCATION} by the <tt>spring-test-dbunit-processor</tt> annotation processor. Each line of an index has the
+ * form <tt>testClass#testMethod=path,path</tt>, where each path is the class path location of a dataset used by the
+ * test. Lines starting with <tt>#</tt> are ignored. Paths are indexed by test class, the datasets of a test method are
+ * indexed for the class that declares it.
+ * <p>
+ * Indexes are read once for each class loader. When no index is present the index is empty and datasets are always
+ * resolved by probing resources.
+ *
+ * @see AbstractDataSetLoader#getResource(Class, String)
+ *
+ * @author agent
+ */
+class DataSetIndex {
+
+	/**
+	 * The location of index files.
+	 */
+	public static final String LOCATION = "META-INF/spring-test-dbunit/datasets.index";
+
+	private static final String CLASSPATH_URL_PREFIX = "classpath:";
+
+	private static final Log logger = LogFactory.getLog(DataSetIndex.class);
+
+	private static final Map<ClassLoader, DataSetIndex> indexes = Collections
+			.synchronizedMap(new WeakHashMap<ClassLoader, DataSetIndex>());
+
+	private final Map<String, Set<String>> paths;
+
+	DataSetIndex(Map<String, Set<String>> paths) {
+		this.paths = paths;
+	}
+
+	/**
+	 * Returns <tt>true</tt> if the specified class path location was indexed for the test class or one of its
+	 * superclasses.
+	 * @param testClass the class under test
+	 * @param path the class path location, without a leading slash
+	 * @return if the path is indexed
+	 */
+	public boolean contains(Class<?> testClass, String path) {
+		for (Class<?> candidate = testClass; candidate != null; candidate = candidate.getSuperclass()) {
+			if (contains(candidate.getName(), path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	boolean contains(String testClassName, String path) {
+		Set<String> classPaths = this.paths.get(testClassName);
+		return (classPaths != null) && classPaths.contains(path);
+	}
+
+	/**
+	 * Returns the index for the specified class loader.
+	 * @param classLoader the class loader used to find index files
+	 * @return the index
+	 */
+	public static DataSetIndex get(ClassLoader classLoader) {
+		DataSetIndex index = indexes.get(classLoader);
+		if (index == null) {
+			index = new DataSetIndex(load(classLoader));
+			indexes.put(classLoader, index);
+		}
+		return index;
+	}
+
+	private static Map<String, Set<String>> load(ClassLoader classLoader) {
+		Map<String, Set<String>> paths = new HashMap<String, Set<String>>();
+		try {
+			Enumeration<URL> urls = classLoader.getResources(LOCATION);
+			while (urls.hasMoreElements()) {
+				load(urls.nextElement(), paths);
+			}
+		} catch (IOException e) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Unable to read dataset index, datasets will be resolved without the index", e);
+			}
+			return Collections.emptyMap();
+		}
+		return paths;
+	}
+
+	private static void load(URL url, Map<String, Set<String>> paths) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), "UTF-8"));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				int separator = line.indexOf('=');
+				if (!line.startsWith("#") && (separator != -1)) {
+					String key = line.substring(0, separator).trim();
+					int methodSeparator = key.indexOf('#');
+					String testClassName = (methodSeparator == -1 ? key : key.substring(0, methodSeparator));
+					Set<String> classPaths = paths.get(testClassName);
+					if (classPaths == null) {
+						classPaths = new HashSet<String>();
+						paths.put(testClassName, classPaths);
+					}
+					for (String path : line.substring(separator + 1).split(",")) {
+						if (path.trim().length() > 0) {
+							classPaths.add(path.trim());
+						}
+					}
+				}
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Returns the class path location that a {@link org.springframework.core.io.ClassRelativeResourceLoader} would
+	 * use for the specified dataset location, or <tt>null</tt> if the location cannot be converted without accessing
+	 * the resource.
+	 * @param testClass the class under test
+	 * @param location the dataset location
+	 * @return the class path location or <tt>null</tt>
+	 */
+	public static String getClassPathLocation(Class<?> testClass, String location) {
+		String path;
+		if (location.startsWith(CLASSPATH_URL_PREFIX)) {
+			path = location.substring(CLASSPATH_URL_PREFIX.length());
+			path = (path.startsWith("/") ? path.substring(1) : path);
+		} else if (location.startsWith("/")) {
+			path = location.substring(1);
+		} else if (location.indexOf(':') == -1) {
+			path = ClassUtils.classPackageAsResourcePath(testClass);
+			path = (path.length() == 0 ? location : path + "/" + location);
+		} else {
+			return null;
+		}
+		// Relative segments are resolved by the class loader and cannot be compared reliably
+		if ((path.length() == 0) || path.startsWith("../") || (path.indexOf("/../") != -1)
+				|| path.startsWith("./") || (path.indexOf("/./") != -1)) {
+			return null;
+		}
+		return path;
+	}
+}
@@ -39,4 +39,12 @@ public class FlatXmlDataSetLoader extends AbstractDataSetLoader {
 			inputStream.close();
 		}
 	}
+
+	/**
+	 * Flat XML datasets are held in the {@link DataSetCache#getSharedInstance() shared cache}. {@inheritDoc}
+	 */
+	@Override
+	protected DataSetCache getDataSetCache() {
+		return DataSetCache.getSharedInstance();
+	}
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import java.io.IOException;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.stream.StreamingIterator;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.springframework.core.io.Resource;
+import org.springframework.util.Assert;
+import org.xml.sax.InputSource;
+
+/**
+ * A forward-only {@link org.dbunit.dataset.IDataSet dataset} that streams rows from a flat XML {@link Resource}
+ * without holding the dataset in memory. Unlike {@link org.dbunit.dataset.stream.StreamingDataSet} the resource is
+ * re-read each time an {@link #iterator() iterator} is requested so that composite operations such as
+ * <tt>CLEAN_INSERT</tt> can make several passes over the data.
+ * <p>
+ * Operations that require random access to tables, or that iterate the dataset in reverse order, are not supported
+ * and will fail with an {@link UnsupportedOperationException}.
+ * 
+ * @see FlatXmlStreamingDataSetLoader
+ * 
+ * @author agent
+ */
+public class FlatXmlStreamingDataSet extends AbstractDataSet {
+
+	private final Resource resource;
+
+	/**
+	 * Create a new {@link FlatXmlStreamingDataSet} instance.
+	 * @param resource the flat XML resource
+	 */
+	public FlatXmlStreamingDataSet(Resource resource) {
+		Assert.notNull(resource, "Resource must not be null");
+		this.resource = resource;
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		if (reversed) {
+			throw unsupported("reverse iteration");
+		}
+		try {
+			InputSource inputSource = new InputSource(this.resource.getInputStream());
+			inputSource.setSystemId(this.resource.getDescription());
+			return new StreamingIterator(new FlatXmlProducer(inputSource));
+		} catch (IOException e) {
+			throw new DataSetException("Unable to read " + this.resource, e);
+		}
+	}
+
+	@Override
+	public String[] getTableNames() throws DataSetException {
+		throw unsupported("table name lookup");
+	}
+
+	@Override
+	public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+		throw unsupported("table meta-data lookup");
+	}
+
+	@Override
+	public ITable getTable(String tableName) throws DataSetException {
+		throw unsupported("table lookup");
+	}
+
+	@Override
+	public ITable[] getTables() throws DataSetException {
+		throw unsupported("table lookup");
+	}
+
+	private UnsupportedOperationException unsupported(String operation) {
+		return new UnsupportedOperationException("Streaming dataset " + this.resource.getDescription()
+				+ " does not support " + operation + ", only forward-only operations can be used");
+	}
+
+	/**
+	 * Returns the resource being streamed.
+	 * @return the resource
+	 */
+	public Resource getResource() {
+		return this.resource;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + this.resource.getDescription() + "]";
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import org.dbunit.dataset.IDataSet;
+import org.springframework.core.io.Resource;
+
+/**
+ * A {@link DataSetLoader data set loader} that can be used to stream very large flat XML datasets. Rows are read from
+ * the resource as they are inserted so memory use does not depend on the size of the dataset. Datasets loaded by this
+ * loader can only be used with forward-only operations, <tt>INSERT</tt>, <tt>CLEAN_INSERT</tt>, <tt>UPDATE</tt>,
+ * <tt>REFRESH</tt>, <tt>DELETE_ALL</tt> and <tt>TRUNCATE_TABLE</tt> are supported. Streamed datasets cannot be used
+ * with <tt>DELETE</tt> or as an expected database.
+ * <p>
+ * Since there is no look-ahead, column sensing is not supported and the columns of each table are taken from the
+ * first row of that table (or from the DTD when one is referenced).
+ * 
+ * @see FlatXmlStreamingDataSet
+ * 
+ * @author agent
+ */
+public class FlatXmlStreamingDataSetLoader extends AbstractDataSetLoader {
+
+	@Override
+	protected IDataSet createDataSet(Resource resource) throws Exception {
+		return new FlatXmlStreamingDataSet(resource);
+	}
+}
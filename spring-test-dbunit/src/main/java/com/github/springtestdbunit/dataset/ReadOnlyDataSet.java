@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * A read-only view of a {@link IDataSet dataset} used when a dataset is shared by the {@link DataSetCache}. Tables are
+ * exposed through a view that only implements {@link ITable}, so callers cannot reach mutators such as
+ * {@link org.dbunit.dataset.DefaultTable#setValue(int, String, Object)} on the underlying table.
+ *
+ * @author agent
+ */
+class ReadOnlyDataSet extends AbstractDataSet {
+
+	private final IDataSet dataSet;
+
+	/**
+	 * Create a new {@link ReadOnlyDataSet} instance.
+	 * @param dataSet the dataset to expose
+	 */
+	public ReadOnlyDataSet(IDataSet dataSet) {
+		super(dataSet.isCaseSensitiveTableNames());
+		this.dataSet = dataSet;
+	}
+
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		return new ReadOnlyTableIterator(reversed ? this.dataSet.reverseIterator() : this.dataSet.iterator());
+	}
+
+	/**
+	 * Returns a read-only view of the specified dataset, or the dataset itself if it is already read-only.
+	 * @param dataSet the dataset
+	 * @return a read-only dataset
+	 */
+	public static IDataSet of(IDataSet dataSet) {
+		return (dataSet instanceof ReadOnlyDataSet ? dataSet : new ReadOnlyDataSet(dataSet));
+	}
+
+	private static class ReadOnlyTableIterator implements ITableIterator {
+
+		private final ITableIterator iterator;
+
+		public ReadOnlyTableIterator(ITableIterator iterator) {
+			this.iterator = iterator;
+		}
+
+		public boolean next() throws DataSetException {
+			return this.iterator.next();
+		}
+
+		public ITableMetaData getTableMetaData() throws DataSetException {
+			return this.iterator.getTableMetaData();
+		}
+
+		public ITable getTable() throws DataSetException {
+			return new ReadOnlyTable(this.iterator.getTable());
+		}
+	}
+
+	private static class ReadOnlyTable implements ITable {
+
+		private final ITable table;
+
+		public ReadOnlyTable(ITable table) {
+			this.table = table;
+		}
+
+		public ITableMetaData getTableMetaData() {
+			return this.table.getTableMetaData();
+		}
+
+		public int getRowCount() {
+			return this.table.getRowCount();
+		}
+
+		public Object getValue(int row, String column) throws DataSetException {
+			return this.table.getValue(row, column);
+		}
+
+		@Override
+		public String toString() {
+			return this.table.toString();
+		}
+	}
+}
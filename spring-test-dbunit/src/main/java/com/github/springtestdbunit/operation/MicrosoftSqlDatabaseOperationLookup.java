@@ -35,6 +35,8 @@ public class MicrosoftSqlDatabaseOperationLookup extends DefaultDatabaseOperatio
 		MSSQL_LOOKUP.put(DatabaseOperation.INSERT, InsertIdentityOperation.INSERT);
 		MSSQL_LOOKUP.put(DatabaseOperation.REFRESH, InsertIdentityOperation.REFRESH);
 		MSSQL_LOOKUP.put(DatabaseOperation.CLEAN_INSERT, InsertIdentityOperation.CLEAN_INSERT);
+		MSSQL_LOOKUP.put(DatabaseOperation.SMART_CLEAN_INSERT, new SmartCleanInsertOperation(
+				org.dbunit.operation.DatabaseOperation.DELETE_ALL, InsertIdentityOperation.INSERT));
 	}
 
 	@Override
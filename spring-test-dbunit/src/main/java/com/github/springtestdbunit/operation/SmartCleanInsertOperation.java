@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.operation;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.FilteredDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.operation.AbstractOperation;
+import org.dbunit.operation.DatabaseOperation;
+
+import com.github.springtestdbunit.assertion.FilteredDatabaseDataSet;
+
+/**
+ * A <tt>CLEAN_INSERT</tt> operation that only deletes and re-inserts tables with content that differs from the dataset.
+ * Each table is compared using an order independent hash of every column of the table which is calculated by the
+ * database where supported, see {@link FilteredDatabaseDataSet#hasExpectedContent(String)}. The tables of the database
+ * are never listed, only the tables of the dataset are queried.
+ * <p>
+ * As with {@link DatabaseOperation#CLEAN_INSERT} tables are expected to be listed in the dataset before the tables that
+ * reference them. Once a table differs all subsequent tables in the dataset are also reset since they may reference
+ * it. Columns of the database table that are not in the dataset are expected to be <tt>null</tt>, tables that contain
+ * default values for such columns will always be reset.
+ *
+ * @author agent
+ */
+public class SmartCleanInsertOperation extends AbstractOperation {
+
+	private static final Log logger = LogFactory.getLog(SmartCleanInsertOperation.class);
+
+	private final DatabaseOperation deleteOperation;
+
+	private final DatabaseOperation insertOperation;
+
+	/**
+	 * Create a new {@link SmartCleanInsertOperation} that resets tables using {@link DatabaseOperation#DELETE_ALL} and
+	 * {@link DatabaseOperation#INSERT}.
+	 */
+	public SmartCleanInsertOperation() {
+		this(DatabaseOperation.DELETE_ALL, DatabaseOperation.INSERT);
+	}
+
+	/**
+	 * Create a new {@link SmartCleanInsertOperation} that resets tables using the specified operations.
+	 * @param deleteOperation the operation used to delete the contents of tables that differ
+	 * @param insertOperation the operation used to insert the contents of tables that differ
+	 */
+	public SmartCleanInsertOperation(DatabaseOperation deleteOperation, DatabaseOperation insertOperation) {
+		this.deleteOperation = deleteOperation;
+		this.insertOperation = insertOperation;
+	}
+
+	@Override
+	public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+		String[] tableNames = dataSet.getTableNames();
+		Set<String> uniqueTableNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		uniqueTableNames.addAll(Arrays.asList(tableNames));
+		if (uniqueTableNames.size() != tableNames.length) {
+			// Tables that appear more than once cannot be compared individually
+			reset(connection, dataSet);
+			return;
+		}
+		FilteredDatabaseDataSet databaseDataSet = new FilteredDatabaseDataSet(connection, dataSet, false);
+		int firstChanged = 0;
+		while ((firstChanged < tableNames.length) && databaseDataSet.hasExpectedContent(tableNames[firstChanged])) {
+			firstChanged++;
+		}
+		if (firstChanged == tableNames.length) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Tables " + Arrays.asList(tableNames) + " are unchanged");
+			}
+			return;
+		}
+		String[] changedTableNames = new String[tableNames.length - firstChanged];
+		System.arraycopy(tableNames, firstChanged, changedTableNames, 0, changedTableNames.length);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Resetting changed tables " + Arrays.asList(changedTableNames));
+		}
+		reset(connection, (firstChanged == 0 ? dataSet : new FilteredDataSet(changedTableNames, dataSet)));
+	}
+
+	private void reset(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException, SQLException {
+		this.deleteOperation.execute(connection, dataSet);
+		this.insertOperation.execute(connection, dataSet);
+	}
+}
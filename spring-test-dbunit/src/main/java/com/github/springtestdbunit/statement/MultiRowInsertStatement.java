@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.statement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dbunit.database.statement.IPreparedBatchStatement;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * {@link IPreparedBatchStatement} that collects rows and inserts them using multi-row <tt>INSERT</tt> statements. The
+ * statement for a full set of rows is prepared once and reused, remaining rows are inserted when the batch is
+ * {@link #executeBatch() executed}.
+ * 
+ * @see MultiRowInsertStatementFactory
+ * 
+ * @author agent
+ */
+class MultiRowInsertStatement implements IPreparedBatchStatement {
+
+	private final String insert;
+
+	private final String rowValues;
+
+	private final int parametersPerRow;
+
+	private final int maxRows;
+
+	private final Connection connection;
+
+	private final List<Object> values;
+
+	private final List<DataType> dataTypes;
+
+	private PreparedStatement fullStatement;
+
+	private int result;
+
+	public MultiRowInsertStatement(String insert, String rowValues, int parametersPerRow, int maxRows,
+			Connection connection) {
+		this.insert = insert;
+		this.rowValues = rowValues;
+		this.parametersPerRow = parametersPerRow;
+		this.maxRows = maxRows;
+		this.connection = connection;
+		this.values = new ArrayList<Object>(parametersPerRow * maxRows);
+		this.dataTypes = new ArrayList<DataType>(parametersPerRow * maxRows);
+	}
+
+	public void addValue(Object value, DataType dataType) throws TypeCastException, SQLException {
+		// Cast early so that conversion problems are reported against the column being added
+		boolean isNull = ((value == null) || (value == ITable.NO_VALUE));
+		this.values.add(isNull ? null : dataType.typeCast(value));
+		this.dataTypes.add(dataType);
+	}
+
+	public void addBatch() throws SQLException {
+		if (this.values.size() >= this.parametersPerRow * this.maxRows) {
+			if (this.fullStatement == null) {
+				this.fullStatement = this.connection.prepareStatement(getSql(this.maxRows));
+			}
+			this.result += execute(this.fullStatement);
+		}
+	}
+
+	public int executeBatch() throws SQLException {
+		int rows = this.values.size() / this.parametersPerRow;
+		if (rows > 0) {
+			PreparedStatement statement = this.connection.prepareStatement(getSql(rows));
+			try {
+				this.result += execute(statement);
+			} finally {
+				statement.close();
+			}
+		}
+		int result = this.result;
+		this.result = 0;
+		return result;
+	}
+
+	private int execute(PreparedStatement statement) throws SQLException {
+		try {
+			for (int i = 0; i < this.values.size(); i++) {
+				Object value = this.values.get(i);
+				DataType dataType = this.dataTypes.get(i);
+				if (value == null) {
+					statement.setNull(i + 1, dataType.getSqlType());
+				} else {
+					dataType.setSqlValue(value, i + 1, statement);
+				}
+			}
+		} catch (TypeCastException e) {
+			SQLException exception = new SQLException("Unable to bind value: " + e.getMessage());
+			exception.initCause(e);
+			throw exception;
+		}
+		this.values.clear();
+		this.dataTypes.clear();
+		return statement.executeUpdate();
+	}
+
+	private String getSql(int rows) {
+		StringBuilder sql = new StringBuilder(this.insert.length() + (this.rowValues.length() + 2) * rows + 8);
+		sql.append(this.insert).append(" values ");
+		for (int i = 0; i < rows; i++) {
+			sql.append(i == 0 ? "" : ", ").append(this.rowValues);
+		}
+		return sql.toString();
+	}
+
+	public void clearBatch() throws SQLException {
+		this.values.clear();
+		this.dataTypes.clear();
+		this.result = 0;
+	}
+
+	public void close() throws SQLException {
+		if (this.fullStatement != null) {
+			this.fullStatement.close();
+			this.fullStatement = null;
+		}
+	}
+}
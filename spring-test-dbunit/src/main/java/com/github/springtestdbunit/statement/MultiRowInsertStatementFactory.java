@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.statement;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.statement.IPreparedBatchStatement;
+import org.dbunit.database.statement.IStatementFactory;
+import org.dbunit.database.statement.PreparedStatementFactory;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link IStatementFactory} that inserts several rows with each <tt>INSERT ... VALUES (...), (...)</tt> statement
+ * in order to reduce round trips and statement parsing when large datasets are inserted. The factory can be
+ * registered using {@link com.github.springtestdbunit.bean.DatabaseConfigBean#setStatementFactory
+ * DatabaseConfigBean.setStatementFactory}.
+ * <p>
+ * The number of rows in each statement is limited by the {@link #setRowsPerStatement rows per statement} and by the
+ * maximum number of bind parameters that the database accepts in a single statement. Parameter limits are known for
+ * common databases and can be {@link #setMaxParameters overridden}. Statements other than inserts, and inserts
+ * against databases without a known parameter limit or that do not support multi-row inserts, are created as they
+ * would be by the standard {@link PreparedStatementFactory}.
+ *
+ * @author agent
+ */
+public class MultiRowInsertStatementFactory extends PreparedStatementFactory {
+
+	private static final Pattern INSERT_PATTERN = Pattern.compile(
+			"^(insert\\s+into\\s+.+\\))\\s+values\\s*(\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\))\\s*$", Pattern.CASE_INSENSITIVE
+					| Pattern.DOTALL);
+
+	/**
+	 * Maximum number of bind parameters per statement keyed by lower case database product name prefix.
+	 */
+	private static final Map<String, Integer> DEFAULT_MAX_PARAMETERS;
+	static {
+		Map<String, Integer> maxParameters = new HashMap<String, Integer>();
+		maxParameters.put("hsql", new Integer(Short.MAX_VALUE));
+		maxParameters.put("h2", new Integer(Short.MAX_VALUE));
+		maxParameters.put("apache derby", new Integer(Short.MAX_VALUE));
+		maxParameters.put("postgresql", new Integer(Short.MAX_VALUE));
+		maxParameters.put("mysql", new Integer(65535));
+		maxParameters.put("mariadb", new Integer(65535));
+		maxParameters.put("db2", new Integer(Short.MAX_VALUE));
+		maxParameters.put("microsoft sql server", new Integer(2100));
+		maxParameters.put("sqlite", new Integer(999));
+		DEFAULT_MAX_PARAMETERS = Collections.unmodifiableMap(maxParameters);
+	}
+
+	private static final int DEFAULT_ROWS_PER_STATEMENT = 100;
+
+	private int rowsPerStatement = DEFAULT_ROWS_PER_STATEMENT;
+
+	private int maxParameters;
+
+	@Override
+	public IPreparedBatchStatement createPreparedBatchStatement(String sql, IDatabaseConnection connection)
+			throws SQLException {
+		Matcher matcher = INSERT_PATTERN.matcher(sql);
+		if (matcher.matches()) {
+			String rowValues = matcher.group(2);
+			int parametersPerRow = rowValues.length() - rowValues.replace("?", "").length();
+			int maxRows = Math.min(this.rowsPerStatement, getMaxParameters(connection) / parametersPerRow);
+			if (maxRows > 1) {
+				return new MultiRowInsertStatement(matcher.group(1), rowValues, parametersPerRow, maxRows,
+						connection.getConnection());
+			}
+		}
+		return super.createPreparedBatchStatement(sql, connection);
+	}
+
+	private int getMaxParameters(IDatabaseConnection connection) throws SQLException {
+		if (this.maxParameters > 0) {
+			return this.maxParameters;
+		}
+		String productName = connection.getConnection().getMetaData().getDatabaseProductName();
+		productName = (productName == null ? "" : productName.toLowerCase());
+		for (Map.Entry<String, Integer> entry : DEFAULT_MAX_PARAMETERS.entrySet()) {
+			if (productName.startsWith(entry.getKey())) {
+				return entry.getValue().intValue();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Set the maximum number of rows inserted by a single statement. Defaults to 100.
+	 * @param rowsPerStatement the rows per statement
+	 */
+	public void setRowsPerStatement(int rowsPerStatement) {
+		Assert.isTrue(rowsPerStatement > 0, "RowsPerStatement must be positive");
+		this.rowsPerStatement = rowsPerStatement;
+	}
+
+	/**
+	 * Set the maximum number of bind parameters that can be used in a single statement. When not set the limit is
+	 * determined from the database product name and multi-row inserts are not used for unknown databases.
+	 * @param maxParameters the maximum number of parameters or <tt>0</tt> to use the limit of the database
+	 */
+	public void setMaxParameters(int maxParameters) {
+		Assert.isTrue(maxParameters >= 0, "MaxParameters must not be negative");
+		this.maxParameters = maxParameters;
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.timing;
+
+/**
+ * The phases of DBUnit work performed for each test and reported to {@link PhaseListener}s.
+ *
+ * @author agent
+ */
+public enum Phase {
+
+	/**
+	 * Locating the resource for a dataset.
+	 */
+	RESOLVE,
+
+	/**
+	 * Parsing a dataset resource (or obtaining it from a cache).
+	 */
+	PARSE,
+
+	/**
+	 * Executing a setup or teardown database operation.
+	 */
+	EXECUTE,
+
+	/**
+	 * Reading the actual tables that will be compared with an expected dataset.
+	 */
+	FETCH,
+
+	/**
+	 * Comparing the expected and actual datasets. When using <tt>DatabaseAssertionMode.NON_STRICT_HASH</tt> tables are
+	 * not fetched, hashing the tables and reading any rows that need to be compared are included in this phase.
+	 */
+	COMPARE
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.timing;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+
+/**
+ * Event published to {@link PhaseListener}s when a {@link Phase} of DBUnit work completes. Row counts are only
+ * calculated when first requested so that listeners that discard events add no cost.
+ *
+ * @author agent
+ */
+public class PhaseEvent {
+
+	private final Phase phase;
+
+	private final Class<?> testClass;
+
+	private final Method testMethod;
+
+	private final String connectionName;
+
+	private final String dataSetLocation;
+
+	private final DatabaseOperation operation;
+
+	private final long duration;
+
+	private final IDataSet dataSet;
+
+	private volatile Map<String, Integer> rowCounts;
+
+	/**
+	 * Create a new {@link PhaseEvent} instance.
+	 * @param phase the phase that completed
+	 * @param testClass the class under test
+	 * @param testMethod the method under test or <tt>null</tt> for class level work
+	 * @param connectionName the name of the connection or <tt>null</tt> if not known
+	 * @param dataSetLocation the dataset location
+	 * @param operation the database operation or <tt>null</tt> if the phase does not execute an operation
+	 * @param duration the duration of the phase in nanoseconds
+	 * @param rowCounts the number of rows for each table in the dataset
+	 */
+	public PhaseEvent(Phase phase, Class<?> testClass, Method testMethod, String connectionName,
+			String dataSetLocation, DatabaseOperation operation, long duration, Map<String, Integer> rowCounts) {
+		this.phase = phase;
+		this.testClass = testClass;
+		this.testMethod = testMethod;
+		this.connectionName = connectionName;
+		this.dataSetLocation = dataSetLocation;
+		this.operation = operation;
+		this.duration = duration;
+		this.dataSet = null;
+		this.rowCounts = Collections.unmodifiableMap(rowCounts);
+	}
+
+	/**
+	 * Create a new {@link PhaseEvent} instance with row counts calculated from a dataset.
+	 * @param phase the phase that completed
+	 * @param testClass the class under test
+	 * @param testMethod the method under test or <tt>null</tt> for class level work
+	 * @param connectionName the name of the connection or <tt>null</tt> if not known
+	 * @param dataSetLocation the dataset location
+	 * @param operation the database operation or <tt>null</tt> if the phase does not execute an operation
+	 * @param duration the duration of the phase in nanoseconds
+	 * @param dataSet the dataset used to calculate row counts or <tt>null</tt> if the dataset is not available or can
+	 * only be read once
+	 */
+	public PhaseEvent(Phase phase, Class<?> testClass, Method testMethod, String connectionName,
+			String dataSetLocation, DatabaseOperation operation, long duration, IDataSet dataSet) {
+		this.phase = phase;
+		this.testClass = testClass;
+		this.testMethod = testMethod;
+		this.connectionName = connectionName;
+		this.dataSetLocation = dataSetLocation;
+		this.operation = operation;
+		this.duration = duration;
+		this.dataSet = dataSet;
+	}
+
+	/**
+	 * Returns the phase that completed.
+	 * @return the phase
+	 */
+	public Phase getPhase() {
+		return this.phase;
+	}
+
+	/**
+	 * Returns the class under test.
+	 * @return the test class
+	 */
+	public Class<?> getTestClass() {
+		return this.testClass;
+	}
+
+	/**
+	 * Returns the method under test or <tt>null</tt> if the work was performed for the whole class.
+	 * @return the test method or <tt>null</tt>
+	 */
+	public Method getTestMethod() {
+		return this.testMethod;
+	}
+
+	/**
+	 * Returns the name of the connection used or <tt>null</tt> if the default connection was used.
+	 * @return the connection name or <tt>null</tt>
+	 */
+	public String getConnectionName() {
+		return this.connectionName;
+	}
+
+	/**
+	 * Returns the location of the dataset.
+	 * @return the dataset location
+	 */
+	public String getDataSetLocation() {
+		return this.dataSetLocation;
+	}
+
+	/**
+	 * Returns the database operation that was executed or <tt>null</tt> if the phase does not execute an operation.
+	 * @return the operation or <tt>null</tt>
+	 */
+	public DatabaseOperation getOperation() {
+		return this.operation;
+	}
+
+	/**
+	 * Returns the duration of the phase in nanoseconds.
+	 * @return the duration
+	 */
+	public long getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Returns the number of rows for each table of the dataset. The map will be empty if the dataset was not available
+	 * or can only be read once.
+	 * @return the row counts keyed by table name
+	 */
+	public Map<String, Integer> getRowCounts() {
+		Map<String, Integer> rowCounts = this.rowCounts;
+		if (rowCounts == null) {
+			rowCounts = Collections.unmodifiableMap(getRowCounts(this.dataSet));
+			this.rowCounts = rowCounts;
+		}
+		return rowCounts;
+	}
+
+	private static Map<String, Integer> getRowCounts(IDataSet dataSet) {
+		Map<String, Integer> rowCounts = new LinkedHashMap<String, Integer>();
+		if (dataSet != null) {
+			try {
+				ITableIterator iterator = dataSet.iterator();
+				while (iterator.next()) {
+					ITable table = iterator.getTable();
+					rowCounts.put(table.getTableMetaData().getTableName(), table.getRowCount());
+				}
+			} catch (DataSetException e) {
+				throw new IllegalStateException("Unable to count dataset rows", e);
+			}
+		}
+		return rowCounts;
+	}
+
+	/**
+	 * Returns the total number of rows of all tables.
+	 * @return the total row count
+	 */
+	public long getTotalRowCount() {
+		long total = 0;
+		for (Integer rowCount : getRowCounts().values()) {
+			total += rowCount.intValue();
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		return "PhaseEvent [phase=" + this.phase + ", testClass=" + this.testClass.getName() + ", dataSetLocation="
+				+ this.dataSetLocation + ", duration=" + this.duration + "]";
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.timing;
+
+/**
+ * Listener that is notified when a {@link Phase} of DBUnit work completes. Listeners are registered with
+ * {@link PhaseListeners} and may be called concurrently when parallel setup is used, so implementations must be thread
+ * safe.
+ * 
+ * @see PhaseListeners
+ * @see PhaseTimingAggregator
+ * @see PhaseStartListener
+ * 
+ * @author agent
+ */
+public interface PhaseListener {
+
+	/**
+	 * Called when a phase has completed.
+	 * @param event the phase event
+	 */
+	void phaseCompleted(PhaseEvent event);
+}
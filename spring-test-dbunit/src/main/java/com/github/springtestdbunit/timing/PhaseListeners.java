@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.timing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Registry of the {@link PhaseListener}s notified by the DBUnit test support. Listeners apply to the whole JVM so that
+ * an entire suite can be measured without changing individual tests.
+ * <p>
+ * Setting the <tt>springtestdbunit.timing.report</tt> system property to a file name registers the
+ * {@link PhaseTimingAggregator#getSharedInstance() shared aggregator} and writes a JSON report to that file when the
+ * JVM shuts down.
+ * <p>
+ * Listeners named in <tt>META-INF/services/com.github.springtestdbunit.timing.PhaseListener</tt> resources are also
+ * registered automatically. Such listeners must provide a <code>public</code> no-args constructor.
+ *
+ * @author agent
+ */
+public abstract class PhaseListeners {
+
+	/**
+	 * System property used to specify the file that a JSON timing report is written to.
+	 */
+	public static final String REPORT_PROPERTY = "springtestdbunit.timing.report";
+
+	private static final String SERVICES_LOCATION = "META-INF/services/" + PhaseListener.class.getName();
+
+	private static final Log logger = LogFactory.getLog(PhaseListeners.class);
+
+	private static final List<PhaseListener> listeners = new CopyOnWriteArrayList<PhaseListener>();
+
+	static {
+		String report = System.getProperty(REPORT_PROPERTY);
+		if (StringUtils.hasText(report)) {
+			PhaseTimingAggregator aggregator = PhaseTimingAggregator.getSharedInstance();
+			aggregator.registerShutdownReport(new File(report));
+			add(aggregator);
+		}
+		addServiceListeners();
+	}
+
+	private static void addServiceListeners() {
+		ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+		try {
+			Enumeration<URL> resources = classLoader.getResources(SERVICES_LOCATION);
+			while (resources.hasMoreElements()) {
+				URL resource = resources.nextElement();
+				BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openStream(), "UTF-8"));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						String className = StringUtils.trimWhitespace(line.replaceAll("#.*", ""));
+						if (StringUtils.hasLength(className)) {
+							addServiceListener(classLoader, className);
+						}
+					}
+				} finally {
+					reader.close();
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Unable to read " + SERVICES_LOCATION, e);
+		}
+	}
+
+	private static void addServiceListener(ClassLoader classLoader, String className) {
+		try {
+			add((PhaseListener) ClassUtils.forName(className, classLoader).newInstance());
+		} catch (Throwable e) {
+			logger.warn("Unable to create phase listener " + className, e);
+		}
+	}
+
+	/**
+	 * Add a listener.
+	 * @param listener the listener to add
+	 */
+	public static void add(PhaseListener listener) {
+		Assert.notNull(listener, "Listener must not be null");
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a previously added listener.
+	 * @param listener the listener to remove
+	 */
+	public static void remove(PhaseListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns <tt>true</tt> if any listeners are registered. Callers should check this method before collecting event
+	 * data.
+	 * @return if listeners are registered
+	 */
+	public static boolean hasListeners() {
+		return !listeners.isEmpty();
+	}
+
+	/**
+	 * Notify all registered {@link PhaseStartListener}s that a phase is about to start.
+	 * @param phase the phase
+	 */
+	public static void phaseStarted(Phase phase) {
+		for (PhaseListener listener : listeners) {
+			if (listener instanceof PhaseStartListener) {
+				((PhaseStartListener) listener).phaseStarted(phase);
+			}
+		}
+	}
+
+	/**
+	 * Notify all registered listeners that a phase has completed.
+	 * @param event the phase event
+	 */
+	public static void phaseCompleted(PhaseEvent event) {
+		for (PhaseListener listener : listeners) {
+			listener.phaseCompleted(event);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.timing;
+
+/**
+ * Extension of {@link PhaseListener} that is also notified when a {@link Phase} starts. A phase is completed on the
+ * same thread that started it, so listeners can use the thread to match {@link #phaseStarted(Phase) started} phases
+ * with {@link #phaseCompleted(PhaseEvent) completed} ones. A phase that fails is started but never completed.
+ *
+ * @see PhaseListeners
+ *
+ * @author agent
+ */
+public interface PhaseStartListener extends PhaseListener {
+
+	/**
+	 * Called when a phase is about to start.
+	 * @param phase the phase
+	 */
+	void phaseStarted(Phase phase);
+}
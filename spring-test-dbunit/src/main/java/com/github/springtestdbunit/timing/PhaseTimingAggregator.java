@@ -0,0 +1,301 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.timing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+
+/**
+ * {@link PhaseListener} that aggregates timings in memory. Timings are grouped by {@link Phase}, dataset location,
+ * connection name and operation so that the fixtures that dominate a suite can be found. Events are recorded without
+ * locking and can be written as a JSON report, typically when the JVM shuts down.
+ * 
+ * @see PhaseListeners#REPORT_PROPERTY
+ * 
+ * @author agent
+ */
+public class PhaseTimingAggregator implements PhaseListener {
+
+	private static final Log logger = LogFactory.getLog(PhaseTimingAggregator.class);
+
+	private static final PhaseTimingAggregator sharedInstance = new PhaseTimingAggregator();
+
+	private final ConcurrentMap<Key, Statistics> statistics = new ConcurrentHashMap<Key, Statistics>();
+
+	public void phaseCompleted(PhaseEvent event) {
+		Key key = new Key(event);
+		Statistics statistics = this.statistics.get(key);
+		if (statistics == null) {
+			Statistics newStatistics = new Statistics(key);
+			statistics = this.statistics.putIfAbsent(key, newStatistics);
+			statistics = (statistics == null ? newStatistics : statistics);
+		}
+		statistics.record(event);
+	}
+
+	/**
+	 * Returns a snapshot of the aggregated statistics ordered by descending total duration.
+	 * @return the statistics
+	 */
+	public List<Statistics> getStatistics() {
+		List<Statistics> statistics = new ArrayList<Statistics>(this.statistics.values());
+		Collections.sort(statistics, new Comparator<Statistics>() {
+			public int compare(Statistics o1, Statistics o2) {
+				long d1 = o1.getTotalDuration();
+				long d2 = o2.getTotalDuration();
+				return (d1 < d2 ? 1 : (d1 == d2 ? 0 : -1));
+			}
+		});
+		return statistics;
+	}
+
+	/**
+	 * Remove all aggregated statistics.
+	 */
+	public void clear() {
+		this.statistics.clear();
+	}
+
+	/**
+	 * Write the aggregated statistics as JSON.
+	 * @param writer the destination writer
+	 * @throws IOException
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		Assert.notNull(writer, "Writer must not be null");
+		writer.write("{\n  \"phases\": [");
+		boolean first = true;
+		for (Statistics statistics : getStatistics()) {
+			writer.write(first ? "\n" : ",\n");
+			writer.write("    {");
+			writeJsonValue(writer, "phase", statistics.getPhase().name(), false);
+			writeJsonValue(writer, "dataSetLocation", statistics.getDataSetLocation(), true);
+			writeJsonValue(writer, "connectionName", statistics.getConnectionName(), true);
+			writeJsonValue(writer, "operation", statistics.getOperation(), true);
+			writeJsonNumber(writer, "count", String.valueOf(statistics.getCount()));
+			writeJsonNumber(writer, "totalMillis", toMillis(statistics.getTotalDuration()));
+			writeJsonNumber(writer, "maxMillis", toMillis(statistics.getMaxDuration()));
+			writeJsonNumber(writer, "rows", String.valueOf(statistics.getRowCount()));
+			writer.write("}");
+			first = false;
+		}
+		writer.write(first ? "]\n}\n" : "\n  ]\n}\n");
+		writer.flush();
+	}
+
+	private void writeJsonValue(Writer writer, String name, Object value, boolean separator) throws IOException {
+		if (separator) {
+			writer.write(", ");
+		}
+		writer.write("\"" + name + "\": ");
+		writer.write(value == null ? "null" : "\"" + escape(value.toString()) + "\"");
+	}
+
+	private void writeJsonNumber(Writer writer, String name, String value) throws IOException {
+		writer.write(", \"" + name + "\": " + value);
+	}
+
+	private String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				escaped.append('\\').append(c);
+			} else if (c < ' ') {
+				escaped.append(String.format("\\u%04x", (int) c));
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private String toMillis(long nanos) {
+		return String.format(Locale.ENGLISH, "%.3f", nanos / 1000000.0);
+	}
+
+	/**
+	 * Register a JVM shutdown hook that writes a JSON report to the specified file.
+	 * @param file the report file
+	 */
+	public void registerShutdownReport(final File file) {
+		Assert.notNull(file, "File must not be null");
+		Runtime.getRuntime().addShutdownHook(new Thread("dbunit-timing-report") {
+			@Override
+			public void run() {
+				writeReport(file);
+			}
+		});
+	}
+
+	private void writeReport(File file) {
+		try {
+			File parent = file.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try {
+				writeJson(writer);
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			logger.warn("Unable to write DBUnit timing report to " + file, e);
+		}
+	}
+
+	/**
+	 * Returns an aggregator instance that is shared by the JVM.
+	 * @return the shared aggregator
+	 */
+	public static PhaseTimingAggregator getSharedInstance() {
+		return sharedInstance;
+	}
+
+	/**
+	 * Aggregated statistics for a single phase, dataset location, connection name and operation.
+	 */
+	public static class Statistics {
+
+		private final Key key;
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final AtomicLong totalDuration = new AtomicLong();
+
+		private final AtomicLong maxDuration = new AtomicLong();
+
+		private final AtomicLong rowCount = new AtomicLong();
+
+		Statistics(Key key) {
+			this.key = key;
+		}
+
+		void record(PhaseEvent event) {
+			this.count.incrementAndGet();
+			this.totalDuration.addAndGet(event.getDuration());
+			this.rowCount.addAndGet(event.getTotalRowCount());
+			long max = this.maxDuration.get();
+			while ((event.getDuration() > max) && !this.maxDuration.compareAndSet(max, event.getDuration())) {
+				max = this.maxDuration.get();
+			}
+		}
+
+		public Phase getPhase() {
+			return this.key.phase;
+		}
+
+		public String getDataSetLocation() {
+			return this.key.dataSetLocation;
+		}
+
+		public String getConnectionName() {
+			return this.key.connectionName;
+		}
+
+		public DatabaseOperation getOperation() {
+			return this.key.operation;
+		}
+
+		public long getCount() {
+			return this.count.get();
+		}
+
+		/**
+		 * Returns the total duration of all recorded events in nanoseconds.
+		 * @return the total duration
+		 */
+		public long getTotalDuration() {
+			return this.totalDuration.get();
+		}
+
+		/**
+		 * Returns the longest duration of a single event in nanoseconds.
+		 * @return the maximum duration
+		 */
+		public long getMaxDuration() {
+			return this.maxDuration.get();
+		}
+
+		/**
+		 * Returns the total number of rows of all recorded events.
+		 * @return the row count
+		 */
+		public long getRowCount() {
+			return this.rowCount.get();
+		}
+	}
+
+	private static class Key {
+
+		private final Phase phase;
+
+		private final String dataSetLocation;
+
+		private final String connectionName;
+
+		private final DatabaseOperation operation;
+
+		public Key(PhaseEvent event) {
+			this.phase = event.getPhase();
+			this.dataSetLocation = event.getDataSetLocation();
+			this.connectionName = event.getConnectionName();
+			this.operation = event.getOperation();
+		}
+
+		@Override
+		public int hashCode() {
+			int hashCode = this.phase.hashCode();
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(this.dataSetLocation);
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(this.connectionName);
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(this.operation);
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return (this.phase == other.phase) && ObjectUtils.nullSafeEquals(this.dataSetLocation, other.dataSetLocation)
+					&& ObjectUtils.nullSafeEquals(this.connectionName, other.connectionName)
+					&& (this.operation == other.operation);
+		}
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.github.springtestdbunit.annotation.ConstraintMode;
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.annotation.DatabaseTearDown;
+import com.github.springtestdbunit.bean.DatabaseConfigBean;
+import com.github.springtestdbunit.bean.DatabaseDataSourceConnectionFactoryBean;
+import com.github.springtestdbunit.dataset.DataSetLoader;
+
+/**
+ * Tests for {@link ConstraintMode} support.
+ *
+ * @author agent
+ */
+public class ConstraintModeTests {
+
+	private DataSource dataSource;
+
+	private JdbcTemplate template;
+
+	@Before
+	public void setup() {
+		this.dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:constraintmode", "sa", "");
+		this.template = new JdbcTemplate(this.dataSource);
+		this.template.execute("CREATE TABLE parent (id INTEGER PRIMARY KEY)");
+		this.template.execute("CREATE TABLE child (id INTEGER PRIMARY KEY, parent_id INTEGER, "
+				+ "CONSTRAINT fk_child_parent FOREIGN KEY (parent_id) REFERENCES parent (id))");
+	}
+
+	@After
+	public void cleanup() {
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+	}
+
+	@Test
+	public void shouldSortTablesWhenEnforced() throws Exception {
+		runTest(new DbUnitRule(), new ConstraintTest(this.dataSource, 1));
+		assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM child"));
+		assertReferentialIntegrityEnabled();
+	}
+
+	@Test
+	public void shouldFailToLoadMissingParentWhenEnforced() throws Exception {
+		try {
+			runTest(new DbUnitRule(), new ConstraintTest(this.dataSource, 2));
+			fail();
+		} catch (Exception e) {
+			assertTrue(e.getMessage(), e.getMessage().toUpperCase().contains("FK_CHILD_PARENT"));
+		}
+	}
+
+	@Test
+	public void shouldLoadTablesInAnyOrderWhenDeferred() throws Exception {
+		DbUnitRule rule = new DbUnitRule();
+		rule.setConstraintMode(ConstraintMode.DEFERRED);
+		runTest(rule, new ConstraintTest(this.dataSource, 1));
+		assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM child"));
+		assertReferentialIntegrityEnabled();
+	}
+
+	@Test
+	public void shouldNotValidateWhenDeferred() throws Exception {
+		DbUnitRule rule = new DbUnitRule();
+		rule.setConstraintMode(ConstraintMode.DEFERRED);
+		runTest(rule, new ConstraintTest(this.dataSource, 2));
+		assertReferentialIntegrityEnabled();
+	}
+
+	@Test
+	public void shouldValidateWhenDeferredValidated() throws Exception {
+		DbUnitRule rule = new DbUnitRule();
+		rule.setConstraintMode(ConstraintMode.DEFERRED_VALIDATED);
+		runTest(rule, new ConstraintTest(this.dataSource, 1));
+		try {
+			runTest(rule, new ConstraintTest(this.dataSource, 2));
+			fail();
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("violate foreign key FK_CHILD_PARENT"));
+		}
+		assertReferentialIntegrityEnabled();
+	}
+
+	@Test
+	public void shouldUseConstraintModeFromDatabaseConfigBean() throws Exception {
+		DatabaseConfigBean config = new DatabaseConfigBean();
+		config.setConstraintMode(ConstraintMode.DEFERRED);
+		DatabaseDataSourceConnectionFactoryBean factoryBean = new DatabaseDataSourceConnectionFactoryBean(
+				this.dataSource);
+		factoryBean.setDatabaseConfig(config);
+		runTest(new DbUnitRule(), new ConnectionConstraintTest(factoryBean.getObject()));
+		assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM child"));
+		assertReferentialIntegrityEnabled();
+	}
+
+	@Test
+	public void shouldOnlyDeferConstraintsOfTargetedConnections() throws Exception {
+		IDatabaseConnection otherConnection = mock(IDatabaseConnection.class);
+		Connection jdbcConnection = mock(Connection.class, RETURNS_DEEP_STUBS);
+		given(jdbcConnection.getMetaData().getDatabaseProductName()).willReturn("Unsupported");
+		given(otherConnection.getConnection()).willReturn(jdbcConnection);
+		DbUnitRule rule = new DbUnitRule();
+		rule.setConstraintMode(ConstraintMode.DEFERRED);
+		runTest(rule, new TargetedConstraintTest(this.dataSource, otherConnection));
+		assertReferentialIntegrityEnabled();
+	}
+
+	@Test
+	public void shouldOnlyEnableDatabaseReferentialIntegrityForLastUser() throws Exception {
+		Connection first = this.dataSource.getConnection();
+		Connection second = this.dataSource.getConnection();
+		try {
+			ReferentialIntegrity.HSQLDB.disable(first);
+			ReferentialIntegrity.HSQLDB.disable(second);
+			ReferentialIntegrity.HSQLDB.enable(first);
+			this.template.execute("INSERT INTO child (id, parent_id) VALUES (100, 100)");
+			this.template.execute("DELETE FROM child");
+			ReferentialIntegrity.HSQLDB.enable(second);
+			assertReferentialIntegrityEnabled();
+		} finally {
+			first.close();
+			second.close();
+		}
+	}
+
+	private void runTest(DbUnitRule rule, Object target) throws Exception {
+		Statement statement = new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				assertEquals(1, ConstraintModeTests.this.template.queryForInt("SELECT COUNT(*) FROM child"));
+			}
+		};
+		try {
+			rule.apply(statement, new FrameworkMethod(target.getClass().getMethod("test")), target).evaluate();
+		} catch (Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void assertReferentialIntegrityEnabled() {
+		try {
+			this.template.execute("INSERT INTO child (id, parent_id) VALUES (100, 100)");
+			fail();
+		} catch (DataIntegrityViolationException e) {
+		}
+	}
+
+	public static class ConstraintTest {
+
+		@SuppressWarnings("unused")
+		private DataSource dataSource;
+
+		@SuppressWarnings("unused")
+		private DataSetLoader dataSetLoader;
+
+		public ConstraintTest(DataSource dataSource, int parentId) {
+			this.dataSource = dataSource;
+			this.dataSetLoader = new ConstraintDataSetLoader(parentId);
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "dataSource", type = DatabaseOperation.INSERT, value = "setup"))
+		@DatabaseTearDown(type = DatabaseOperation.DELETE_ALL, value = "teardown")
+		public void test() {
+		}
+	}
+
+	public static class TargetedConstraintTest {
+
+		@SuppressWarnings("unused")
+		private DataSource dataSource;
+
+		@SuppressWarnings("unused")
+		private IDatabaseConnection otherConnection;
+
+		@SuppressWarnings("unused")
+		private DataSetLoader dataSetLoader = new ConstraintDataSetLoader(1);
+
+		public TargetedConstraintTest(DataSource dataSource, IDatabaseConnection otherConnection) {
+			this.dataSource = dataSource;
+			this.otherConnection = otherConnection;
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "dataSource", type = DatabaseOperation.INSERT, value = "setup"))
+		public void test() {
+		}
+	}
+
+	public static class ConnectionConstraintTest {
+
+		@SuppressWarnings("unused")
+		private IDatabaseConnection connection;
+
+		@SuppressWarnings("unused")
+		private DataSetLoader dataSetLoader = new ConstraintDataSetLoader(1);
+
+		public ConnectionConstraintTest(IDatabaseConnection connection) {
+			this.connection = connection;
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "connection", type = DatabaseOperation.INSERT, value = "setup"))
+		@DatabaseTearDown(type = DatabaseOperation.DELETE_ALL, value = "teardown")
+		public void test() {
+		}
+	}
+
+	private static class ConstraintDataSetLoader implements DataSetLoader {
+
+		private final int parentId;
+
+		public ConstraintDataSetLoader(int parentId) {
+			this.parentId = parentId;
+		}
+
+		public IDataSet loadDataSet(Class<?> testClass, String location) throws Exception {
+			// Children are listed first so that parents are inserted last and deleted first
+			DefaultTable child = new DefaultTable("child", new Column[] { new Column("id", DataType.UNKNOWN),
+					new Column("parent_id", DataType.UNKNOWN) });
+			child.addRow(new Object[] { "1", "1" });
+			DefaultTable parent = new DefaultTable("parent", new Column[] { new Column("id", DataType.UNKNOWN) });
+			parent.addRow(new Object[] { String.valueOf(this.parentId) });
+			return new DefaultDataSet(child, parent);
+		}
+	}
+}
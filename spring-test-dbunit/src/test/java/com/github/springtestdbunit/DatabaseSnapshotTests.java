@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Tests for {@link DatabaseSnapshot}.
+ *
+ * @author agent
+ */
+public class DatabaseSnapshotTests {
+
+	private DataSource dataSource;
+
+	private JdbcTemplate template;
+
+	@Before
+	public void setup() {
+		this.dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:databasesnapshot", "sa", "");
+		this.template = new JdbcTemplate(this.dataSource);
+		this.template.execute("CREATE TABLE example (id INTEGER PRIMARY KEY)");
+		this.template.execute("INSERT INTO example (id) VALUES (1)");
+	}
+
+	@After
+	public void cleanup() {
+		DatabaseSnapshot.dropAll(getClass());
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+	}
+
+	@Test
+	public void shouldRestoreSnapshot() throws Exception {
+		IDatabaseConnection connection = new DatabaseConnection(this.dataSource.getConnection());
+		DatabaseSnapshot snapshot = DatabaseSnapshot.create(getClass(), "key", connection, this.dataSource,
+				Arrays.asList("example"));
+		this.template.execute("INSERT INTO example (id) VALUES (2)");
+		snapshot.restore(connection);
+		connection.close();
+		assertEquals(1, this.template.queryForInt("SELECT COUNT(*) FROM example"));
+	}
+
+	@Test
+	public void shouldOnlyShareSnapshotWithinTestClass() throws Exception {
+		IDatabaseConnection connection = new DatabaseConnection(this.dataSource.getConnection());
+		DatabaseSnapshot snapshot = DatabaseSnapshot.create(getClass(), "key", connection, this.dataSource,
+				Arrays.asList("example"));
+		connection.close();
+		assertSame(snapshot, DatabaseSnapshot.get(getClass(), "key"));
+		assertNull(DatabaseSnapshot.get(Object.class, "key"));
+	}
+
+	@Test
+	public void shouldDropSnapshotsUsingNewConnection() throws Exception {
+		IDatabaseConnection connection = new DatabaseConnection(this.dataSource.getConnection());
+		DatabaseSnapshot.create(getClass(), "key", connection, this.dataSource, Arrays.asList("example"));
+		connection.close();
+		assertEquals(1, countSnapshotTables());
+		DatabaseSnapshot.dropAll(getClass());
+		assertEquals(0, countSnapshotTables());
+		assertNull(DatabaseSnapshot.get(getClass(), "key"));
+	}
+
+	private int countSnapshotTables() {
+		return this.template.queryForInt("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+				+ "WHERE TABLE_SCHEMA = '" + DatabaseSnapshot.SNAPSHOT_SCHEMA + "'");
+	}
+}
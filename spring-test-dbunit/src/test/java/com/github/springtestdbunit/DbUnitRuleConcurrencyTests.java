@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.annotation.DatabaseTearDown;
+import com.github.springtestdbunit.dataset.DataSetLoader;
+
+/**
+ * Tests for {@link DbUnitRule} when used by many threads.
+ *
+ * @author agent
+ */
+public class DbUnitRuleConcurrencyTests {
+
+	private static final int THREADS = 8;
+
+	private static final int ITERATIONS = 50;
+
+	private DataSource dataSource;
+
+	private JdbcTemplate template;
+
+	@Before
+	public void setup() {
+		this.dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:dbunitruleconcurrency", "sa", "");
+		this.template = new JdbcTemplate(this.dataSource);
+		this.template.execute("CREATE TABLE concurrent (id INTEGER PRIMARY KEY)");
+	}
+
+	@After
+	public void cleanup() {
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+	}
+
+	@Test
+	public void shouldSupportConcurrentTests() throws Exception {
+		final DbUnitRule rule = new DbUnitRule();
+		final FrameworkMethod method = new FrameworkMethod(ConcurrentTest.class.getMethod("test"));
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (int thread = 0; thread < THREADS; thread++) {
+				final int firstId = thread * ITERATIONS;
+				results.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						for (int id = firstId; id < firstId + ITERATIONS; id++) {
+							runTest(rule, method, id);
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM concurrent"));
+	}
+
+	private void runTest(DbUnitRule rule, FrameworkMethod method, final int id) throws Exception {
+		ConcurrentTest target = new ConcurrentTest(this.dataSource, id);
+		Statement statement = new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				int count = DbUnitRuleConcurrencyTests.this.template.queryForInt(
+						"SELECT COUNT(*) FROM concurrent WHERE id = ?", id);
+				assertEquals(1, count);
+			}
+		};
+		try {
+			rule.apply(statement, method, target).evaluate();
+		} catch (Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+		assertEquals(2, target.loaded.size());
+	}
+
+	public static class ConcurrentTest {
+
+		@SuppressWarnings("unused")
+		private DataSource dataSource;
+
+		@SuppressWarnings("unused")
+		private DataSetLoader dataSetLoader;
+
+		private List<String> loaded = Collections.synchronizedList(new ArrayList<String>());
+
+		public ConcurrentTest(DataSource dataSource, final int id) {
+			this.dataSource = dataSource;
+			this.dataSetLoader = new DataSetLoader() {
+				public IDataSet loadDataSet(Class<?> testClass, String location) throws Exception {
+					ConcurrentTest.this.loaded.add(location);
+					DefaultTable table = new DefaultTable("concurrent", new Column[] { new Column("id",
+							DataType.UNKNOWN) });
+					table.addRow(new Object[] { String.valueOf(id) });
+					return new DefaultDataSet(table);
+				}
+			};
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "dataSource", type = DatabaseOperation.INSERT, value = "setup"))
+		@DatabaseTearDown(type = DatabaseOperation.DELETE, value = "teardown")
+		public void test() {
+		}
+	}
+}
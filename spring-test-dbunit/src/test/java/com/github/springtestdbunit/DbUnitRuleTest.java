@@ -16,6 +16,8 @@
 package com.github.springtestdbunit;
 
 import com.github.springtestdbunit.DbUnitRule.DbUnitTestContextAdapter;
+import com.github.springtestdbunit.annotation.IsolationMode;
+import com.github.springtestdbunit.annotation.SetupMode;
 import com.github.springtestdbunit.dataset.DataSetLoader;
 import com.github.springtestdbunit.dataset.FlatXmlDataSetLoader;
 import com.github.springtestdbunit.operation.DatabaseOperationLookup;
@@ -24,8 +26,10 @@ import com.github.springtestdbunit.testutils.NotSwallowedException;
 import org.dbunit.database.IDatabaseConnection;
 import org.junit.Test;
 import org.junit.internal.runners.statements.Fail;
+import org.junit.runner.Description;
 import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.Statement;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
 
 import javax.sql.DataSource;
 import java.lang.reflect.Method;
@@ -113,6 +117,95 @@ public class DbUnitRuleTest {
 		verify(connection).createStatement();
 	}
 
+	@Test
+	public void shouldReuseDataSourceConnection() throws Throwable {
+		final WithDataSource target = new WithDataSource(mock(Connection.class));
+		final FrameworkMethod method = new FrameworkMethod(target.getClass().getMethod("test"));
+		final DbUnitRule rule = new DbUnitRule();
+		evaluateInClassRule(rule, new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				DbUnitTestContextAdapter adapter = rule.new DbUnitTestContextAdapter(method, target);
+				IDatabaseConnection connection = adapter.getConnectionsMap().get("dataSource");
+				assertSame(connection, adapter.getConnectionsMap().get("dataSource"));
+				adapter.releaseConnections();
+				DbUnitTestContextAdapter otherAdapter = rule.new DbUnitTestContextAdapter(method, target);
+				assertSame(connection, otherAdapter.getConnectionsMap().get("dataSource"));
+			}
+		});
+	}
+
+	@Test
+	public void shouldNotPoolDataSourceConnectionWithoutClassRule() throws Exception {
+		WithDataSource target = new WithDataSource(mock(Connection.class));
+		FrameworkMethod method = new FrameworkMethod(target.getClass().getMethod("test"));
+		DbUnitRule rule = new DbUnitRule();
+		DbUnitTestContextAdapter adapter = rule.new DbUnitTestContextAdapter(method, target);
+		IDatabaseConnection connection = adapter.getConnectionsMap().get("dataSource");
+		adapter.releaseConnections();
+		DbUnitTestContextAdapter otherAdapter = rule.new DbUnitTestContextAdapter(method, target);
+		assertNotSame(connection, otherAdapter.getConnectionsMap().get("dataSource"));
+	}
+
+	@Test
+	public void shouldNotShareDataSourceConnectionBetweenRules() throws Exception {
+		WithDataSource target = new WithDataSource(mock(Connection.class));
+		FrameworkMethod method = new FrameworkMethod(target.getClass().getMethod("test"));
+		DbUnitTestContextAdapter adapter = new DbUnitRule().new DbUnitTestContextAdapter(method, target);
+		IDatabaseConnection connection = adapter.getConnectionsMap().get("dataSource");
+		adapter.releaseConnections();
+		DbUnitTestContextAdapter otherAdapter = new DbUnitRule().new DbUnitTestContextAdapter(method, target);
+		assertNotSame(connection, otherAdapter.getConnectionsMap().get("dataSource"));
+	}
+
+	@Test
+	public void shouldNotReuseDataSourceConnectionThatCannotBeClosed() throws Throwable {
+		Connection jdbcConnection = mock(Connection.class);
+		doThrow(new SQLException("close")).when(jdbcConnection).close();
+		final WithUnclosableDataSource target = new WithUnclosableDataSource(jdbcConnection);
+		final FrameworkMethod method = new FrameworkMethod(target.getClass().getMethod("test"));
+		final DbUnitRule rule = new DbUnitRule();
+		evaluateInClassRule(rule, new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				DbUnitTestContextAdapter adapter = rule.new DbUnitTestContextAdapter(method, target);
+				IDatabaseConnection connection = adapter.getConnectionsMap().get("dataSource");
+				connection.getConnection();
+				adapter.releaseConnections();
+				DbUnitTestContextAdapter otherAdapter = rule.new DbUnitTestContextAdapter(method, target);
+				assertNotSame(connection, otherAdapter.getConnectionsMap().get("dataSource"));
+			}
+		});
+	}
+
+	@Test
+	public void shouldDiscardDataSourceConnectionsAfterClass() throws Throwable {
+		WithDataSource target = new WithDataSource(mock(Connection.class));
+		FrameworkMethod method = new FrameworkMethod(target.getClass().getMethod("test"));
+		final DbUnitRule rule = new DbUnitRule();
+		final DbUnitTestContextAdapter adapter = rule.new DbUnitTestContextAdapter(method, target);
+		final IDatabaseConnection connection = adapter.getConnectionsMap().get("dataSource");
+		Statement classStatement = new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				adapter.releaseConnections();
+			}
+		};
+		evaluateInClassRule(rule, classStatement);
+		DbUnitTestContextAdapter otherAdapter = rule.new DbUnitTestContextAdapter(method, target);
+		assertNotSame(connection, otherAdapter.getConnectionsMap().get("dataSource"));
+	}
+
+	@Test
+	public void shouldNotShareDataSourceConnectionBetweenRunningTests() throws Exception {
+		WithDataSource target = new WithDataSource(mock(Connection.class));
+		FrameworkMethod method = new FrameworkMethod(target.getClass().getMethod("test"));
+		DbUnitRule rule = new DbUnitRule();
+		DbUnitTestContextAdapter adapter = rule.new DbUnitTestContextAdapter(method, target);
+		DbUnitTestContextAdapter otherAdapter = rule.new DbUnitTestContextAdapter(method, target);
+		assertNotSame(adapter.getConnectionsMap().get("dataSource"), otherAdapter.getConnectionsMap().get("dataSource"));
+	}
+
 	@Test
 	public void shouldFindDatabaseConnectionFromTestCase() throws Exception {
 		IDatabaseConnection connection = mock(IDatabaseConnection.class);
@@ -209,6 +302,38 @@ public class DbUnitRuleTest {
 		assertEquals(DefaultDatabaseOperationLookup.class, lookup.getClass());
 	}
 
+	@Test
+	public void shouldUseTearDownIsolationIfNotSet() throws Exception {
+		Blank target = new Blank();
+		FrameworkMethod method = new FrameworkMethod(target.getClass().getMethod("test"));
+		DbUnitTestContextAdapter dbUnitTestContextAdapter = new DbUnitRule().new DbUnitTestContextAdapter(method,
+				target);
+		assertEquals(IsolationMode.TEARDOWN, dbUnitTestContextAdapter.getIsolationMode());
+	}
+
+	@Test
+	public void shouldUseSetIsolationMode() throws Exception {
+		Blank target = new Blank();
+		FrameworkMethod method = new FrameworkMethod(target.getClass().getMethod("test"));
+		DbUnitRule rule = new DbUnitRule();
+		rule.setIsolationMode(IsolationMode.ROLLBACK);
+		DbUnitTestContextAdapter dbUnitTestContextAdapter = rule.new DbUnitTestContextAdapter(method, target);
+		assertEquals(IsolationMode.ROLLBACK, dbUnitTestContextAdapter.getIsolationMode());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotSupportSavepointIsolation() throws Exception {
+		new DbUnitRule().setIsolationMode(IsolationMode.SAVEPOINT);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void shouldRequireClassRuleForSnapshotSetup() throws Exception {
+		Blank target = new Blank();
+		DbUnitRule rule = new DbUnitRule();
+		rule.setSetupMode(SetupMode.SNAPSHOT);
+		rule.apply(mock(Statement.class), new FrameworkMethod(target.getClass().getMethod("test")), target);
+	}
+
 	// Issue : https://github.com/springtestdbunit/spring-test-dbunit/issues/26
 	@Test
 	public void shouldPropagateExceptionThrownInFailingTest() throws Throwable {
@@ -228,6 +353,10 @@ public class DbUnitRuleTest {
 		}
 	}
 
+	private void evaluateInClassRule(DbUnitRule rule, Statement statement) throws Throwable {
+		rule.classRule().apply(statement, Description.createSuiteDescription(WithDataSource.class)).evaluate();
+	}
+
 	static class Blank {
 		public void test() {
 		}
@@ -242,6 +371,21 @@ public class DbUnitRuleTest {
 		}
 	}
 
+	static class WithUnclosableDataSource extends Blank {
+		@SuppressWarnings("unused")
+		private DataSource dataSource;
+
+		public WithUnclosableDataSource(final Connection connection) {
+			// Transaction aware data sources are used directly, so that the failure to close is not swallowed
+			this.dataSource = new TransactionAwareDataSourceProxy() {
+				@Override
+				public Connection getConnection() throws SQLException {
+					return connection;
+				}
+			};
+		}
+	}
+
 	static class WithDatabaseConnection extends Blank {
 		@SuppressWarnings("unused")
 		private IDatabaseConnection databaseConnection;
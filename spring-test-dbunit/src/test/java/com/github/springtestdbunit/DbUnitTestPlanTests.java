@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.springtestdbunit.DbUnitTestPlan.AnnotationAttributes;
+import com.github.springtestdbunit.DbUnitTestPlan.Expectation;
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.annotation.DatabaseTearDown;
+import com.github.springtestdbunit.annotation.ExpectedDatabase;
+import com.github.springtestdbunit.assertion.DatabaseAssertionMode;
+
+/**
+ * Tests for {@link DbUnitTestPlan}.
+ *
+ * @author agent
+ */
+public class DbUnitTestPlanTests {
+
+	@Test
+	public void shouldCachePlanForClassAndMethod() throws Exception {
+		Method method = Annotated.class.getMethod("test");
+		assertSame(DbUnitTestPlan.get(Annotated.class, method), DbUnitTestPlan.get(Annotated.class, method));
+		assertNotSame(DbUnitTestPlan.get(Annotated.class, method), DbUnitTestPlan.get(Annotated.class, null));
+	}
+
+	@Test
+	public void shouldResolveClassAndMethodSetups() throws Exception {
+		DbUnitTestPlan plan = DbUnitTestPlan.get(Annotated.class, Annotated.class.getMethod("test"));
+		assertEquals(1, plan.getClassSetups().size());
+		assertEquals(1, plan.getMethodSetups().size());
+		List<List<AnnotationAttributes>> setups = plan.getSetups();
+		assertEquals(2, setups.size());
+		AnnotationAttributes classSetup = setups.get(0).get(0);
+		assertEquals("first", classSetup.getConnectionName());
+		assertEquals(DatabaseOperation.CLEAN_INSERT, classSetup.getType());
+		assertArrayEquals(new String[] { "class.xml" }, classSetup.getValue());
+		assertEquals(2, setups.get(1).size());
+		assertEquals(DatabaseOperation.INSERT, setups.get(1).get(1).getType());
+	}
+
+	@Test
+	public void shouldNotExposeCachedValues() throws Exception {
+		DbUnitTestPlan plan = DbUnitTestPlan.get(Annotated.class, null);
+		plan.getTeardowns().get(0).getValue()[0] = "changed.xml";
+		assertArrayEquals(new String[] { "teardown.xml" }, plan.getTeardowns().get(0).getValue());
+	}
+
+	@Test
+	public void shouldResolveTeardownsAndExpectations() throws Exception {
+		DbUnitTestPlan plan = DbUnitTestPlan.get(Annotated.class, Annotated.class.getMethod("test"));
+		assertEquals(1, plan.getTeardowns().size());
+		assertArrayEquals(new String[] { "teardown.xml" }, plan.getTeardowns().get(0).getValue());
+		List<Expectation> expectations = plan.getExpectations();
+		assertEquals(1, expectations.size());
+		assertEquals("expected.xml", expectations.get(0).getValue());
+		assertEquals("second", expectations.get(0).getConnectionName());
+		assertEquals(DatabaseAssertionMode.NON_STRICT, expectations.get(0).getAssertionMode());
+	}
+
+	@Test
+	public void shouldOnlyResolveClassAnnotationsWithoutMethod() throws Exception {
+		DbUnitTestPlan plan = DbUnitTestPlan.get(Annotated.class, null);
+		assertEquals(1, plan.getClassSetups().size());
+		assertEquals(0, plan.getMethodSetups().size());
+		assertEquals(1, plan.getTeardowns().size());
+		assertEquals(0, plan.getExpectations().size());
+	}
+
+	@Test
+	public void shouldResolveEmptyPlan() throws Exception {
+		DbUnitTestPlan plan = DbUnitTestPlan.get(DbUnitTestPlanTests.class,
+				DbUnitTestPlanTests.class.getMethod("shouldResolveEmptyPlan"));
+		assertEquals(0, plan.getSetups().size());
+		assertEquals(0, plan.getTeardowns().size());
+		assertEquals(0, plan.getExpectations().size());
+	}
+
+	@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "first", value = "class.xml"))
+	@DatabaseTearDown("teardown.xml")
+	public static class Annotated {
+
+		@DatabaseSetup(connections = {
+				@DatabaseConnectionSetup(connectionName = "first", value = "method.xml"),
+				@DatabaseConnectionSetup(connectionName = "second", type = DatabaseOperation.INSERT,
+						value = "other.xml") })
+		@ExpectedDatabase(connection = "second", value = "expected.xml",
+				assertionMode = DatabaseAssertionMode.NON_STRICT)
+		public void test() {
+		}
+	}
+}
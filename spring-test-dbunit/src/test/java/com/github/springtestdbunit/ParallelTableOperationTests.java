@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.github.springtestdbunit.annotation.ConstraintMode;
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.dataset.DataSetLoader;
+
+/**
+ * Tests for {@link ParallelTableOperation}.
+ *
+ * @author agent
+ */
+public class ParallelTableOperationTests {
+
+	private static final int TABLES = 6;
+
+	private static final int ROWS = 200;
+
+	private DataSource dataSource;
+
+	private JdbcTemplate template;
+
+	private DbUnitRule rule;
+
+	@Before
+	public void setup() {
+		this.dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:paralleltableoperation", "sa", "");
+		this.template = new JdbcTemplate(this.dataSource);
+		this.template.execute("CREATE TABLE parent0 (id INTEGER PRIMARY KEY)");
+		for (int i = 1; i < TABLES; i++) {
+			this.template.execute("CREATE TABLE child" + i + " (id INTEGER PRIMARY KEY, parent_id INTEGER, "
+					+ "FOREIGN KEY (parent_id) REFERENCES parent0 (id))");
+		}
+		this.rule = new DbUnitRule();
+		this.rule.setConstraintMode(ConstraintMode.DEFERRED_VALIDATED);
+		this.rule.setParallelTableLoading(true);
+	}
+
+	@After
+	public void cleanup() {
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+		this.template.execute("SET DATABASE TRANSACTION CONTROL LOCKS");
+	}
+
+	@Test
+	public void shouldLoadAllTablesWithLockBasedTransactions() throws Exception {
+		runTest(new ParallelTest(this.dataSource, false));
+		assertEquals(ROWS, this.template.queryForInt("SELECT COUNT(*) FROM parent0"));
+		for (int i = 1; i < TABLES; i++) {
+			assertEquals(ROWS, this.template.queryForInt("SELECT COUNT(*) FROM child" + i));
+		}
+	}
+
+	@Test
+	public void shouldLoadAllTables() throws Exception {
+		this.template.execute("SET DATABASE TRANSACTION CONTROL MVCC");
+		runTest(new ParallelTest(this.dataSource, false));
+		assertEquals(ROWS, this.template.queryForInt("SELECT COUNT(*) FROM parent0"));
+		for (int i = 1; i < TABLES; i++) {
+			assertEquals(ROWS, this.template.queryForInt("SELECT COUNT(*) FROM child" + i));
+		}
+	}
+
+	@Test
+	public void shouldRollbackAllTablesOnFailure() throws Exception {
+		this.template.execute("SET DATABASE TRANSACTION CONTROL MVCC");
+		try {
+			runTest(new ParallelTest(this.dataSource, true));
+			fail();
+		} catch (Exception e) {
+		}
+		assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM parent0"));
+		for (int i = 1; i < TABLES; i++) {
+			assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM child" + i));
+		}
+	}
+
+	@Test
+	public void shouldUseFewerWorkersWhenConnectionsAreLimited() throws Exception {
+		assertLoadedWithConnectionLimit(1);
+	}
+
+	@Test
+	public void shouldLoadSequentiallyWhenNoWorkerConnectionIsAvailable() throws Exception {
+		assertLoadedWithConnectionLimit(0);
+	}
+
+	private void assertLoadedWithConnectionLimit(int limit) throws Exception {
+		IDatabaseConnection connection = new DatabaseConnection(this.dataSource.getConnection());
+		ReferentialIntegrity referentialIntegrity = ReferentialIntegrity.get(connection);
+		referentialIntegrity.disable(connection);
+		try {
+			new ParallelTableOperation(org.dbunit.operation.DatabaseOperation.INSERT, new LimitedDataSource(
+					this.dataSource, limit), referentialIntegrity).execute(connection, createDataSet(false));
+		} finally {
+			referentialIntegrity.enable(connection);
+			connection.close();
+		}
+		assertEquals(ROWS, this.template.queryForInt("SELECT COUNT(*) FROM parent0"));
+		for (int i = 1; i < TABLES; i++) {
+			assertEquals(ROWS, this.template.queryForInt("SELECT COUNT(*) FROM child" + i));
+		}
+	}
+
+	private static IDataSet createDataSet(boolean duplicateRow) throws DataSetException {
+		List<ITable> tables = new ArrayList<ITable>();
+		for (int i = 1; i < TABLES; i++) {
+			DefaultTable child = new DefaultTable("child" + i, new Column[] { new Column("id", DataType.INTEGER),
+					new Column("parent_id", DataType.INTEGER) });
+			for (int row = 0; row < ROWS; row++) {
+				child.addRow(new Object[] { new Integer(row), new Integer(row) });
+			}
+			tables.add(child);
+		}
+		DefaultTable parent = new DefaultTable("parent0", new Column[] { new Column("id", DataType.INTEGER) });
+		for (int row = 0; row < ROWS; row++) {
+			parent.addRow(new Object[] { new Integer(row) });
+		}
+		if (duplicateRow) {
+			parent.addRow(new Object[] { new Integer(0) });
+		}
+		tables.add(parent);
+		return new DefaultDataSet(tables.toArray(new ITable[tables.size()]));
+	}
+
+	private void runTest(ParallelTest target) throws Exception {
+		Statement statement = new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+			}
+		};
+		try {
+			this.rule.apply(statement, new FrameworkMethod(ParallelTest.class.getMethod("test")), target).evaluate();
+		} catch (Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static class ParallelTest {
+
+		@SuppressWarnings("unused")
+		private DataSource dataSource;
+
+		@SuppressWarnings("unused")
+		private DataSetLoader dataSetLoader;
+
+		public ParallelTest(DataSource dataSource, final boolean duplicateRow) {
+			this.dataSource = dataSource;
+			this.dataSetLoader = new DataSetLoader() {
+				public IDataSet loadDataSet(Class<?> testClass, String location) throws Exception {
+					return createDataSet(duplicateRow);
+				}
+			};
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "dataSource", type = DatabaseOperation.INSERT, value = "setup"))
+		public void test() {
+		}
+	}
+
+	/**
+	 * Data source that fails once a limited number of connections have been obtained, as a pool would when exhausted.
+	 */
+	private static class LimitedDataSource extends DelegatingDataSource {
+
+		private final AtomicInteger remaining;
+
+		public LimitedDataSource(DataSource targetDataSource, int limit) {
+			super(targetDataSource);
+			this.remaining = new AtomicInteger(limit);
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (this.remaining.getAndDecrement() <= 0) {
+				throw new SQLException("Pool exhausted");
+			}
+			return super.getConnection();
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import javax.sql.DataSource;
+
+import org.dbunit.database.DatabaseConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.annotation.IsolationMode;
+import com.github.springtestdbunit.dataset.DataSetLoader;
+
+/**
+ * Tests for {@link IsolationMode#ROLLBACK} support.
+ *
+ * @author agent
+ */
+public class RollbackIsolationTests {
+
+	private DataSource dataSource;
+
+	private JdbcTemplate template;
+
+	private TransactionTemplate transactionTemplate;
+
+	@Before
+	public void setup() {
+		this.dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:rollbackisolation", "sa", "");
+		this.template = new JdbcTemplate(this.dataSource);
+		this.template.execute("CREATE TABLE example (id INTEGER PRIMARY KEY)");
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+	}
+
+	@After
+	public void cleanup() {
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+	}
+
+	@Test
+	public void shouldRollbackSetupWithTransaction() throws Exception {
+		this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				runTest(new DataSourceTest(RollbackIsolationTests.this.dataSource));
+				try {
+					assertFalse(DataSourceUtils.getConnection(RollbackIsolationTests.this.dataSource).isClosed());
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				status.setRollbackOnly();
+			}
+		});
+		assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM example"));
+	}
+
+	@Test
+	public void shouldFailWithoutTransaction() throws Exception {
+		try {
+			runTest(new DataSourceTest(this.dataSource));
+			fail();
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("requires tests to run in a transaction"));
+		}
+	}
+
+	@Test
+	public void shouldFailWhenConnectionDoesNotParticipateInTransaction() throws Exception {
+		final IDatabaseConnection connection = new DatabaseConnection(this.dataSource.getConnection());
+		this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				try {
+					runTest(new ConnectionTest(connection));
+					fail();
+				} catch (IllegalStateException e) {
+					assertTrue(e.getMessage(), e.getMessage().contains("to participate in the test transaction"));
+				}
+				status.setRollbackOnly();
+			}
+		});
+		assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM example"));
+	}
+
+	private void runTest(Object target) {
+		DbUnitRule rule = new DbUnitRule();
+		rule.setIsolationMode(IsolationMode.ROLLBACK);
+		Statement statement = new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				assertEquals(1, RollbackIsolationTests.this.template.queryForInt("SELECT COUNT(*) FROM example"));
+			}
+		};
+		try {
+			rule.apply(statement, new FrameworkMethod(target.getClass().getMethod("test")), target).evaluate();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static class DataSourceTest {
+
+		@SuppressWarnings("unused")
+		private DataSource dataSource;
+
+		@SuppressWarnings("unused")
+		private DataSetLoader dataSetLoader = new ExampleDataSetLoader();
+
+		public DataSourceTest(DataSource dataSource) {
+			this.dataSource = dataSource;
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "dataSource", type = DatabaseOperation.INSERT, value = "setup"))
+		public void test() {
+		}
+	}
+
+	public static class ConnectionTest {
+
+		@SuppressWarnings("unused")
+		private IDatabaseConnection connection;
+
+		@SuppressWarnings("unused")
+		private DataSetLoader dataSetLoader = new ExampleDataSetLoader();
+
+		public ConnectionTest(IDatabaseConnection connection) {
+			this.connection = connection;
+		}
+
+		@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "connection", type = DatabaseOperation.INSERT, value = "setup"))
+		public void test() {
+		}
+	}
+
+	private static class ExampleDataSetLoader implements DataSetLoader {
+
+		public IDataSet loadDataSet(Class<?> testClass, String location) throws Exception {
+			DefaultTable example = new DefaultTable("example", new Column[] { new Column("id", DataType.UNKNOWN) });
+			example.addRow(new Object[] { "1" });
+			return new DefaultDataSet(example);
+		}
+	}
+}
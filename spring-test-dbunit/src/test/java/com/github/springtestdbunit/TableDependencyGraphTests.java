@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.dbunit.database.DatabaseDataSourceConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Tests for {@link TableDependencyGraph}.
+ *
+ * @author agent
+ */
+public class TableDependencyGraphTests {
+
+	private DriverManagerDataSource dataSource;
+
+	private JdbcTemplate template;
+
+	private IDatabaseConnection connection;
+
+	@Before
+	public void setup() throws Exception {
+		this.dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:tabledependencygraph", "sa", "");
+		this.template = new JdbcTemplate(this.dataSource);
+		this.template.execute("CREATE TABLE grandparent (id INTEGER PRIMARY KEY)");
+		this.template.execute("CREATE TABLE parent (id INTEGER PRIMARY KEY, grandparent_id INTEGER, "
+				+ "FOREIGN KEY (grandparent_id) REFERENCES grandparent (id))");
+		this.template.execute("CREATE TABLE child (id INTEGER PRIMARY KEY, parent_id INTEGER, child_id INTEGER, "
+				+ "FOREIGN KEY (parent_id) REFERENCES parent (id), FOREIGN KEY (child_id) REFERENCES child (id))");
+		this.template.execute("CREATE TABLE cycle_b (id INTEGER PRIMARY KEY, cycle_a_id INTEGER)");
+		this.template.execute("CREATE TABLE cycle_a (id INTEGER PRIMARY KEY, cycle_b_id INTEGER, "
+				+ "FOREIGN KEY (cycle_b_id) REFERENCES cycle_b (id))");
+		this.template.execute("ALTER TABLE cycle_b ADD FOREIGN KEY (cycle_a_id) REFERENCES cycle_a (id)");
+		this.connection = new DatabaseDataSourceConnection(this.dataSource);
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		this.connection.close();
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+	}
+
+	@Test
+	public void shouldSortParentsBeforeChildren() throws Exception {
+		TableDependencyGraph graph = getGraph("child", "parent", "grandparent");
+		String[] sorted = graph.sort(new String[] { "child", "unknown", "parent", "grandparent" });
+		assertArrayEquals(new String[] { "grandparent", "parent", "child", "unknown" }, sorted);
+	}
+
+	@Test
+	public void shouldKeepOrderOfUnrelatedTables() throws Exception {
+		TableDependencyGraph graph = getGraph("child", "grandparent");
+		String[] sorted = graph.sort(new String[] { "child", "CHILD", "grandparent" });
+		assertArrayEquals(new String[] { "grandparent", "child", "CHILD" }, sorted);
+	}
+
+	@Test
+	public void shouldSortDataSet() throws Exception {
+		TableDependencyGraph graph = getGraph("parent", "grandparent");
+		IDataSet dataSet = new DefaultDataSet(createTable("parent"), createTable("grandparent"));
+		assertArrayEquals(new String[] { "grandparent", "parent" }, graph.sort(dataSet).getTableNames());
+		IDataSet sorted = new DefaultDataSet(createTable("grandparent"), createTable("parent"));
+		assertSame(sorted, graph.sort(sorted));
+	}
+
+	@Test
+	public void shouldCacheGraph() throws Exception {
+		TableDependencyGraph graph = getGraph("parent");
+		assertSame(graph, getGraph("child"));
+		assertSame(graph, TableDependencyGraph.get(new DatabaseDataSourceConnection(this.dataSource),
+				new String[] { "grandparent" }));
+	}
+
+	@Test
+	public void shouldRebuildGraphForNewTables() throws Exception {
+		TableDependencyGraph graph = getGraph("parent");
+		this.template.execute("CREATE TABLE orphan (id INTEGER PRIMARY KEY, parent_id INTEGER, "
+				+ "FOREIGN KEY (parent_id) REFERENCES parent (id))");
+		TableDependencyGraph rebuilt = TableDependencyGraph.get(new DatabaseDataSourceConnection(this.dataSource),
+				new String[] { "orphan" });
+		assertNotSame(graph, rebuilt);
+		assertArrayEquals(new String[] { "parent", "orphan" }, rebuilt.sort(new String[] { "orphan", "parent" }));
+	}
+
+	@Test
+	public void shouldFindCycles() throws Exception {
+		TableDependencyGraph graph = getGraph("cycle_b", "cycle_a");
+		Set<String> cycle = new HashSet<String>(Arrays.asList("CYCLE_A", "CYCLE_B"));
+		assertEquals(1, graph.getCycles().size());
+		assertEquals(cycle, graph.getCycles().get(0));
+		assertArrayEquals(new String[] { "cycle_a", "cycle_b" }, graph.sort(new String[] { "cycle_b", "cycle_a" }));
+	}
+
+	private TableDependencyGraph getGraph(String... tableNames) throws Exception {
+		return TableDependencyGraph.get(this.connection, tableNames);
+	}
+
+	private DefaultTable createTable(String name) {
+		return new DefaultTable(name, new Column[] { new Column("id", DataType.UNKNOWN) });
+	}
+}
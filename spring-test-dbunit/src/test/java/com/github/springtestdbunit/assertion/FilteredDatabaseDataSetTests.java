@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.assertion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.dbunit.database.DatabaseDataSourceConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Tests for {@link FilteredDatabaseDataSet}.
+ *
+ * @author agent
+ */
+public class FilteredDatabaseDataSetTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private IDatabaseConnection connection;
+
+	private IDataSet expectedDataSet;
+
+	@Before
+	public void setup() throws Exception {
+		this.dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:filtereddatabasedataset", "sa", "", true);
+		JdbcTemplate template = new JdbcTemplate(this.dataSource);
+		template.execute("CREATE TABLE filtered (id INTEGER PRIMARY KEY, name VARCHAR(20), extra VARCHAR(20))");
+		template.execute("CREATE TABLE ignored (id INTEGER PRIMARY KEY)");
+		template.update("INSERT INTO filtered VALUES (2, 'b', 'x')");
+		template.update("INSERT INTO filtered VALUES (1, 'a', 'y')");
+		this.connection = new DatabaseDataSourceConnection(this.dataSource);
+		this.expectedDataSet = new DefaultDataSet(new DefaultTable("filtered", new Column[] { new Column("name",
+				DataType.UNKNOWN) }));
+	}
+
+	@After
+	public void cleanup() {
+		new JdbcTemplate(this.dataSource).execute("DROP SCHEMA PUBLIC CASCADE");
+		this.dataSource.destroy();
+	}
+
+	@Test
+	public void shouldOnlyContainExpectedTables() throws Exception {
+		FilteredDatabaseDataSet dataSet = new FilteredDatabaseDataSet(this.connection, this.expectedDataSet, false);
+		assertEquals(Arrays.asList("filtered"), Arrays.asList(dataSet.getTableNames()));
+		assertEquals(3, dataSet.getTable("filtered").getTableMetaData().getColumns().length);
+	}
+
+	@Test
+	public void shouldOnlySelectExpectedColumns() throws Exception {
+		FilteredDatabaseDataSet dataSet = new FilteredDatabaseDataSet(this.connection, this.expectedDataSet, true);
+		ITable table = dataSet.getTable("filtered");
+		assertEquals(1, table.getTableMetaData().getColumns().length);
+		assertEquals("NAME", table.getTableMetaData().getColumns()[0].getColumnName());
+	}
+
+	@Test
+	public void shouldOrderByPrimaryKey() throws Exception {
+		ITable table = new FilteredDatabaseDataSet(this.connection, this.expectedDataSet, true).getTable("filtered");
+		assertEquals(2, table.getRowCount());
+		assertEquals("a", table.getValue(0, "name"));
+		assertEquals("b", table.getValue(1, "name"));
+	}
+
+	@Test
+	public void shouldHaveExpectedContentInAnyOrder() throws Exception {
+		DefaultTable expected = new DefaultTable("filtered", new Column[] { new Column("name", DataType.UNKNOWN) });
+		expected.addRow(new Object[] { "a" });
+		expected.addRow(new Object[] { "b" });
+		assertTrue(new FilteredDatabaseDataSet(this.connection, new DefaultDataSet(expected), true)
+				.hasExpectedContent("filtered"));
+	}
+
+	@Test
+	public void shouldNotHaveExpectedContentWhenValuesDiffer() throws Exception {
+		DefaultTable expected = new DefaultTable("filtered", new Column[] { new Column("name", DataType.UNKNOWN) });
+		expected.addRow(new Object[] { "a" });
+		expected.addRow(new Object[] { "c" });
+		assertFalse(new FilteredDatabaseDataSet(this.connection, new DefaultDataSet(expected), true)
+				.hasExpectedContent("filtered"));
+	}
+
+	@Test
+	public void shouldExpectNullForMissingColumns() throws Exception {
+		DefaultTable expected = new DefaultTable("filtered", new Column[] { new Column("id", DataType.UNKNOWN),
+				new Column("name", DataType.UNKNOWN) });
+		expected.addRow(new Object[] { "1", "a" });
+		expected.addRow(new Object[] { "2", "b" });
+		assertFalse(new FilteredDatabaseDataSet(this.connection, new DefaultDataSet(expected), false)
+				.hasExpectedContent("filtered"));
+		new JdbcTemplate(this.dataSource).update("UPDATE filtered SET extra = NULL");
+		assertTrue(new FilteredDatabaseDataSet(this.connection, new DefaultDataSet(expected), false)
+				.hasExpectedContent("filtered"));
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.assertion;
+
+import org.dbunit.database.DatabaseDataSourceConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Tests for {@link HashDatabaseAssertion}.
+ *
+ * @author agent
+ */
+public class HashDatabaseAssertionTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private IDatabaseConnection connection;
+
+	private HashDatabaseAssertion assertion = new HashDatabaseAssertion();
+
+	@Before
+	public void setup() throws Exception {
+		this.dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:hashdatabaseassertion", "sa", "", true);
+		JdbcTemplate template = new JdbcTemplate(this.dataSource);
+		template.execute("CREATE TABLE hashed (id INTEGER PRIMARY KEY, name VARCHAR(20), amount DECIMAL(10,2))");
+		template.update("INSERT INTO hashed VALUES (1, 'a', 1.50)");
+		template.update("INSERT INTO hashed VALUES (2, 'b', NULL)");
+		this.connection = new DatabaseDataSourceConnection(this.dataSource);
+	}
+
+	@After
+	public void cleanup() {
+		new JdbcTemplate(this.dataSource).execute("DROP SCHEMA PUBLIC CASCADE");
+		this.dataSource.destroy();
+	}
+
+	@Test
+	public void shouldPassWhenHashesMatchInAnyOrder() throws Exception {
+		IDataSet expected = createExpected(new Object[] { "b", null }, new Object[] { "a", "1.5" });
+		this.assertion.assertEquals(expected, new FilteredDatabaseDataSet(this.connection, expected, true));
+	}
+
+	@Test(expected = AssertionError.class)
+	public void shouldFailWhenValuesDiffer() throws Exception {
+		IDataSet expected = createExpected(new Object[] { "a", "1.5" }, new Object[] { "b", "2" });
+		this.assertion.assertEquals(expected, new FilteredDatabaseDataSet(this.connection, expected, true));
+	}
+
+	@Test(expected = AssertionError.class)
+	public void shouldFailWhenRowCountDiffers() throws Exception {
+		IDataSet expected = createExpected(new Object[] { "a", "1.5" });
+		this.assertion.assertEquals(expected, new FilteredDatabaseDataSet(this.connection, expected, true));
+	}
+
+	private IDataSet createExpected(Object[]... rows) throws Exception {
+		DefaultTable table = new DefaultTable("hashed", new Column[] { new Column("name", DataType.UNKNOWN),
+				new Column("amount", DataType.UNKNOWN) });
+		for (Object[] row : rows) {
+			table.addRow(row);
+		}
+		return new DefaultDataSet(table);
+	}
+}
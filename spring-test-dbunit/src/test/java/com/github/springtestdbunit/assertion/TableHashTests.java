@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.assertion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.security.MessageDigest;
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TableHash}.
+ *
+ * @author agent
+ */
+public class TableHashTests {
+
+	@Test
+	public void shouldHashRowsInAnyOrder() throws Exception {
+		TableHash hash = new TableHash();
+		hash.add(new Object[] { 1, "a" });
+		hash.add(new Object[] { 2, null });
+		TableHash reversed = new TableHash();
+		reversed.add(new Object[] { 2, null });
+		reversed.add(new Object[] { 1, "a" });
+		assertEquals(hash, reversed);
+		assertEquals(2, hash.getRowCount());
+	}
+
+	@Test
+	public void shouldHashDifferentRowsDifferently() throws Exception {
+		TableHash hash = new TableHash();
+		hash.add(new Object[] { "ab", "c" });
+		TableHash other = new TableHash();
+		other.add(new Object[] { "a", "bc" });
+		assertFalse(hash.equals(other));
+	}
+
+	@Test
+	public void shouldHashRowsAsDatabase() throws Exception {
+		TableHash hash = new TableHash();
+		TableHash.Dialect.POSTGRESQL.add(hash, new Object[] { 1, "a", null });
+		byte[] digest = MessageDigest.getInstance("MD5").digest("1:11:aN".getBytes("UTF-8"));
+		ResultSet resultSet = mock(ResultSet.class);
+		given(resultSet.getLong(1)).willReturn(1L);
+		given(resultSet.getLong(2)).willReturn(getUnsignedInt(digest, 0));
+		given(resultSet.getLong(3)).willReturn(getUnsignedInt(digest, 4));
+		assertEquals(TableHash.Dialect.POSTGRESQL.read(resultSet), hash);
+	}
+
+	@Test
+	public void shouldCreatePostgreSqlSelectStatement() throws Exception {
+		assertEquals("SELECT COUNT(*), SUM(CAST(CAST('x' || LPAD(SUBSTRING(ROW_HASH, 1, 8), 16, '0') AS BIT(64)) "
+				+ "AS BIGINT)), SUM(CAST(CAST('x' || LPAD(SUBSTRING(ROW_HASH, 9, 8), 16, '0') AS BIT(64)) AS BIGINT)) "
+				+ "FROM (SELECT MD5((COALESCE(CAST(CHAR_LENGTH(CAST(id AS VARCHAR)) AS VARCHAR) || ':' || "
+				+ "CAST(id AS VARCHAR), 'N'))) AS ROW_HASH FROM example) ROW_HASHES",
+				TableHash.Dialect.POSTGRESQL.getSelectStatement(new String[] { "id" }, "example"));
+	}
+
+	@Test
+	public void shouldCreateMySqlSelectStatement() throws Exception {
+		assertEquals("SELECT COUNT(*), SUM(CAST(CONV(SUBSTRING(ROW_HASH, 1, 8), 16, 10) AS UNSIGNED)), "
+				+ "SUM(CAST(CONV(SUBSTRING(ROW_HASH, 9, 8), 16, 10) AS UNSIGNED)) FROM (SELECT MD5(CONCAT("
+				+ "COALESCE(CONCAT(CHAR_LENGTH(CAST(id AS CHAR)), ':', CAST(id AS CHAR)), 'N'), "
+				+ "COALESCE(CONCAT(CHAR_LENGTH(CAST(name AS CHAR)), ':', CAST(name AS CHAR)), 'N'))) AS ROW_HASH "
+				+ "FROM example) ROW_HASHES",
+				TableHash.Dialect.MYSQL.getSelectStatement(new String[] { "id", "name" }, "example"));
+	}
+
+	private long getUnsignedInt(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = offset; i < offset + 4; i++) {
+			value = (value << 8) | (bytes[i] & 0xff);
+		}
+		return value;
+	}
+}
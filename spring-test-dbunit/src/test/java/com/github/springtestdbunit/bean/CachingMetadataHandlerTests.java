@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 the original author or authors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.ITableMetaData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Tests for {@link CachingMetadataHandler}.
+ * 
+ * @author agent
+ */
+public class CachingMetadataHandlerTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate template;
+
+	private DatabaseConfigBean databaseConfig;
+
+	@Before
+	public void setup() throws Exception {
+		this.dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:cachingmetadatahandler", "sa", "", true);
+		this.template = new JdbcTemplate(this.dataSource);
+		this.template.execute("CREATE TABLE cached (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+		this.databaseConfig = new DatabaseConfigBean();
+		this.databaseConfig.setCacheMetadata(true);
+	}
+
+	@After
+	public void cleanup() {
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+		this.dataSource.destroy();
+	}
+
+	@Test
+	public void shouldNotCacheByDefault() throws Exception {
+		IDatabaseConnection connection = DatabaseDataSourceConnectionFactoryBean.newConnection(this.dataSource);
+		Object handler = connection.getConfig().getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER);
+		assertFalse(handler instanceof CachingMetadataHandler);
+	}
+
+	@Test
+	public void shouldShareInstanceBetweenConnectionsOfConfigBean() throws Exception {
+		Object handler = createConnection().getConfig().getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER);
+		assertTrue(handler instanceof CachingMetadataHandler);
+		assertSame(handler, createConnection().getConfig().getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER));
+	}
+
+	@Test
+	public void shouldReuseCachedMetadataUntilInvalidated() throws Exception {
+		ITableMetaData metaData = createConnection().createDataSet().getTableMetaData("cached");
+		assertEquals(2, metaData.getColumns().length);
+		assertEquals("ID", metaData.getPrimaryKeys()[0].getColumnName());
+		CachingMetadataHandler handler = (CachingMetadataHandler) createConnection().getConfig().getProperty(
+				DatabaseConfig.PROPERTY_METADATA_HANDLER);
+		int size = handler.size();
+		this.template.execute("ALTER TABLE cached ADD COLUMN extra VARCHAR(20)");
+		assertEquals(2, createConnection().createDataSet().getTableMetaData("cached").getColumns().length);
+		assertEquals(size, handler.size());
+		this.databaseConfig.invalidateMetadataCache();
+		assertEquals(3, createConnection().createDataSet().getTableMetaData("cached").getColumns().length);
+	}
+
+	private IDatabaseConnection createConnection() throws Exception {
+		DatabaseDataSourceConnectionFactoryBean factoryBean = new DatabaseDataSourceConnectionFactoryBean(
+				this.dataSource);
+		factoryBean.setDatabaseConfig(this.databaseConfig);
+		return factoryBean.getObject();
+	}
+}
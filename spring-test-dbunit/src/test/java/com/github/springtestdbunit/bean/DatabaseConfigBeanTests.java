@@ -17,6 +17,7 @@ package com.github.springtestdbunit.bean;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
@@ -147,6 +148,18 @@ public class DatabaseConfigBeanTests {
 		doTest("skipOracleRecyclebinTables", DatabaseConfig.FEATURE_SKIP_ORACLE_RECYCLEBIN_TABLES, Boolean.FALSE);
 	}
 
+	@Test
+	public void shouldWrapMetadataHandlerWhenCachingMetadata() throws Exception {
+		this.configBean.setCacheMetadata(true);
+		DatabaseConfig appliedConfig = new DatabaseConfig();
+		this.configBean.apply(appliedConfig);
+		DatabaseConfig otherAppliedConfig = new DatabaseConfig();
+		this.configBean.apply(otherAppliedConfig);
+		Object handler = appliedConfig.getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER);
+		assertEquals(CachingMetadataHandler.class, handler.getClass());
+		assertSame(handler, otherAppliedConfig.getProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER));
+	}
+
 	private void doTest(String propertyName, String databaseConfigProperty, Object newValue) {
 		Object initialValue = this.configBeanWrapper.getPropertyValue(propertyName);
 		Object expectedInitialValue = this.defaultConfig.getProperty(databaseConfigProperty);
@@ -159,4 +159,13 @@ public class DatabaseDataSourceConnectionFactoryBeanTests {
 		databaseConnection.getConnection().createStatement();
 		verify(dataSource).getConnection();
 	}
+
+	@Test
+	public void shouldCreateTrackedConnectionForTrackingDataSource() throws Exception {
+		TableModificationTrackingDataSource dataSource = new TableModificationTrackingDataSource(mock(DataSource.class));
+		this.factoryBean.setDataSource(dataSource);
+		DatabaseDataSourceConnection connection = this.factoryBean.getObject();
+		assertTrue(connection instanceof TrackedDatabaseDataSourceConnection);
+		assertSame(dataSource.getTracker(), ((TrackedDatabaseDataSourceConnection) connection).getTracker());
+	}
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TableModificationTracker}.
+ *
+ * @author agent
+ */
+public class TableModificationTrackerTests {
+
+	private TableModificationTracker tracker;
+
+	@Before
+	public void setup() {
+		this.tracker = new TableModificationTracker();
+		this.tracker.recordContent("first", "a");
+		this.tracker.recordContent("SECOND", "b");
+	}
+
+	@Test
+	public void shouldHaveRecordedContentIgnoringCase() throws Exception {
+		assertTrue(this.tracker.hasContent("FIRST", "a"));
+		assertTrue(this.tracker.hasContent("second", "b"));
+		assertFalse(this.tracker.hasContent("first", "b"));
+	}
+
+	@Test
+	public void shouldIgnoreQueries() throws Exception {
+		this.tracker.recordSql("select * from first");
+		this.tracker.recordSql("call identity()");
+		assertTrue(this.tracker.hasContent("first", "a"));
+		assertTrue(this.tracker.hasContent("second", "b"));
+	}
+
+	@Test
+	public void shouldRecordDml() throws Exception {
+		this.tracker.recordSql("insert into schema.first (id) values (?)");
+		assertFalse(this.tracker.hasContent("first", "a"));
+		assertTrue(this.tracker.hasContent("second", "b"));
+		this.tracker.recordSql(" UPDATE \"SECOND\" SET id = 1");
+		assertFalse(this.tracker.hasContent("second", "b"));
+	}
+
+	@Test
+	public void shouldRecordDeleteWithoutFrom() throws Exception {
+		this.tracker.recordSql("delete first where id = 1");
+		assertFalse(this.tracker.hasContent("first", "a"));
+	}
+
+	@Test
+	public void shouldRecordAllModifiedForUnknownSql() throws Exception {
+		this.tracker.recordSql("call someProcedure()");
+		assertFalse(this.tracker.hasContent("first", "a"));
+		assertFalse(this.tracker.hasContent("second", "b"));
+	}
+
+	@Test
+	public void shouldTrackSchemasSeparately() throws Exception {
+		this.tracker.recordContent("one.third", "c");
+		this.tracker.recordContent("two.third", "c");
+		this.tracker.recordSql("delete from one.third");
+		assertFalse(this.tracker.hasContent("one.third", "c"));
+		assertTrue(this.tracker.hasContent("two.third", "c"));
+		this.tracker.recordSql("delete from third");
+		assertFalse(this.tracker.hasContent("two.third", "c"));
+	}
+
+	@Test
+	public void shouldRecordContentWhenCommitted() throws Exception {
+		Connection connection = mock(Connection.class);
+		this.tracker.recordContent(connection, "third", "c");
+		assertFalse(this.tracker.hasContent("third", "c"));
+		this.tracker.recordCommit(connection);
+		assertTrue(this.tracker.hasContent("third", "c"));
+	}
+
+	@Test
+	public void shouldRecordContentImmediatelyWhenAutoCommit() throws Exception {
+		Connection connection = mock(Connection.class);
+		given(connection.getAutoCommit()).willReturn(true);
+		this.tracker.recordContent(connection, "third", "c");
+		assertTrue(this.tracker.hasContent("third", "c"));
+	}
+
+	@Test
+	public void shouldDiscardContentWhenRolledBack() throws Exception {
+		Connection connection = mock(Connection.class);
+		this.tracker.recordContent(connection, "third", "c");
+		this.tracker.recordRollback(connection);
+		this.tracker.recordCommit(connection);
+		assertFalse(this.tracker.hasContent("third", "c"));
+		assertFalse(this.tracker.hasContent("first", "a"));
+	}
+
+	@Test
+	public void shouldDiscardPendingContentWhenModified() throws Exception {
+		Connection connection = mock(Connection.class);
+		this.tracker.recordContent(connection, "third", "c");
+		this.tracker.recordSql("update third set id = 1");
+		this.tracker.recordCommit(connection);
+		assertFalse(this.tracker.hasContent("third", "c"));
+	}
+}
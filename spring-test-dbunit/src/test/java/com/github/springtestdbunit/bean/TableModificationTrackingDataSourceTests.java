@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TableModificationTrackingDataSource}.
+ *
+ * @author agent
+ */
+public class TableModificationTrackingDataSourceTests {
+
+	private Connection targetConnection;
+
+	private TableModificationTrackingDataSource dataSource;
+
+	private TableModificationTracker tracker;
+
+	@Before
+	public void setup() throws Exception {
+		DataSource targetDataSource = mock(DataSource.class);
+		this.targetConnection = mock(Connection.class);
+		given(targetDataSource.getConnection()).willReturn(this.targetConnection);
+		this.dataSource = new TableModificationTrackingDataSource(targetDataSource);
+		this.tracker = this.dataSource.getTracker();
+	}
+
+	@Test
+	public void shouldRecordPreparedStatementWhenExecuted() throws Exception {
+		given(this.targetConnection.prepareStatement("update example set id = ?")).willReturn(
+				mock(PreparedStatement.class));
+		Connection connection = this.dataSource.getConnection();
+		PreparedStatement statement = connection.prepareStatement("update example set id = ?");
+		this.tracker.recordContent("example", "a");
+		statement.executeUpdate();
+		assertFalse(this.tracker.hasContent("example", "a"));
+		this.tracker.recordContent("example", "a");
+		statement.executeUpdate();
+		assertFalse(this.tracker.hasContent("example", "a"));
+	}
+
+	@Test
+	public void shouldRecordContentWhenCommitted() throws Exception {
+		Connection connection = this.dataSource.getConnection();
+		this.tracker.recordContent(connection, "example", "a");
+		assertFalse(this.tracker.hasContent("example", "a"));
+		connection.commit();
+		assertTrue(this.tracker.hasContent("example", "a"));
+	}
+
+	@Test
+	public void shouldDiscardContentWhenRolledBack() throws Exception {
+		Connection connection = this.dataSource.getConnection();
+		this.tracker.recordContent(connection, "example", "a");
+		connection.rollback();
+		connection.commit();
+		assertFalse(this.tracker.hasContent("example", "a"));
+	}
+}
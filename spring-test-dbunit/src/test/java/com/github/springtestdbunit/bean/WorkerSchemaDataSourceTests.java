@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.bean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.dbunit.database.DatabaseDataSourceConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+
+/**
+ * Tests for {@link WorkerSchemaDataSource} and {@link WorkerSchemaDatabaseConnection}.
+ *
+ * @author agent
+ */
+public class WorkerSchemaDataSourceTests {
+
+	private WorkerSchemaDataSource dataSource;
+
+	@Before
+	public void setup() {
+		this.dataSource = new WorkerSchemaDataSource(new DriverManagerDataSource("jdbc:hsqldb:mem:workerschema", "sa",
+				""));
+		this.dataSource.setScripts(new Resource[] { new ClassPathResource("worker-schema.sql", getClass()) });
+	}
+
+	@Test
+	public void shouldUseSameSchemaForAllThreadsOfFork() throws Exception {
+		final String schema = this.dataSource.getSchema();
+		final AtomicReference<String> otherSchema = new AtomicReference<String>();
+		runInOtherThread(new Runnable() {
+			public void run() {
+				otherSchema.set(WorkerSchemaDataSourceTests.this.dataSource.getSchema());
+			}
+		});
+		assertTrue(schema.startsWith("WORKER_"));
+		assertEquals(schema, otherSchema.get());
+	}
+
+	@Test
+	public void shouldUseSchemaPerThread() throws Exception {
+		this.dataSource.setIsolationMode(SchemaIsolationMode.THREAD);
+		final String schema = this.dataSource.getSchema();
+		final AtomicReference<String> otherSchema = new AtomicReference<String>();
+		runInOtherThread(new Runnable() {
+			public void run() {
+				otherSchema.set(WorkerSchemaDataSourceTests.this.dataSource.getSchema());
+			}
+		});
+		assertFalse(schema.equals(otherSchema.get()));
+	}
+
+	@Test
+	public void shouldCreateSchemaFromScriptsOnFirstUse() throws Exception {
+		this.dataSource.setSchemaPrefix("first_use_");
+		Connection connection = this.dataSource.getConnection();
+		try {
+			assertEquals(0, count(connection));
+		} finally {
+			connection.close();
+		}
+		connection = this.dataSource.getConnection();
+		try {
+			assertEquals(0, count(connection));
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void shouldFindWrappedWorkerSchemaDataSource() throws Exception {
+		assertSame(this.dataSource, WorkerSchemaDataSource.get(new TransactionAwareDataSourceProxy(this.dataSource)));
+		assertNull(WorkerSchemaDataSource.get(this.dataSource.getTargetDataSource()));
+	}
+
+	@Test
+	public void shouldRouteDbUnitConnectionToSchemaOfThread() throws Exception {
+		this.dataSource.setSchemaPrefix("routed_");
+		this.dataSource.setIsolationMode(SchemaIsolationMode.THREAD);
+		final IDatabaseConnection connection = DatabaseDataSourceConnectionFactoryBean.newConnection(this.dataSource);
+		assertTrue(connection instanceof WorkerSchemaDatabaseConnection);
+		try {
+			assertEquals(this.dataSource.getSchema(), connection.getSchema());
+			DatabaseOperation.INSERT.execute(connection, createDataSet(2));
+			final AtomicReference<Integer> otherRowCount = new AtomicReference<Integer>();
+			runInOtherThread(new Runnable() {
+				public void run() {
+					try {
+						DatabaseOperation.INSERT.execute(connection, createDataSet(1));
+						otherRowCount.set(connection.getRowCount("sample"));
+						connection.close();
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			assertEquals(new Integer(1), otherRowCount.get());
+			assertEquals(2, connection.getRowCount("sample"));
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Test
+	public void shouldCreateWorkerSchemaConnectionFromFactoryBean() throws Exception {
+		DatabaseDataSourceConnectionFactoryBean factoryBean = new DatabaseDataSourceConnectionFactoryBean(
+				this.dataSource.getTargetDataSource());
+		factoryBean.setSchemaIsolation(SchemaIsolationMode.THREAD);
+		factoryBean.setSchemaScripts(new Resource[] { new ClassPathResource("worker-schema.sql", getClass()) });
+		DatabaseDataSourceConnection connection = factoryBean.getObject();
+		try {
+			assertTrue(connection instanceof WorkerSchemaDatabaseConnection);
+			assertTrue(connection.getSchema().startsWith("WORKER_"));
+			assertEquals(0, connection.getRowCount("sample"));
+		} finally {
+			connection.close();
+		}
+	}
+
+	private IDataSet createDataSet(int rows) throws Exception {
+		DefaultTable table = new DefaultTable("sample", new Column[] { new Column("id", DataType.INTEGER),
+				new Column("name", DataType.VARCHAR) });
+		for (int i = 0; i < rows; i++) {
+			table.addRow(new Object[] { new Integer(i), "name" + i });
+		}
+		return new DefaultDataSet(table);
+	}
+
+	private int count(Connection connection) throws Exception {
+		ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM sample");
+		resultSet.next();
+		return resultSet.getInt(1);
+	}
+
+	private void runInOtherThread(Runnable runnable) throws Exception {
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread thread = new Thread(runnable);
+		thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			public void uncaughtException(Thread t, Throwable e) {
+				failure.set(e);
+			}
+		});
+		thread.start();
+		thread.join();
+		if (failure.get() != null) {
+			throw new IllegalStateException(failure.get());
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.dbunit.Assertion;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.xml.FlatXmlDataSetBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BinaryDataSetLoader} and {@link BinaryDataSetWriter}.
+ *
+ * @author agent
+ */
+public class BinaryDataSetLoaderTests {
+
+	private static final String XML = "<dataset><First id='1' value='a'/><First id='2'/>"
+			+ "<Second id='3' value='été'/></dataset>";
+
+	private IDataSet source;
+
+	@Before
+	public void setup() throws Exception {
+		FlatXmlDataSetBuilder builder = new FlatXmlDataSetBuilder().setColumnSensing(true);
+		this.source = builder.build(new ByteArrayInputStream(XML.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void shouldLoadMemoryMappedFile() throws Exception {
+		File file = File.createTempFile("dataset", ".dbub");
+		file.deleteOnExit();
+		OutputStream outputStream = new FileOutputStream(file);
+		try {
+			new BinaryDataSetWriter().write(this.source, outputStream);
+		} finally {
+			outputStream.close();
+		}
+		IDataSet dataSet = new BinaryDataSetLoader().loadDataSet(getClass(), file.toURI().toString());
+		Assertion.assertEquals(this.source, dataSet);
+	}
+
+	@Test
+	public void shouldReadValuesFromBuffer() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		new BinaryDataSetWriter().write(this.source, outputStream);
+		IDataSet dataSet = new BinaryDataSet(ByteBuffer.wrap(outputStream.toByteArray()));
+		ITable first = dataSet.getTable("First");
+		assertEquals(2, first.getRowCount());
+		assertEquals("a", first.getValue(0, "value"));
+		assertNull(first.getValue(1, "value"));
+		assertEquals("été", dataSet.getTable("Second").getValue(0, "value"));
+	}
+
+	@Test
+	public void shouldReturnNullOnMissingFile() throws Exception {
+		assertNull(new BinaryDataSetLoader().loadDataSet(getClass(), "doesnotexist.dbub"));
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Tests for {@link DataSetCache}.
+ *
+ * @author agent
+ */
+public class DataSetCacheTests {
+
+	private DataSetCache cache;
+
+	private Resource resource;
+
+	private DataSetCache.Key key;
+
+	@Before
+	public void setup() throws Exception {
+		this.cache = new DataSetCache(1);
+		this.resource = new ClassPathResource("test.xml", getClass());
+		this.key = new DataSetCache.Key(FlatXmlDataSetLoader.class, this.resource);
+	}
+
+	@Test
+	public void shouldReturnCachedDataSet() throws Exception {
+		IDataSet dataSet = this.cache.put(this.key, mock(IDataSet.class));
+		assertSame(dataSet, this.cache.get(this.key));
+		assertEquals(1, this.cache.getHitCount());
+		assertEquals(0, this.cache.getMissCount());
+	}
+
+	@Test
+	public void shouldCacheReadOnlyView() throws Exception {
+		DefaultTable table = new DefaultTable("test", new Column[] { new Column("id", DataType.INTEGER) });
+		table.addRow(new Object[] { 1 });
+		IDataSet dataSet = this.cache.put(this.key, new DefaultDataSet(table));
+		ITable cachedTable = dataSet.getTable("test");
+		assertFalse(cachedTable instanceof DefaultTable);
+		assertEquals(1, cachedTable.getRowCount());
+		assertEquals(1, cachedTable.getValue(0, "id"));
+	}
+
+	@Test
+	public void shouldMissForDifferentLoader() throws Exception {
+		this.cache.put(this.key, mock(IDataSet.class));
+		assertNull(this.cache.get(new DataSetCache.Key(AbstractDataSetLoader.class, this.resource)));
+		assertEquals(0, this.cache.getHitCount());
+		assertEquals(1, this.cache.getMissCount());
+	}
+
+	@Test
+	public void shouldMatchEqualKeys() throws Exception {
+		IDataSet dataSet = this.cache.put(this.key, mock(IDataSet.class));
+		assertSame(dataSet, this.cache.get(new DataSetCache.Key(FlatXmlDataSetLoader.class, this.resource)));
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsed() throws Exception {
+		Resource other = new ClassPathResource("/META-INF/db/insert.xml");
+		this.cache.put(this.key, mock(IDataSet.class));
+		this.cache.put(new DataSetCache.Key(FlatXmlDataSetLoader.class, other), mock(IDataSet.class));
+		assertEquals(1, this.cache.size());
+		assertNull(this.cache.get(this.key));
+	}
+
+	@Test
+	public void shouldClear() throws Exception {
+		this.cache.put(this.key, mock(IDataSet.class));
+		this.cache.clear();
+		assertEquals(0, this.cache.size());
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * Tests for {@link DataSetIndex}.
+ *
+ * @author agent
+ */
+public class DataSetIndexTests {
+
+	private static final String PACKAGE_PATH = "com/github/springtestdbunit/dataset";
+
+	private File directory;
+
+	@Before
+	public void setup() throws Exception {
+		this.directory = File.createTempFile("datasetindex", "");
+		this.directory.delete();
+		File index = new File(this.directory, DataSetIndex.LOCATION);
+		index.getParentFile().mkdirs();
+		String content = "# Generated\ncom.example.Test#test=com/example/setup.xml, com/example/expected.xml\n"
+				+ "com.example.Test=META-INF/db/insert.xml\n" + Indexed.class.getName() + "#test=" + PACKAGE_PATH
+				+ "/present.xml," + PACKAGE_PATH + "/missing.xml\n";
+		FileCopyUtils.copy(content.getBytes("UTF-8"), new FileOutputStream(index));
+		File present = new File(this.directory, PACKAGE_PATH + "/present.xml");
+		present.getParentFile().mkdirs();
+		FileCopyUtils.copy("<dataset/>".getBytes("UTF-8"), new FileOutputStream(present));
+	}
+
+	@After
+	public void cleanup() {
+		new File(this.directory, DataSetIndex.LOCATION).delete();
+		new File(this.directory, PACKAGE_PATH + "/present.xml").delete();
+	}
+
+	@Test
+	public void shouldReadIndexedPaths() throws Exception {
+		ClassLoader classLoader = new URLClassLoader(new URL[] { this.directory.toURI().toURL() }, null);
+		DataSetIndex index = DataSetIndex.get(classLoader);
+		assertTrue(index.contains("com.example.Test", "com/example/setup.xml"));
+		assertTrue(index.contains("com.example.Test", "com/example/expected.xml"));
+		assertTrue(index.contains("com.example.Test", "META-INF/db/insert.xml"));
+		assertFalse(index.contains("com.example.Test", "com/example/other.xml"));
+		assertFalse(index.contains("com.example.Other", "com/example/setup.xml"));
+		assertSame(index, DataSetIndex.get(classLoader));
+	}
+
+	@Test
+	public void shouldContainPathsIndexedForSuperclass() throws Exception {
+		ClassLoader classLoader = new URLClassLoader(new URL[] { this.directory.toURI().toURL() }, null);
+		assertTrue(DataSetIndex.get(classLoader).contains(IndexedSubclass.class, PACKAGE_PATH + "/present.xml"));
+		assertFalse(DataSetIndex.get(classLoader).contains(DataSetIndexTests.class, PACKAGE_PATH + "/present.xml"));
+	}
+
+	@Test
+	public void shouldTrustIndexedResources() throws Exception {
+		URL testClasses = Indexed.class.getProtectionDomain().getCodeSource().getLocation();
+		ClassLoader classLoader = new URLClassLoader(new URL[] { this.directory.toURI().toURL(), testClasses }, null);
+		Class<?> testClass = classLoader.loadClass(Indexed.class.getName());
+		FlatXmlDataSetLoader loader = new FlatXmlDataSetLoader();
+		assertTrue(loader.getResource(testClass, "present.xml").exists());
+		Resource missing = loader.getResource(testClass, "missing.xml");
+		assertFalse(missing.exists());
+		try {
+			loader.loadDataSet(missing);
+			fail("Stale index entry did not fail");
+		} catch (FileNotFoundException e) {
+		}
+	}
+
+	@Test
+	public void shouldBeEmptyWithoutIndex() throws Exception {
+		ClassLoader classLoader = new URLClassLoader(new URL[0], null);
+		assertFalse(DataSetIndex.get(classLoader).contains("com.example.Test", "com/example/setup.xml"));
+	}
+
+	@Test
+	public void shouldGetClassPathLocation() throws Exception {
+		assertEquals("com/github/springtestdbunit/dataset/test.xml",
+				DataSetIndex.getClassPathLocation(getClass(), "test.xml"));
+		assertEquals("META-INF/db/insert.xml", DataSetIndex.getClassPathLocation(getClass(), "/META-INF/db/insert.xml"));
+		assertEquals("META-INF/db/insert.xml",
+				DataSetIndex.getClassPathLocation(getClass(), "classpath:META-INF/db/insert.xml"));
+		assertNull(DataSetIndex.getClassPathLocation(getClass(), "file:/tmp/test.xml"));
+		assertNull(DataSetIndex.getClassPathLocation(getClass(), "../test.xml"));
+	}
+
+	public static class Indexed {
+	}
+
+	public static class IndexedSubclass extends Indexed {
+	}
+}
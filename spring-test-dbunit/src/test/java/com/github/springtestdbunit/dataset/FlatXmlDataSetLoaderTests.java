@@ -17,6 +17,7 @@ package com.github.springtestdbunit.dataset;
 
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.dbunit.dataset.IDataSet;
 import org.junit.Before;
@@ -55,4 +56,10 @@ public class FlatXmlDataSetLoaderTests {
 		IDataSet dataset = this.loader.loadDataSet(this.testContext.getTestClass(), "doesnotexist.xml");
 		assertNull(dataset);
 	}
+
+	@Test
+	public void shouldCacheLoadedDataSet() throws Exception {
+		IDataSet dataset = this.loader.loadDataSet(this.testContext.getTestClass(), "test.xml");
+		assertSame(dataset, this.loader.loadDataSet(this.testContext.getTestClass(), "test.xml"));
+	}
 }
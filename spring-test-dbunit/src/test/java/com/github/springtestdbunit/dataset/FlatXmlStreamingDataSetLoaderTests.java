@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dataset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITableIterator;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FlatXmlStreamingDataSetLoader}.
+ *
+ * @author agent
+ */
+public class FlatXmlStreamingDataSetLoaderTests {
+
+	private FlatXmlStreamingDataSetLoader loader;
+
+	@Before
+	public void setup() throws Exception {
+		this.loader = new FlatXmlStreamingDataSetLoader();
+	}
+
+	@Test
+	public void shouldStreamFromRelativeFile() throws Exception {
+		IDataSet dataset = this.loader.loadDataSet(getClass(), "test.xml");
+		assertTrue(dataset instanceof FlatXmlStreamingDataSet);
+		ITableIterator iterator = dataset.iterator();
+		assertTrue(iterator.next());
+		assertEquals("Sample", iterator.getTableMetaData().getTableName());
+	}
+
+	@Test
+	public void shouldSupportMultipleIterations() throws Exception {
+		IDataSet dataset = this.loader.loadDataSet(getClass(), "test.xml");
+		assertTrue(dataset.iterator().next());
+		assertTrue(dataset.iterator().next());
+	}
+
+	@Test
+	public void shouldNotCache() throws Exception {
+		IDataSet dataset = this.loader.loadDataSet(getClass(), "test.xml");
+		assertTrue(dataset != this.loader.loadDataSet(getClass(), "test.xml"));
+	}
+
+	@Test
+	public void shouldRejectRandomAccess() throws Exception {
+		IDataSet dataset = this.loader.loadDataSet(getClass(), "test.xml");
+		try {
+			dataset.getTable("Sample");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			dataset.reverseIterator();
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+	}
+
+	@Test
+	public void shouldReturnNullOnMissingFile() throws Exception {
+		assertNull(this.loader.loadDataSet(getClass(), "doesnotexist.xml"));
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dbunittestexecutionlistener.setup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.dbunit.dataset.IDataSet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+
+import com.github.springtestdbunit.DbUnitTestExecutionListener;
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.annotation.DbUnitConfiguration;
+import com.github.springtestdbunit.dataset.DataSetLoader;
+import com.github.springtestdbunit.dataset.FlatXmlDataSetLoader;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("/META-INF/dbunit-context.xml")
+@TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DbUnitTestExecutionListener.class })
+@DbUnitConfiguration(databaseConnections = "dataSource1,dataSource2", parallelSetup = true, dataSetLoader = ParallelSetupTest.ConcurrentDataSetLoader.class)
+public class ParallelSetupTest {
+
+	private JdbcTemplate template1;
+
+	private JdbcTemplate template2;
+
+	@Autowired
+	@Qualifier("dataSource1")
+	public void setDataSource1(DataSource dataSource) {
+		this.template1 = new JdbcTemplate(dataSource);
+	}
+
+	@Autowired
+	@Qualifier("dataSource2")
+	public void setDataSource2(DataSource dataSource) {
+		this.template2 = new JdbcTemplate(dataSource);
+	}
+
+	@Test
+	@DatabaseSetup(connections = {
+			@DatabaseConnectionSetup(connectionName = "dataSource1", value = "/META-INF/db/different/datasource/datasource1.xml"),
+			@DatabaseConnectionSetup(connectionName = "dataSource2", value = "/META-INF/db/different/datasource/datasource2.xml"),
+			@DatabaseConnectionSetup(connectionName = "dataSource1", type = DatabaseOperation.INSERT, value = "/META-INF/db/different/datasource/datasource1_insert.xml") })
+	public void shouldSetupEachConnectionInOrder() throws Exception {
+		assertEquals(3, this.template1.queryForInt("SELECT COUNT(*) FROM example1"));
+		assertEquals(1, this.template1.queryForInt("SELECT COUNT(*) FROM example1 WHERE field2 = 'is fast'"));
+		assertEquals(3, this.template2.queryForInt("SELECT COUNT(*) FROM example2"));
+		assertFalse(ConcurrentDataSetLoader.THREAD_NAMES.isEmpty());
+		for (String threadName : ConcurrentDataSetLoader.THREAD_NAMES) {
+			assertTrue(threadName, threadName.startsWith("dbunit-setup-"));
+		}
+		assertEquals(2, new HashSet<String>(ConcurrentDataSetLoader.THREAD_NAMES).size());
+	}
+
+	/**
+	 * Loader that only returns once the first dataset of each connection is being loaded at the same time.
+	 */
+	public static class ConcurrentDataSetLoader implements DataSetLoader {
+
+		private static final CountDownLatch LOADING = new CountDownLatch(2);
+
+		private static final List<String> THREAD_NAMES = Collections.synchronizedList(new ArrayList<String>());
+
+		private final DataSetLoader loader = new FlatXmlDataSetLoader();
+
+		public IDataSet loadDataSet(Class<?> testClass, String location) throws Exception {
+			LOADING.countDown();
+			if (LOADING.await(10, TimeUnit.SECONDS)) {
+				THREAD_NAMES.add(Thread.currentThread().getName());
+			}
+			return this.loader.loadDataSet(testClass, location);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dbunittestexecutionlistener.setup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+
+import com.github.springtestdbunit.DbUnitTestExecutionListener;
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.annotation.DbUnitConfiguration;
+import com.github.springtestdbunit.timing.Phase;
+import com.github.springtestdbunit.timing.PhaseEvent;
+import com.github.springtestdbunit.timing.PhaseListener;
+import com.github.springtestdbunit.timing.PhaseListeners;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("/META-INF/dbunit-context.xml")
+@TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DbUnitTestExecutionListener.class })
+@DbUnitConfiguration(databaseConnections = "dataSource1")
+public class PhaseTimingSetupTest {
+
+	private static final String LOCATION = "/META-INF/db/different/datasource/datasource1.xml";
+
+	private static RecordingPhaseListener listener = new RecordingPhaseListener();
+
+	@BeforeClass
+	public static void addListener() {
+		PhaseListeners.add(listener);
+	}
+
+	@AfterClass
+	public static void removeListener() {
+		PhaseListeners.remove(listener);
+	}
+
+	@Test
+	@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "dataSource1", value = LOCATION))
+	public void shouldNotifyListenerOfSetupPhases() throws Exception {
+		List<PhaseEvent> events = listener.getEvents();
+		assertEquals(3, events.size());
+		assertEquals(Phase.RESOLVE, events.get(0).getPhase());
+		assertEquals(Phase.PARSE, events.get(1).getPhase());
+		PhaseEvent execute = events.get(2);
+		assertEquals(Phase.EXECUTE, execute.getPhase());
+		assertEquals(getClass(), execute.getTestClass());
+		assertEquals("shouldNotifyListenerOfSetupPhases", execute.getTestMethod().getName());
+		assertEquals("dataSource1", execute.getConnectionName());
+		assertEquals(LOCATION, execute.getDataSetLocation());
+		assertEquals(DatabaseOperation.CLEAN_INSERT, execute.getOperation());
+		assertEquals(Integer.valueOf(2), execute.getRowCounts().get("example1"));
+		assertTrue(execute.getDuration() > 0);
+	}
+
+	private static class RecordingPhaseListener implements PhaseListener {
+
+		private List<PhaseEvent> events = Collections.synchronizedList(new ArrayList<PhaseEvent>());
+
+		public void phaseCompleted(PhaseEvent event) {
+			this.events.add(event);
+		}
+
+		public List<PhaseEvent> getEvents() {
+			return this.events;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.dbunittestexecutionlistener.setup;
+
+import static org.junit.Assert.assertEquals;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+
+import com.github.springtestdbunit.DbUnitTestExecutionListener;
+import com.github.springtestdbunit.annotation.DatabaseConnectionSetup;
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.annotation.DatabaseSetup;
+import com.github.springtestdbunit.annotation.DbUnitConfiguration;
+import com.github.springtestdbunit.annotation.IsolationMode;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("/META-INF/dbunit-context.xml")
+@TestExecutionListeners({ DependencyInjectionTestExecutionListener.class, DbUnitTestExecutionListener.class })
+@DbUnitConfiguration(databaseConnections = "dataSource1", isolationMode = IsolationMode.SAVEPOINT)
+@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "dataSource1", value = "/META-INF/db/different/datasource/datasource1.xml"))
+public class SavepointIsolationSetupTest {
+
+	private JdbcTemplate template;
+
+	@Autowired
+	@Qualifier("dataSource1")
+	public void setDataSource(DataSource dataSource) {
+		this.template = new JdbcTemplate(dataSource);
+	}
+
+	@Test
+	@DatabaseSetup(connections = @DatabaseConnectionSetup(connectionName = "dataSource1", type = DatabaseOperation.INSERT, value = "/META-INF/db/different/datasource/datasource1_insert.xml"))
+	public void shouldApplyMethodSetupAfterClassSetup() throws Exception {
+		assertEquals(3, this.template.queryForInt("SELECT COUNT(*) FROM example1"));
+		assertEquals(1, this.template.queryForInt("SELECT COUNT(*) FROM example1 WHERE field2 = 'is fast'"));
+		this.template.update("UPDATE example1 SET field2 = 'modified'");
+	}
+
+	@Test
+	public void shouldRollbackToClassSetup() throws Exception {
+		assertEquals(2, this.template.queryForInt("SELECT COUNT(*) FROM example1"));
+		assertEquals(1, this.template.queryForInt("SELECT COUNT(*) FROM example1 WHERE field2 = 'is awesome'"));
+		assertEquals(1, this.template.queryForInt("SELECT COUNT(*) FROM example1 WHERE field2 = 'is useful'"));
+		this.template.update("DELETE FROM example1");
+	}
+}
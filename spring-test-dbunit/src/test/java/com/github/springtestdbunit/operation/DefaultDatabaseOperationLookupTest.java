@@ -16,6 +16,7 @@
 package com.github.springtestdbunit.operation;
 
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -37,5 +38,6 @@ public class DefaultDatabaseOperationLookupTest {
 		assertSame(org.dbunit.operation.DatabaseOperation.DELETE_ALL, lookup.get(DatabaseOperation.DELETE_ALL));
 		assertSame(org.dbunit.operation.DatabaseOperation.TRUNCATE_TABLE, lookup.get(DatabaseOperation.TRUNCATE_TABLE));
 		assertSame(org.dbunit.operation.DatabaseOperation.CLEAN_INSERT, lookup.get(DatabaseOperation.CLEAN_INSERT));
+		assertTrue(lookup.get(DatabaseOperation.SMART_CLEAN_INSERT) instanceof SmartCleanInsertOperation);
 	}
 }
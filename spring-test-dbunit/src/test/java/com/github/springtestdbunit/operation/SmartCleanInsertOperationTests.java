@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.operation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseDataSourceConnection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Tests for {@link SmartCleanInsertOperation}.
+ *
+ * @author agent
+ */
+public class SmartCleanInsertOperationTests {
+
+	private JdbcTemplate template;
+
+	private IDatabaseConnection connection;
+
+	private RecordingOperation deleteOperation;
+
+	private SmartCleanInsertOperation operation;
+
+	private IDataSet dataSet;
+
+	@Before
+	public void setup() throws Exception {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:smartcleaninsert", "sa", "");
+		this.template = new JdbcTemplate(dataSource);
+		this.template.execute("CREATE TABLE parent (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+		this.template.execute("CREATE TABLE child (id INTEGER PRIMARY KEY, parent_id INTEGER, "
+				+ "amount DECIMAL(10,2), note VARCHAR(20), FOREIGN KEY (parent_id) REFERENCES parent (id))");
+		this.template.execute("CREATE TABLE other (id INTEGER PRIMARY KEY)");
+		this.connection = new DatabaseDataSourceConnection(dataSource);
+		this.deleteOperation = new RecordingOperation(DatabaseOperation.DELETE_ALL);
+		this.operation = new SmartCleanInsertOperation(this.deleteOperation, DatabaseOperation.INSERT);
+		DefaultTable parent = new DefaultTable("parent", new Column[] { new Column("id", DataType.UNKNOWN),
+				new Column("name", DataType.UNKNOWN) });
+		parent.addRow(new Object[] { "1", "a" });
+		parent.addRow(new Object[] { "2", "b" });
+		DefaultTable child = new DefaultTable("child", new Column[] { new Column("id", DataType.UNKNOWN),
+				new Column("parent_id", DataType.UNKNOWN), new Column("amount", DataType.UNKNOWN) });
+		child.addRow(new Object[] { "1", "1", "1.5" });
+		child.addRow(new Object[] { "2", "2", "2" });
+		DefaultTable other = new DefaultTable("other", new Column[] { new Column("id", DataType.UNKNOWN) });
+		other.addRow(new Object[] { "1" });
+		this.dataSet = new DefaultDataSet(new DefaultTable[] { parent, child, other });
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		this.connection.close();
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+	}
+
+	@Test
+	public void shouldInsertWhenEmpty() throws Exception {
+		this.operation.execute(this.connection, this.dataSet);
+		assertReset("PARENT", "CHILD", "OTHER");
+		assertEquals(2, this.template.queryForInt("SELECT COUNT(*) FROM child"));
+	}
+
+	@Test
+	public void shouldNotResetUnchangedTables() throws Exception {
+		this.operation.execute(this.connection, this.dataSet);
+		this.deleteOperation.reset();
+		this.operation.execute(this.connection, this.dataSet);
+		assertReset();
+	}
+
+	@Test
+	public void shouldResetTablesWithDifferentRowCount() throws Exception {
+		this.operation.execute(this.connection, this.dataSet);
+		this.deleteOperation.reset();
+		this.template.execute("INSERT INTO other (id) VALUES (2)");
+		this.operation.execute(this.connection, this.dataSet);
+		assertReset("OTHER");
+		assertEquals(1, this.template.queryForInt("SELECT COUNT(*) FROM other"));
+	}
+
+	@Test
+	public void shouldResetTablesWithDifferentValues() throws Exception {
+		this.operation.execute(this.connection, this.dataSet);
+		this.deleteOperation.reset();
+		this.template.execute("UPDATE child SET amount = 3 WHERE id = 2");
+		this.operation.execute(this.connection, this.dataSet);
+		assertReset("CHILD", "OTHER");
+		assertEquals(2, this.template.queryForInt("SELECT amount FROM child WHERE id = 2"));
+	}
+
+	@Test
+	public void shouldResetTablesWithChangedColumnsThatAreNotInDataSet() throws Exception {
+		this.operation.execute(this.connection, this.dataSet);
+		this.deleteOperation.reset();
+		this.template.execute("UPDATE child SET note = 'changed' WHERE id = 1");
+		this.operation.execute(this.connection, this.dataSet);
+		assertReset("CHILD", "OTHER");
+		assertEquals(0, this.template.queryForInt("SELECT COUNT(*) FROM child WHERE note IS NOT NULL"));
+	}
+
+	@Test
+	public void shouldResetTablesThatFollowChangedParent() throws Exception {
+		this.operation.execute(this.connection, this.dataSet);
+		this.deleteOperation.reset();
+		this.template.execute("UPDATE parent SET name = 'c' WHERE id = 1");
+		this.operation.execute(this.connection, this.dataSet);
+		assertReset("PARENT", "CHILD", "OTHER");
+	}
+
+	private void assertReset(String... tableNames) {
+		assertEquals(Arrays.asList(tableNames), this.deleteOperation.getTableNames());
+	}
+
+	private static class RecordingOperation extends DatabaseOperation {
+
+		private final DatabaseOperation operation;
+
+		private List<String> tableNames = new ArrayList<String>();
+
+		public RecordingOperation(DatabaseOperation operation) {
+			this.operation = operation;
+		}
+
+		@Override
+		public void execute(IDatabaseConnection connection, IDataSet dataSet) throws DatabaseUnitException,
+				SQLException {
+			for (String tableName : dataSet.getTableNames()) {
+				this.tableNames.add(tableName.toUpperCase());
+			}
+			this.operation.execute(connection, dataSet);
+		}
+
+		public List<String> getTableNames() {
+			return this.tableNames;
+		}
+
+		public void reset() {
+			this.tableNames.clear();
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.statement.IPreparedBatchStatement;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.operation.DatabaseOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.github.springtestdbunit.bean.DatabaseConfigBean;
+import com.github.springtestdbunit.bean.DatabaseDataSourceConnectionFactoryBean;
+
+/**
+ * Tests for {@link MultiRowInsertStatementFactory}.
+ *
+ * @author agent
+ */
+public class MultiRowInsertStatementFactoryTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate template;
+
+	private MultiRowInsertStatementFactory statementFactory;
+
+	private IDatabaseConnection connection;
+
+	@Before
+	public void setup() throws Exception {
+		this.dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:multirowinsert", "sa", "", true);
+		this.template = new JdbcTemplate(this.dataSource);
+		this.template.execute("CREATE TABLE sample (id INTEGER PRIMARY KEY, name VARCHAR(20))");
+		this.statementFactory = new MultiRowInsertStatementFactory();
+		DatabaseConfigBean config = new DatabaseConfigBean();
+		config.setStatementFactory(this.statementFactory);
+		this.connection = DatabaseDataSourceConnectionFactoryBean.newConnection(this.dataSource);
+		config.apply(this.connection.getConfig());
+	}
+
+	@After
+	public void cleanup() {
+		this.template.execute("DROP SCHEMA PUBLIC CASCADE");
+		this.dataSource.destroy();
+	}
+
+	@Test
+	public void shouldInsertRowsAcrossSeveralStatements() throws Exception {
+		this.statementFactory.setRowsPerStatement(7);
+		DatabaseOperation.INSERT.execute(this.connection, createDataSet(25));
+		assertEquals(25, this.template.queryForInt("SELECT COUNT(*) FROM sample"));
+		List<Map<String, Object>> rows = this.template.queryForList("SELECT * FROM sample ORDER BY id");
+		assertEquals("name3", rows.get(3).get("NAME"));
+		assertNull(rows.get(4).get("NAME"));
+		assertEquals(24, ((Number) rows.get(24).get("ID")).intValue());
+	}
+
+	@Test
+	public void shouldReturnInsertedRowCount() throws Exception {
+		this.statementFactory.setRowsPerStatement(4);
+		IPreparedBatchStatement statement = this.statementFactory.createPreparedBatchStatement(
+				"insert into SAMPLE (ID, NAME) values (?, ?)", this.connection);
+		assertTrue(statement instanceof MultiRowInsertStatement);
+		try {
+			for (int i = 0; i < 6; i++) {
+				statement.addValue(new Integer(i), DataType.INTEGER);
+				statement.addValue("name" + i, DataType.VARCHAR);
+				statement.addBatch();
+			}
+			assertEquals(6, statement.executeBatch());
+		} finally {
+			statement.close();
+		}
+	}
+
+	@Test
+	public void shouldLimitRowsByMaxParameters() throws Exception {
+		this.statementFactory.setMaxParameters(3);
+		IPreparedBatchStatement statement = this.statementFactory.createPreparedBatchStatement(
+				"insert into SAMPLE (ID, NAME) values (?, ?)", this.connection);
+		statement.close();
+		assertFalse(statement instanceof MultiRowInsertStatement);
+	}
+
+	@Test
+	public void shouldNotChangeOtherStatements() throws Exception {
+		IPreparedBatchStatement statement = this.statementFactory.createPreparedBatchStatement(
+				"update SAMPLE set NAME = ? where ID = ?", this.connection);
+		statement.close();
+		assertFalse(statement instanceof MultiRowInsertStatement);
+	}
+
+	@Test
+	public void shouldUseMultiRowInsertWithBatchedStatements() throws Exception {
+		this.connection.getConfig().setProperty(DatabaseConfig.FEATURE_BATCHED_STATEMENTS, Boolean.TRUE);
+		DatabaseOperation.CLEAN_INSERT.execute(this.connection, createDataSet(250));
+		assertEquals(250, this.template.queryForInt("SELECT COUNT(*) FROM sample"));
+	}
+
+	private DefaultDataSet createDataSet(int rows) throws Exception {
+		DefaultTable table = new DefaultTable("sample", new Column[] { new Column("id", DataType.INTEGER),
+				new Column("name", DataType.VARCHAR) });
+		for (int i = 0; i < rows; i++) {
+			table.addRow(new Object[] { new Integer(i), (i % 4 == 0 ? null : "name" + i) });
+		}
+		return new DefaultDataSet(table);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010-2012 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.springtestdbunit.timing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.github.springtestdbunit.annotation.DatabaseOperation;
+import com.github.springtestdbunit.timing.PhaseTimingAggregator.Statistics;
+
+/**
+ * Tests for {@link PhaseTimingAggregator}.
+ *
+ * @author agent
+ */
+public class PhaseTimingAggregatorTests {
+
+	private PhaseTimingAggregator aggregator = new PhaseTimingAggregator();
+
+	@Test
+	public void shouldAggregateEventsForSameDataSet() throws Exception {
+		this.aggregator.phaseCompleted(newEvent(Phase.EXECUTE, "/a.xml", 100, 2));
+		this.aggregator.phaseCompleted(newEvent(Phase.EXECUTE, "/a.xml", 300, 2));
+		this.aggregator.phaseCompleted(newEvent(Phase.PARSE, "/a.xml", 50, 2));
+		List<Statistics> statistics = this.aggregator.getStatistics();
+		assertEquals(2, statistics.size());
+		Statistics execute = statistics.get(0);
+		assertEquals(Phase.EXECUTE, execute.getPhase());
+		assertEquals(2, execute.getCount());
+		assertEquals(400, execute.getTotalDuration());
+		assertEquals(300, execute.getMaxDuration());
+		assertEquals(4, execute.getRowCount());
+	}
+
+	@Test
+	public void shouldAggregateConcurrently() throws Exception {
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						PhaseTimingAggregatorTests.this.aggregator.phaseCompleted(newEvent(Phase.EXECUTE, "/a.xml", j,
+								1));
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Statistics statistics = this.aggregator.getStatistics().get(0);
+		assertEquals(8000, statistics.getCount());
+		assertEquals(8 * 999 * 1000 / 2, statistics.getTotalDuration());
+		assertEquals(999, statistics.getMaxDuration());
+	}
+
+	@Test
+	public void shouldWriteJson() throws Exception {
+		this.aggregator.phaseCompleted(newEvent(Phase.EXECUTE, "/a\"b.xml", 1500000, 3));
+		StringWriter writer = new StringWriter();
+		this.aggregator.writeJson(writer);
+		String json = writer.toString();
+		assertTrue(json, json.contains("\"phase\": \"EXECUTE\""));
+		assertTrue(json, json.contains("\"dataSetLocation\": \"/a\\\"b.xml\""));
+		assertTrue(json, json.contains("\"operation\": \"CLEAN_INSERT\""));
+		assertTrue(json, json.contains("\"totalMillis\": 1.500"));
+		assertTrue(json, json.contains("\"rows\": 3"));
+	}
+
+	@Test
+	public void shouldWriteEmptyJson() throws Exception {
+		StringWriter writer = new StringWriter();
+		this.aggregator.writeJson(writer);
+		assertEquals("{\n  \"phases\": []\n}\n", writer.toString());
+	}
+
+	private PhaseEvent newEvent(Phase phase, String location, long duration, int rows) {
+		Map<String, Integer> rowCounts = new LinkedHashMap<String, Integer>();
+		rowCounts.put("SampleEntity", rows);
+		DatabaseOperation operation = (phase == Phase.EXECUTE ? DatabaseOperation.CLEAN_INSERT : null);
+		return new PhaseEvent(phase, getClass(), null, "dataSource", location, operation, duration,
+				(rows == 0 ? Collections.<String, Integer> emptyMap() : rowCounts));
+	}
+}
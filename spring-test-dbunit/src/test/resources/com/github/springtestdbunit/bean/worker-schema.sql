@@ -0,0 +1 @@
+CREATE TABLE sample (id INT NOT NULL, name VARCHAR(50), PRIMARY KEY (id));